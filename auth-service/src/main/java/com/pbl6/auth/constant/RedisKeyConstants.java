@@ -4,11 +4,19 @@ public final class RedisKeyConstants {
     private RedisKeyConstants() {}
 
     public static final String DRIVERS_GEO_KEY = "drivers:geo";
+    public static final String DRIVERS_AVAILABLE_KEY = "drivers:available"; // SET driver rảnh
     public static final String DRIVER_HASH_PREFIX = "driver:"; // full key = driver:{driverId}
     public static final String ORDER_OFFERS_PREFIX = "order:%s:offers"; // String.format
     public static final String ORDER_STATE_PREFIX = "order:%s:state";
     public static final String DRIVER_FCM_TOKEN = "driver:%s:fcm_token";
     public static final String USER_FCM_TOKEN = "user:%s:fcm_token";
+    public static final String DRIVER_DELIVERING_ORDER_KEY = "driver:%s:delivering_order_id";
+    // HASH feature dispatch của order-service; auth-service chỉ ghi free_since khi online / offline
+    public static final String DRIVER_OFFER_STATS_KEY = "driver:%s:offer_stats";
+    // pub/sub vị trí shipper cho order-service: "U,<id>,<lon>,<lat>" hoặc "R,<id>"
+    public static final String DRIVER_LOCATION_CHANNEL = "drivers:location:changes";
+    // pub/sub: key FCM token vừa đổi / bị xoá, order-service bỏ bản cache local
+    public static final String FCM_TOKEN_INVALIDATION_CHANNEL = "fcm:token:invalidate";
 
 
 }
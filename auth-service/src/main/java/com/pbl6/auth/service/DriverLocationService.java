@@ -19,6 +19,7 @@ import java.util.*;
 
 import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_HASH_PREFIX;
 import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_FCM_TOKEN;
+import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_LOCATION_CHANNEL;
 
 @Slf4j
 @Service
@@ -92,9 +93,22 @@ public class DriverLocationService {
     map.put("lon", dto.longitude().toString());
     map.put("updatedAt", LocalDateTime.now().format(formatter));
     redisTemplate.opsForHash().putAll(driverKey, map);
+
+    // 4. Publish thay đổi cho spatial index local của order-service
+    publishLocation(driverId, dto.longitude().doubleValue(), dto.latitude().doubleValue());
     return true;
   }
 
+  private void publishLocation(UUID driverId, double longitude, double latitude) {
+    try {
+      redisTemplate.convertAndSend(
+          DRIVER_LOCATION_CHANNEL, "U," + driverId + "," + longitude + "," + latitude);
+    } catch (Exception ex) {
+      // order-service tự resync từ drivers:geo định kỳ
+      log.warn("Failed to publish location of driver {}: {}", driverId, ex.getMessage());
+    }
+  }
+
   public Optional<DriverLocationResponse> getLatestLocation(UUID driverId) {
     String driverKey = DRIVER_HASH_PREFIX + driverId;
     Map<Object, Object> data = redisTemplate.opsForHash().entries(driverKey);
@@ -21,7 +21,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import static com.pbl6.auth.constant.RedisKeyConstants.DRIVERS_AVAILABLE_KEY;
+import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_DELIVERING_ORDER_KEY;
 import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_FCM_TOKEN;
+import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_LOCATION_CHANNEL;
+import static com.pbl6.auth.constant.RedisKeyConstants.DRIVER_OFFER_STATS_KEY;
+import static com.pbl6.auth.constant.RedisKeyConstants.FCM_TOKEN_INVALIDATION_CHANNEL;
 
 @Service
 @RequiredArgsConstructor
@@ -177,9 +182,27 @@ public class DriverService {
         throw AppException.badRequest("FCM token is required when setting driver to online");
       } else {
         redisTemplate.opsForValue().set(driverFcmTokenKey, status.fcmToken());
+        // chỉ đưa vào tập available khi không đang giao đơn (order-service tự add lại khi xong)
+        String deliveringKey = String.format(DRIVER_DELIVERING_ORDER_KEY, driverId);
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(deliveringKey))) {
+          redisTemplate.opsForSet().add(DRIVERS_AVAILABLE_KEY, driverId.toString());
+          // bắt đầu tính idle time cho ranking; bật online lại khi đang rảnh thì giữ mốc cũ
+          redisTemplate
+              .opsForHash()
+              .putIfAbsent(
+                  String.format(DRIVER_OFFER_STATS_KEY, driverId),
+                  "free_since",
+                  String.valueOf(System.currentTimeMillis()));
+        }
       }
     } else {
         redisTemplate.delete(driverFcmTokenKey);
+        redisTemplate.opsForSet().remove(DRIVERS_AVAILABLE_KEY, driverId.toString());
+        redisTemplate
+            .opsForHash()
+            .delete(String.format(DRIVER_OFFER_STATS_KEY, driverId), "free_since");
+        redisTemplate.convertAndSend(DRIVER_LOCATION_CHANNEL, "R," + driverId);
     }
+    redisTemplate.convertAndSend(FCM_TOKEN_INVALIDATION_CHANNEL, driverFcmTokenKey);
   }
 }
@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static com.pbl6.auth.constant.RedisKeyConstants.FCM_TOKEN_INVALIDATION_CHANNEL;
 import static com.pbl6.auth.constant.RedisKeyConstants.USER_FCM_TOKEN;
 
 @Service
@@ -380,5 +381,6 @@ public class UserService {
   public void updateFcmToken(UUID userId, UpdateFcmTokenRequest status) {
     String userFcmTokenKey = String.format(USER_FCM_TOKEN, userId);
     redisTemplate.opsForValue().set(userFcmTokenKey, status.fcmToken());
+    redisTemplate.convertAndSend(FCM_TOKEN_INVALIDATION_CHANNEL, userFcmTokenKey);
   }
 }
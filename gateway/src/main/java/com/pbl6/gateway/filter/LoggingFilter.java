@@ -33,6 +33,10 @@ public class LoggingFilter implements Filter {
 
         String uri = httpRequest.getRequestURI();
         boolean shouldLog = !uri.contains("prometheus") && !uri.contains("grafana") && !uri.contains("swagger") && !uri.contains("actuator");
+        // stream SSE: không được bọc ContentCachingResponseWrapper (giữ body tới khi stream đóng)
+        if (uri.endsWith("/stream")) {
+            shouldLog = false;
+        }
 
         if (!shouldLog) {
             chain.doFilter(request, response);
@@ -51,6 +51,11 @@ public class Routes {
     @Bean
     public RouterFunction<ServerResponse> orderServiceRoute() {
         return GatewayRouterFunctions.route("order-service")
+                // stream SSE theo dõi order: proxy riêng để event được đẩy xuống ngay
+                .route(RequestPredicates.GET("/api/order/{id}/stream"), new SseProxyHandler(orderServiceUrl))
+                // progress import hàng loạt, cũng là SSE
+                .route(RequestPredicates.GET("/api/order/bulk/jobs/{jobId}/stream"),
+                        new SseProxyHandler(orderServiceUrl))
                 .route(RequestPredicates.path("/api/order/**"), HandlerFunctions.http(orderServiceUrl))
                 .build();
     }
@@ -0,0 +1,130 @@
+package com.pbl6.gateway.routes;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.HandlerFunction;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Proxy cho stream Server-Sent Events (vd. GET /api/order/{id}/stream).
+ *
+ * HandlerFunctions.http chép cả body rồi mới trả về nên không dùng được cho stream dài: ở đây đọc
+ * upstream từng dòng trên một virtual thread và đẩy từng event xuống client ngay khi nhận được.
+ */
+@Slf4j
+public class SseProxyHandler implements HandlerFunction<ServerResponse> {
+
+    /** Dài hơn timeout phía service để service là bên chủ động đóng stream. */
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(35);
+
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public SseProxyHandler(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public ServerResponse handle(ServerRequest request) throws Exception {
+        HttpServletRequest servletRequest = request.servletRequest();
+        String query = servletRequest.getQueryString();
+        String path = servletRequest.getRequestURI() + (query != null ? "?" + query : "");
+        URI target = URI.create(baseUrl + path);
+
+        HttpRequest.Builder upstream = HttpRequest.newBuilder(target)
+                .GET()
+                .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+        String authorization = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null) {
+            upstream.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        HttpResponse<Stream<String>> response =
+                client.send(upstream.build(), HttpResponse.BodyHandlers.ofLines());
+
+        if (response.statusCode() != 200) {
+            // lỗi (401/403/404/503...) trả nguyên cho client
+            String body;
+            try (Stream<String> lines = response.body()) {
+                body = lines.collect(Collectors.joining("\n"));
+            }
+            return ServerResponse.status(response.statusCode())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body);
+        }
+
+        Stream<String> lines = response.body();
+        return ServerResponse.sse(sse -> {
+            Thread pump = Thread.ofVirtual()
+                    .name("sse-proxy")
+                    .start(() -> pump(lines, sse));
+            Runnable close = () -> {
+                lines.close();
+                pump.interrupt();
+            };
+            sse.onComplete(close);
+            sse.onTimeout(close);
+            sse.onError(ex -> close.run());
+        }, STREAM_TIMEOUT);
+    }
+
+    /** Chuyển từng event SSE (các dòng kết thúc bằng một dòng trống) từ upstream xuống client. */
+    private void pump(Stream<String> lines, ServerResponse.SseBuilder sse) {
+        String event = null;
+        String id = null;
+        StringBuilder data = null;
+        try {
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next();
+                if (line.isEmpty()) {
+                    if (data != null) {
+                        if (id != null) sse.id(id);
+                        if (event != null) sse.event(event);
+                        sse.data(data.toString());
+                    }
+                    event = null;
+                    id = null;
+                    data = null;
+                } else if (line.startsWith(":")) {
+                    // heartbeat của service: giữ kết nối client qua nginx
+                    sse.comment(line.substring(1).trim());
+                    sse.send();
+                } else if (line.startsWith("event:")) {
+                    event = value(line);
+                } else if (line.startsWith("id:")) {
+                    id = value(line);
+                } else if (line.startsWith("data:")) {
+                    if (data == null) data = new StringBuilder();
+                    else data.append('\n');
+                    data.append(value(line));
+                }
+            }
+            sse.complete();
+        } catch (IOException | UncheckedIOException ex) {
+            // client hoặc upstream đã ngắt kết nối
+            log.debug("SSE proxy stream closed: {}", ex.getMessage());
+            sse.complete();
+        }
+    }
+
+    private static String value(String line) {
+        String v = line.substring(line.indexOf(':') + 1);
+        return v.startsWith(" ") ? v.substring(1) : v;
+    }
+}
@@ -0,0 +1,51 @@
+package com.pbl6.order.service.dispatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian giải một batch gán order -> shipper. Ma trận mặc định 50 x 200 (50 order, 200 shipper
+ * candidate); {@code sparsity} là tỉ lệ cặp không phải candidate của nhau (như trong batch thật,
+ * mỗi order chỉ thấy vài chục shipper gần nhất).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AssignmentSolverBenchmark {
+
+  @Param({"50"})
+  int orders;
+
+  @Param({"200"})
+  int drivers;
+
+  @Param({"0.0", "0.9"})
+  double sparsity;
+
+  private double[] cost;
+  private AssignmentSolver solver;
+
+  @Setup
+  public void setup() {
+    Random rnd = new Random(42);
+    cost = new double[orders * drivers];
+    for (int i = 0; i < cost.length; i++) {
+      cost[i] = rnd.nextDouble() < sparsity ? AssignmentSolver.NO_EDGE : rnd.nextDouble() * 10;
+    }
+    solver = new AssignmentSolver();
+  }
+
+  @Benchmark
+  public int[] solve() {
+    return solver.solve(cost, orders, drivers);
+  }
+}
@@ -0,0 +1,74 @@
+package com.pbl6.order.service.pricing;
+
+import com.pbl6.order.entity.PackageSize;
+import com.pbl6.order.entity.ShippingConfig;
+import com.pbl6.order.entity.SizeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giá một điểm giao trên {@link PricingSnapshot} (quãng đường 0-30 km, 0-20 kg, size ngẫu nhiên).
+ * Chạy với {@code -prof gc} để xác nhận không cấp phát.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PricingSnapshotBenchmark {
+
+  private static final int N = 1024;
+
+  private final double[] distanceKm = new double[N];
+  private final double[] weightKg = new double[N];
+  private final PackageSize[] sizes = new PackageSize[N];
+  private PricingSnapshot snapshot;
+
+  @Setup
+  public void setup() {
+    ShippingConfig cfg = new ShippingConfig();
+    cfg.setBaseKm(2);
+    cfg.setBaseKmFee(15000);
+    cfg.setRatePerKm(5000);
+    cfg.setRatePerKg(2000);
+    cfg.setMinFee(15000);
+    cfg.setFuelSurchargePercent(5.0);
+    List<SizeConfig> sizeConfigs = new ArrayList<>();
+    long surcharge = 0;
+    for (PackageSize size : PackageSize.values()) {
+      SizeConfig s = new SizeConfig();
+      s.setSizeCode(size);
+      s.setSurcharge(surcharge);
+      sizeConfigs.add(s);
+      surcharge += 5000;
+    }
+    snapshot = PricingSnapshot.of(cfg, sizeConfigs);
+
+    Random rnd = new Random(42);
+    PackageSize[] all = PackageSize.values();
+    for (int i = 0; i < N; i++) {
+      distanceKm[i] = rnd.nextDouble() * 30;
+      weightKg[i] = rnd.nextDouble() * 20;
+      sizes[i] = all[rnd.nextInt(all.length)];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public double shippingCost() {
+    double sum = 0;
+    for (int i = 0; i < N; i++) {
+      sum += snapshot.shippingCost(distanceKm[i], weightKg[i], sizes[i]);
+    }
+    return sum;
+  }
+}
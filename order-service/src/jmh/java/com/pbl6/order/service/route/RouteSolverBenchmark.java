@@ -0,0 +1,66 @@
+package com.pbl6.order.service.route;
+
+import com.pbl6.order.config.RouteProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian sắp thứ tự giao cho order {@code drops} điểm trên ma trận khoảng cách ngẫu nhiên (điểm
+ * trong ô 10 x 10 km, hệ số đường vòng 1.0-1.2 nên ma trận bất đối xứng như Distance Matrix thật).
+ * {@code exactMaxDrops = 16} để so DP chính xác với heuristic ở N = 15.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteSolverBenchmark {
+
+  @Param({"5", "10", "15", "30", "100"})
+  int drops;
+
+  @Param({"12", "16"})
+  int exactMaxDrops;
+
+  private int[][] matrix;
+  private RouteSolver solver;
+
+  @Setup
+  public void setup() {
+    Random rnd = new Random(42);
+    int n = drops + 1;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = rnd.nextDouble() * 10000;
+      y[i] = rnd.nextDouble() * 10000;
+    }
+    matrix = new int[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i != j) {
+          matrix[i][j] =
+              (int) (Math.hypot(x[i] - x[j], y[i] - y[j]) * (1 + 0.2 * rnd.nextDouble()));
+        }
+      }
+    }
+    RouteProperties props = new RouteProperties();
+    props.setExactMaxDrops(exactMaxDrops);
+    // đủ rộng để đo hết bước cải thiện thay vì đo time budget
+    props.setTimeBudgetMs(1000);
+    solver = new RouteSolver(props, new SimpleMeterRegistry());
+  }
+
+  @Benchmark
+  public RouteSolution solve() {
+    return solver.solve(matrix);
+  }
+}
@@ -2,9 +2,11 @@ package com.pbl6.order;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 //import org.springframework.cloud.openfeign.EnableFeignClients;
 
 @SpringBootApplication()
+@EnableScheduling
 //@EnableFeignClients
 public class OrderServiceApplication {
 
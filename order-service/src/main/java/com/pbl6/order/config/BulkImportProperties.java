@@ -0,0 +1,30 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Import order hàng loạt cho merchant (prefix {@code bulk-import}). */
+@Configuration
+@ConfigurationProperties(prefix = "bulk-import")
+@Data
+public class BulkImportProperties {
+
+  /** Số order tối đa trong một lần import. */
+  private int maxOrders = 5000;
+
+  /** Số order tối đa của import đồng bộ ({@code POST /bulk}); lớn hơn phải dùng job. */
+  private int syncMaxOrders = 500;
+
+  /** Số order mỗi lượt lấy ma trận + ghi DB (một transaction); progress được báo sau mỗi lượt. */
+  private int chunkSize = 200;
+
+  /** Thời gian giữ trạng thái / kết quả job trên Redis (giây). */
+  private long jobTtlSeconds = 3600;
+
+  /** Timeout của stream progress (ms). */
+  private long streamTimeoutMs = 1_800_000;
+
+  /** Chu kỳ đọc trạng thái job để đẩy progress xuống stream (ms). */
+  private long streamPollMs = 500;
+}
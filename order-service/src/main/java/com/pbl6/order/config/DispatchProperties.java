@@ -0,0 +1,177 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tham số cho dispatch engine (tìm và push shipper cho đơn mới).
+ *
+ * <p>All values can be overridden through application.yml / ENV (prefix {@code dispatch}).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "dispatch")
+@Data
+public class DispatchProperties {
+
+  /**
+   * Nguồn candidate: {@code redis-geo} (GEOSEARCH theo vòng trong Lua) hoặc {@code local-index}
+   * (spatial index trong JVM, Redis chỉ dùng để lọc available).
+   */
+  private String candidateSource = "redis-geo";
+
+  /**
+   * {@code greedy}: mỗi order push ngay theo ranking của riêng nó. {@code batch}: gom các order tìm
+   * xong candidate trong {@code batch.window-ms} rồi gán order -> shipper toàn cục trước wave đầu
+   * (dùng giờ cao điểm, khi nhiều order tranh cùng vài shipper).
+   */
+  private String mode = "greedy";
+
+  private Batch batch = new Batch();
+
+  @Data
+  public static class Batch {
+    private long windowMs = 2000;
+
+    /** Số order tối đa trong một lần giải; phần dư vào batch kế tiếp. */
+    private int maxOrders = 100;
+
+    /** Chỉ top-N candidate (theo ranking) của mỗi order vào ma trận chi phí. */
+    private int candidatesPerOrder = 10;
+  }
+
+  /** Số shipper push trong mỗi wave (top-K). */
+  private int batchK = 3;
+
+  /** Số candidate tối đa lấy về cho một lần tìm (M). */
+  private int candidateLimit = 100;
+
+  /**
+   * Các vòng bán kính tìm kiếm GEO (km), tăng dần. Mỗi vòng là một GEOSEARCH ASC COUNT; dừng ngay
+   * khi vòng hiện tại đủ {@link #ringMinCandidates} candidate available. Vòng cuối là bán kính tối
+   * đa.
+   */
+  private List<Double> ringsKm = new ArrayList<>(List.of(1.0, 3.0, 10.0, 50.0));
+
+  /** Số candidate available tối thiểu để dừng mở rộng vòng. */
+  private int ringMinCandidates = 6;
+
+  /** COUNT của mỗi GEOSEARCH = candidateLimit * ringScanFactor (bù cho shipper bị lọc bỏ). */
+  private int ringScanFactor = 3;
+
+  /** Thời gian chờ một wave trước khi push wave tiếp theo (T). */
+  private long perBatchTimeoutMs = 8000;
+
+  /** Thời gian chờ trước khi tìm lại từ đầu khi đã hết candidate. */
+  private long retryDelayMs = 60000;
+
+  /** Shipper đã được offer một order sẽ không được offer lại order đó trong khoảng này. */
+  private long offerCooldownMs = 180000;
+
+  /** TTL của lịch sử offer order:{id}:offers (gia hạn mỗi wave). */
+  private long offersTtlSeconds = 7200;
+
+  /** Reassign trong khoảng này sau khi assigned thì dùng lại candidate chưa push của lần trước. */
+  private long reuseCandidatesMs = 60000;
+
+  /** Số lần tìm lại tối đa trước khi bỏ cuộc. */
+  private int maxTries = 5;
+
+  /** Số thread của scheduler chỉ dùng để hẹn giờ tick (không chạy I/O). */
+  private int schedulerThreads = 1;
+
+  /** Xếp hạng candidate theo điểm tổng hợp thay vì chỉ theo khoảng cách. */
+  private Ranking ranking = new Ranking();
+
+  @Data
+  public static class Ranking {
+    private boolean enabled = true;
+
+    /** Trọng số của các thành phần điểm (mỗi thành phần đã chuẩn hoá về [0, 1]). */
+    private double distanceWeight = 0.5;
+
+    private double ratingWeight = 0.15;
+
+    private double acceptanceWeight = 0.25;
+
+    private double idleWeight = 0.1;
+
+    /** Khoảng cách (km) mà điểm khoảng cách còn 1/2. */
+    private double distanceScaleKm = 2.0;
+
+    /** Rating giả định cho shipper chưa có review, và số review "ảo" dùng để làm mượt. */
+    private double priorRating = 4.5;
+
+    private int priorRatingCount = 5;
+
+    /** Acceptance rate giả định cho shipper ít offer, và số offer "ảo" dùng để làm mượt. */
+    private double priorAcceptance = 0.5;
+
+    private int priorOfferCount = 10;
+
+    /**
+     * Offered chạm ngưỡng này thì offered / accepted cùng chia đôi: acceptance là tỉ lệ trên khoảng
+     * vài chục offer gần nhất.
+     */
+    private int acceptanceWindow = 50;
+
+    /** Rảnh lâu hơn ngưỡng này thì điểm idle đạt tối đa. */
+    private long idleCapMs = 1800000;
+  }
+
+  /** Spatial index local (khi candidate-source = local-index). */
+  private Index index = new Index();
+
+  @Data
+  public static class Index {
+    /** Kích thước ô lưới (độ); 0.01 ~ 1.1 km. */
+    private double cellDeg = 0.01;
+
+    /** log2 số bucket của lưới băm. */
+    private int bucketBits = 16;
+
+    private int initialCapacity = 4096;
+
+    /** Chu kỳ nạp lại toàn bộ từ drivers:geo để bù message pub/sub bị mất. */
+    private long resyncMs = 300000;
+  }
+
+  /** Hàng đợi job dispatch trên Redis Stream (consumer group dùng chung giữa các replica). */
+  private Jobs jobs = new Jobs();
+
+  @Data
+  public static class Jobs {
+    private String group = "dispatch-workers";
+
+    /** Tên consumer của replica này; để trống thì dùng HOSTNAME hoặc một UUID ngẫu nhiên. */
+    private String consumerName = "";
+
+    /** Số dispatch tối đa một replica nhận xử lý cùng lúc. */
+    private int maxInFlight = 2000;
+
+    /** COUNT / BLOCK của mỗi lần XREADGROUP. */
+    private int readCount = 50;
+
+    private long blockMs = 2000;
+
+    /** Chu kỳ XCLAIM lại các job đang chạy để giữ idle time thấp (heartbeat). */
+    private long heartbeatMs = 20000;
+
+    /** Job pending idle quá ngưỡng này coi như consumer đã chết và được replica khác nhận lại. */
+    private long reclaimIdleMs = 60000;
+
+    private long reclaimIntervalMs = 15000;
+
+    /** Job bị giao quá số lần này thì bỏ (ack) để không lặp vô hạn. */
+    private int maxDeliveries = 5;
+
+    /** TTL của key chống trùng job theo order. */
+    private long dedupTtlSeconds = 3600;
+
+    /** MAXLEN ~ của stream. */
+    private long maxLen = 100000;
+  }
+}
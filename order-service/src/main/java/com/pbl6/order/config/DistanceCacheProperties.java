@@ -0,0 +1,28 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Cache từng ô của Distance Matrix (prefix {@code gooongmap.cache}). */
+@Configuration
+@ConfigurationProperties(prefix = "gooongmap.cache")
+@Data
+public class DistanceCacheProperties {
+
+  private boolean enabled = true;
+
+  /** Kích thước ô lượng tử hoá toạ độ (m): hai điểm cùng ô được coi là một. */
+  private double quantizeMeters = 50;
+
+  /** LRU trong JVM. */
+  private int localMaxSize = 100000;
+
+  private long localTtlSeconds = 600;
+
+  /** TTL của ô trên Redis (dùng chung giữa các replica). */
+  private long redisTtlSeconds = 86400;
+
+  /** Số ô tối đa trong một lần gọi Goong khi lấy ma trận cho nhiều order một lượt. */
+  private int batchMaxCells = 100;
+}
@@ -1,17 +1,105 @@
 package com.pbl6.order.config;
 
+import com.pbl6.order.util.ConcurrencyLimitedExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Executor riêng cho từng workload (bulkhead), queue có giới hạn và có metrics Micrometer.
+ *
+ * <p>Mọi executor được bọc bởi {@link ExecutorServiceMetrics}: {@code executor.queued}, {@code
+ * executor.active}, {@code executor.idle} (thời gian task chờ trong queue) và {@code executor}
+ * (thời gian chạy), tag {@code name=<workload>}.
+ */
 @Configuration
 public class ExecutorConfig {
 
+  /**
+   * Tick của dispatch engine. Khi đầy queue thì reject: DispatchEngine tự hẹn lại tick thay vì
+   * chặn scheduler.
+   */
   @Bean(destroyMethod = "shutdown")
-  public ExecutorService pushExecutor() {
-    // Tùy chỉnh: bắt đầu với fixed pool 20. Tune theo load thực tế.
-    return Executors.newFixedThreadPool(20);
+  public ExecutorService dispatchExecutor(ExecutorProperties props, MeterRegistry registry) {
+    return build("dispatch", props.getDispatch(), new ThreadPoolExecutor.AbortPolicy(), registry);
+  }
+
+  /**
+   * Xử lý kết quả push batch (PushBatcher). Platform pool đầy -> caller runs; virtual threads vượt
+   * giới hạn -> reject.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService notificationExecutor(ExecutorProperties props, MeterRegistry registry) {
+    return build(
+        "notification",
+        props.getNotification(),
+        new ThreadPoolExecutor.CallerRunsPolicy(),
+        registry);
+  }
+
+  /** Job import hàng loạt; đầy queue thì reject để API trả 503 thay vì chặn request thread. */
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService bulkImportExecutor(ExecutorProperties props, MeterRegistry registry) {
+    return build(
+        "bulk-import", props.getBulkImport(), new ThreadPoolExecutor.AbortPolicy(), registry);
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ScheduledExecutorService dispatchScheduler(
+      DispatchProperties props, MeterRegistry registry) {
+    // Chỉ dùng để hẹn giờ tick của DispatchEngine; phần I/O chạy trên dispatchExecutor.
+    ScheduledExecutorService scheduler =
+        Executors.newScheduledThreadPool(
+            props.getSchedulerThreads(),
+            Thread.ofPlatform().name("dispatch-tick-", 0).daemon().factory());
+    return ExecutorServiceMetrics.monitor(registry, scheduler, "dispatch-scheduler");
+  }
+
+  private static ExecutorService build(
+      String name,
+      ExecutorProperties.Pool pool,
+      RejectedExecutionHandler rejection,
+      MeterRegistry registry) {
+    if (pool.isVirtualThreads()) {
+      ConcurrencyLimitedExecutor executor =
+          new ConcurrencyLimitedExecutor(
+              Executors.newThreadPerTaskExecutor(
+                  Thread.ofVirtual().name(name + "-vt-", 0).factory()),
+              pool.getMaxConcurrency(),
+              pool.getQueueCapacity());
+      Tags tags = Tags.of("name", name);
+      Gauge.builder("executor.queued", executor, ConcurrencyLimitedExecutor::pendingCount)
+          .tags(tags)
+          .description("Tasks waiting for a concurrency permit")
+          .register(registry);
+      Gauge.builder("executor.active", executor, ConcurrencyLimitedExecutor::activeCount)
+          .tags(tags)
+          .description("Tasks currently running")
+          .register(registry);
+      return ExecutorServiceMetrics.monitor(registry, executor, name);
+    }
+
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            pool.getCoreSize(),
+            Math.max(pool.getCoreSize(), pool.getMaxSize()),
+            pool.getKeepAliveSeconds(),
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, pool.getQueueCapacity())),
+            Thread.ofPlatform().name(name + "-", 0).daemon().factory(),
+            rejection);
+    // queued/active/pool size do ExecutorServiceMetrics tự đọc từ ThreadPoolExecutor
+    return ExecutorServiceMetrics.monitor(registry, executor, name);
   }
 }
@@ -0,0 +1,58 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cấu hình executor theo từng loại workload (prefix {@code executors}). Mỗi workload có pool và
+ * hàng đợi riêng để một workload chậm không làm đói workload khác.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "executors")
+@Data
+public class ExecutorProperties {
+
+  /** Tick của dispatch engine (Redis lookup + đưa push vào batch). */
+  private Pool dispatch = Pool.platform(8, 32, 2000);
+
+  /** Gửi notification trạng thái đơn cho user/driver (I/O tới Redis + FCM). */
+  private Pool notification = Pool.virtual(64, 5000);
+
+  /** Job import order hàng loạt chạy nền (mỗi job chiếm một thread đến khi xong). */
+  private Pool bulkImport = Pool.platform(2, 2, 20);
+
+  @Data
+  public static class Pool {
+    /** Chạy task trên virtual thread (Java 21) thay vì platform thread pool. */
+    private boolean virtualThreads;
+
+    /** Platform pool: số thread core / tối đa. */
+    private int coreSize = 4;
+
+    private int maxSize = 16;
+    private long keepAliveSeconds = 60;
+
+    /** Số task tối đa được chờ; vượt quá thì áp dụng rejection policy của workload. */
+    private int queueCapacity = 1000;
+
+    /** Virtual threads: số task được chạy đồng thời tối đa. */
+    private int maxConcurrency = 64;
+
+    static Pool platform(int coreSize, int maxSize, int queueCapacity) {
+      Pool pool = new Pool();
+      pool.setCoreSize(coreSize);
+      pool.setMaxSize(maxSize);
+      pool.setQueueCapacity(queueCapacity);
+      return pool;
+    }
+
+    static Pool virtual(int maxConcurrency, int queueCapacity) {
+      Pool pool = new Pool();
+      pool.setVirtualThreads(true);
+      pool.setMaxConcurrency(maxConcurrency);
+      pool.setQueueCapacity(queueCapacity);
+      return pool;
+    }
+  }
+}
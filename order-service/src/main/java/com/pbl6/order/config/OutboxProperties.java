@@ -0,0 +1,31 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Tham số cho transactional outbox của order và relay đọc nó (prefix {@code outbox}). */
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+@Data
+public class OutboxProperties {
+
+  /** Số event relay khoá và xử lý trong một transaction. */
+  private int batchSize = 100;
+
+  /**
+   * Chu kỳ poll khi không có tín hiệu (ms). Event ghi trên chính replica được relay đánh thức ngay
+   * sau commit; poll chỉ để nhận event của replica khác / event đến hạn thử lại.
+   */
+  private long pollIntervalMs = 500;
+
+  /** Số lần fan-out lỗi tối đa trước khi bỏ event (giữ lại dòng cùng last_error để điều tra). */
+  private int maxAttempts = 10;
+
+  private long retryBaseMs = 1000;
+
+  private long retryMaxMs = 60000;
+
+  /** Dòng đã xử lý được giữ bao lâu trước khi bị xoá. */
+  private long retentionHours = 24;
+}
@@ -0,0 +1,28 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Quét order ONLINE mà lần gọi payment-service lúc tạo order không có kết quả (prefix {@code
+ * payment.link-sweep}).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "payment.link-sweep")
+@Data
+public class PaymentLinkProperties {
+
+  private boolean enabled = true;
+
+  private long intervalMs = 30000;
+
+  /** Chỉ quét order tạo trước chừng này (giây): tránh đụng request createOrder còn đang chờ. */
+  private long minAgeSeconds = 60;
+
+  /** Order vẫn chưa có link sau chừng này (giây) thì bị huỷ. */
+  private long maxAgeSeconds = 900;
+
+  /** Số order tối đa mỗi lần quét. */
+  private int batchSize = 50;
+}
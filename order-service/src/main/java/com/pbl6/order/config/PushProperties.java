@@ -0,0 +1,68 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Tham số cho việc gom và gửi push notification (prefix {@code push}). */
+@Configuration
+@ConfigurationProperties(prefix = "push")
+@Data
+public class PushProperties {
+
+  /** Transport dùng để gửi: {@code firebase} (mặc định) hoặc {@code in-memory} (test/benchmark). */
+  private String transport = "firebase";
+
+  /** Cửa sổ gom push (ms): các push tới trong khoảng này được gửi chung một batch. */
+  private long batchWindowMs = 5;
+
+  /** Số message tối đa trong một batch (giới hạn của FCM sendEach là 500). */
+  private int maxBatchSize = 500;
+
+  /** Near-cache FCM token trong JVM (invalidate qua pub/sub từ auth-service). */
+  private TokenCache tokenCache = new TokenCache();
+
+  @Data
+  public static class TokenCache {
+    private boolean enabled = true;
+
+    private int maxSize = 50000;
+
+    /** Lưới an toàn khi mất message invalidation. */
+    private long ttlSeconds = 300;
+  }
+
+  /** Push gửi riêng từng message qua {@code FirebaseMessagingService} (thông báo trạng thái). */
+  private Direct direct = new Direct();
+
+  @Data
+  public static class Direct {
+    /** Số request FCM đang bay tối đa; phần dư xếp hàng chờ. */
+    private int maxInFlight = 64;
+
+    /** Số push chờ tối đa; vượt quá thì push bị từ chối ngay. */
+    private int maxQueued = 10000;
+
+    /** Số lần thử lại khi FCM lỗi tạm thời (UNAVAILABLE, INTERNAL, QUOTA_EXCEEDED, lỗi mạng). */
+    private int maxRetries = 3;
+
+    /** Backoff = retryBaseMs * 2^lần thử, nhân jitter ngẫu nhiên [0.5, 1.5), tối đa retryMaxMs. */
+    private long retryBaseMs = 200;
+
+    private long retryMaxMs = 5000;
+  }
+
+  /** Gộp thông báo trạng thái dồn dập của cùng một order cho cùng một người nhận. */
+  private Coalesce coalesce = new Coalesce();
+
+  @Data
+  public static class Coalesce {
+    private boolean enabled = true;
+
+    /**
+     * Trạng thái trung gian được giữ tối đa chừng này (ms); trạng thái mới hơn trong cửa sổ thay
+     * thế nó. Trạng thái kết thúc (giao xong, huỷ...) luôn gửi ngay.
+     */
+    private long windowMs = 1500;
+  }
+}
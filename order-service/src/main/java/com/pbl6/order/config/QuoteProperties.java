@@ -0,0 +1,20 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Báo giá tạm của /price-route để createOrder dùng lại (prefix {@code quote}). */
+@Configuration
+@ConfigurationProperties(prefix = "quote")
+@Data
+public class QuoteProperties {
+
+  private boolean enabled = true;
+
+  /** Thời gian sống của báo giá (giây). */
+  private long ttlSeconds = 300;
+
+  /** Khoá HMAC ký quote id; mặc định dùng chung JWT secret. */
+  private String secret;
+}
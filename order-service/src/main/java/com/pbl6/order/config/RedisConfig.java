@@ -2,11 +2,16 @@ package com.pbl6.order.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
@@ -21,4 +26,66 @@ public class RedisConfig {
     template.afterPropertiesSet();
     return template;
   }
+
+  /** Container dùng chung cho pub/sub và keyspace notifications. */
+  @Bean
+  public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory cf) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(cf);
+    return container;
+  }
+
+  /** GEO search + lọc available + lấy FCM token trong một round trip. */
+  @Bean
+  @SuppressWarnings("rawtypes")
+  public RedisScript<List> dispatchCandidatesScript() {
+    return RedisScript.of(new ClassPathResource("scripts/dispatch_candidates.lua"), List.class);
+  }
+
+  /** Claim order atomic: 1 = thành công, 0 = đã có người nhận, -1 = driver đang bận. */
+  @Bean
+  public RedisScript<Long> claimOrderScript() {
+    return RedisScript.of(new ClassPathResource("scripts/claim_order.lua"), Long.class);
+  }
+
+  /** Hoàn tác claimOrderScript khi transaction DB rollback. */
+  @Bean
+  public RedisScript<Long> releaseOrderClaimScript() {
+    return RedisScript.of(new ClassPathResource("scripts/release_order_claim.lua"), Long.class);
+  }
+
+  /** Lọc available + lấy FCM token cho danh sách shipper từ spatial index local. */
+  @Bean
+  @SuppressWarnings("rawtypes")
+  public RedisScript<List> filterAvailableDriversScript() {
+    return RedisScript.of(
+        new ClassPathResource("scripts/filter_available_drivers.lua"), List.class);
+  }
+
+  /** Ghi offer của một wave vào order:{id}:offers + thống kê offered của từng shipper. */
+  @Bean
+  public RedisScript<Long> recordOffersScript() {
+    return RedisScript.of(new ClassPathResource("scripts/record_offers.lua"), Long.class);
+  }
+
+  /**
+   * XADD job dispatch nếu order chưa có job (dedup theo order), REASSIGN thì thay job đang sống;
+   * trả về stream id hoặc null.
+   */
+  @Bean
+  public RedisScript<String> enqueueDispatchJobScript() {
+    return RedisScript.of(new ClassPathResource("scripts/enqueue_dispatch_job.lua"), String.class);
+  }
+
+  /** XACK + XDEL job dispatch đã xong và gỡ key dedup của order. */
+  @Bean
+  public RedisScript<Long> ackDispatchJobScript() {
+    return RedisScript.of(new ClassPathResource("scripts/ack_dispatch_job.lua"), Long.class);
+  }
+
+  /** Xoá FCM token đã chết nếu key vẫn giữ đúng token đó. */
+  @Bean
+  public RedisScript<Long> purgeFcmTokenScript() {
+    return RedisScript.of(new ClassPathResource("scripts/purge_fcm_token.lua"), Long.class);
+  }
 }
@@ -0,0 +1,24 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Tham số cho bộ giải thứ tự giao hàng của order nhiều điểm (prefix {@code route}). */
+@Configuration
+@ConfigurationProperties(prefix = "route")
+@Data
+public class RouteProperties {
+
+  /**
+   * Số điểm giao tối đa giải chính xác bằng DP (bộ nhớ ~ 2^N * N * 9 byte, tối đa 16). Lớn hơn thì
+   * dùng nearest-neighbour + 2-opt / Or-opt.
+   */
+  private int exactMaxDrops = 12;
+
+  /** Thời gian tối đa cho bước cải thiện heuristic (ms); hết giờ trả lời tốt nhất đang có. */
+  private long timeBudgetMs = 50;
+
+  /** Số bộ buffer DP được giữ lại để tái sử dụng giữa các request. */
+  private int bufferPoolSize = 8;
+}
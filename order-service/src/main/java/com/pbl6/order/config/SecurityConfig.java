@@ -1,5 +1,6 @@
 package com.pbl6.order.config;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
@@ -39,6 +40,9 @@ public class SecurityConfig {
         .authorizeHttpRequests(
             auth ->
                 auth
+                    // async dispatch của SSE (đóng / timeout stream) đã được xác thực ở request gốc
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                    .permitAll()
                     // cho phép một số endpoint công khai (ví dụ health) and swagger
                     .requestMatchers(
                         "/actuator/**",
@@ -0,0 +1,17 @@
+package com.pbl6.order.config;
+
+import com.pbl6.order.service.geo.DriverSpatialIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "dispatch.candidate-source", havingValue = "local-index")
+public class SpatialIndexConfig {
+
+  @Bean
+  public DriverSpatialIndex driverSpatialIndex(DispatchProperties props) {
+    DispatchProperties.Index cfg = props.getIndex();
+    return new DriverSpatialIndex(cfg.getCellDeg(), cfg.getBucketBits(), cfg.getInitialCapacity());
+  }
+}
@@ -0,0 +1,24 @@
+package com.pbl6.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/** Tham số cho stream theo dõi order realtime qua SSE (prefix {@code tracking}). */
+@Configuration
+@ConfigurationProperties(prefix = "tracking")
+@Data
+public class TrackingProperties {
+
+  /** Số stream mở tối đa trên một replica; vượt quá trả 503 để client thử lại / poll. */
+  private int maxSubscribers = 10000;
+
+  /** Stream tự đóng sau khoảng này (ms); client kết nối lại. */
+  private long timeoutMs = 1800000;
+
+  /** Chu kỳ gửi comment giữ kết nối qua proxy (nginx proxy_read_timeout 90s). */
+  private long heartbeatMs = 15000;
+
+  /** Khoảng cách tối thiểu giữa hai lần đẩy vị trí shipper cho cùng một order (ms). */
+  private long locationIntervalMs = 2000;
+}
@@ -4,14 +4,29 @@ public final class RedisKeyConstants {
     private RedisKeyConstants() {}
 
     public static final String DRIVERS_GEO_KEY = "drivers:geo";
+    public static final String DRIVERS_AVAILABLE_KEY = "drivers:available"; // SET driver rảnh
+    // khoá để chỉ một replica backfill drivers:available mỗi lần deploy
+    public static final String DRIVERS_AVAILABLE_BACKFILL_LOCK = "drivers:available:backfill";
     public static final String DRIVER_HASH_PREFIX = "driver:"; // full key = driver:{driverId}
-    public static final String ORDER_OFFERS_PREFIX = "order:%s:offers"; // String.format
-    public static final String ORDER_STATE_PREFIX = "order:%s:state";
+    public static final String ORDER_OFFERS_PREFIX = "order:%s:offers"; // ZSET driver->ts
+    // HASH feature dispatch: offered, accepted, rating_sum, rated, free_since
+    public static final String DRIVER_OFFER_STATS_KEY = "driver:%s:offer_stats";
+    public static final String ORDER_STATE_PREFIX = "order:%s:state"; // CLOSED khi huỷ / kết thúc
     public static final String DRIVER_FCM_TOKEN = "driver:%s:fcm_token";
     public static final String USER_FCM_TOKEN = "user:%s:fcm_token";
     public static final String ORDER_ASSIGNEE_KEY_PATTERN = "order:%s:assignee";
     public static final String ORDER_CHANNEL_PATTERN = "order:channel:%s"; // optional nếu dùng pub/sub
     public static final String DRIVER_DELIVERING_ORDER_KEY = "driver:%s:delivering_order_id";
+    // pub/sub vị trí shipper từ auth-service: "U,<id>,<lon>,<lat>" hoặc "R,<id>"
+    public static final String DRIVER_LOCATION_CHANNEL = "drivers:location:changes";
+    // pub/sub từ auth-service: key FCM token vừa đổi / bị xoá
+    public static final String FCM_TOKEN_INVALIDATION_CHANNEL = "fcm:token:invalidate";
+    public static final String DISPATCH_JOBS_STREAM = "dispatch:jobs"; // STREAM job dispatch
+    public static final String DISPATCH_CANCEL_CHANNEL = "dispatch:cancel"; // pub/sub orderId
+    public static final String DISPATCH_JOB_DEDUP_KEY = "dispatch:job:%s"; // orderId -> stream id
+    public static final String PRICING_CONFIG_CHANNEL = "pricing:config:changed"; // pub/sub
+    public static final String PRICE_QUOTE_KEY = "quote:%s"; // nonce -> báo giá /price-route
+    public static final String BULK_IMPORT_JOB_KEY = "bulk:job:%s:%s"; // creatorId, jobId -> job
 
 }
 
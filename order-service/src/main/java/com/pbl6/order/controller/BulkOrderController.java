@@ -0,0 +1,140 @@
+package com.pbl6.order.controller;
+
+import com.pbl6.order.dto.BulkImportResponse;
+import com.pbl6.order.dto.CreateOrderRequest;
+import com.pbl6.order.exception.AppException;
+import com.pbl6.order.service.bulk.BulkImportJobs;
+import com.pbl6.order.service.bulk.BulkOrderCsvParser;
+import com.pbl6.order.service.bulk.BulkOrderImportService;
+import com.pbl6.order.service.bulk.BulkOrderRow;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/bulk")
+@RequiredArgsConstructor
+@Tag(name = "Bulk order", description = "Bulk order import for merchants")
+public class BulkOrderController {
+
+  private static final String TEXT_CSV = "text/csv";
+
+  private final BulkOrderImportService importService;
+  private final BulkImportJobs jobs;
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Import orders (JSON, synchronous)",
+      description =
+          "Array of create-order payloads (CASH only). Every row is validated first; valid rows"
+              + " are created even if others fail. Returns one result per row. Limited to"
+              + " bulk-import.sync-max-orders orders; use POST /bulk/jobs for larger files.")
+  public ResponseEntity<BulkImportResponse> importJson(
+      @RequestBody List<CreateOrderRequest> orders, Authentication auth) {
+    return importSync(fromJson(orders), auth);
+  }
+
+  @PostMapping(consumes = TEXT_CSV)
+  @Operation(
+      summary = "Import orders (CSV, synchronous)",
+      description =
+          "One package per line; lines sharing order_ref form one multi-drop order. Required"
+              + " columns: pickup_detail, pickup_name, pickup_phone, pickup_lat, pickup_lon,"
+              + " receiver_detail, receiver_name, receiver_phone, receiver_lat, receiver_lon,"
+              + " size, weight_kg, image_url. Optional: order_ref, pickup_note, receiver_note,"
+              + " payer_type, category, cod_amount, description, customer_note, scheduled_at."
+              + " An order_ref that already has an order is skipped, so a file can be re-imported"
+              + " safely. Limited to bulk-import.sync-max-orders orders; use POST /bulk/jobs for"
+              + " larger files.")
+  public ResponseEntity<BulkImportResponse> importCsv(
+      @RequestBody String csv, Authentication auth) {
+    return importSync(BulkOrderCsvParser.parse(csv), auth);
+  }
+
+  @PostMapping(path = "/jobs", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Import orders in the background (JSON)",
+      description = "Same as POST /bulk; poll GET /bulk/jobs/{jobId} or open its stream")
+  @ApiResponses({
+    @ApiResponse(responseCode = "202", description = "Job accepted"),
+    @ApiResponse(responseCode = "503", description = "Too many imports in progress")
+  })
+  public ResponseEntity<BulkImportResponse> submitJson(
+      @RequestBody List<CreateOrderRequest> orders, Authentication auth) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .body(jobs.submit(fromJson(orders), principalId(auth)));
+  }
+
+  @PostMapping(path = "/jobs", consumes = TEXT_CSV)
+  @Operation(
+      summary = "Import orders in the background (CSV)",
+      description = "Same format as POST /bulk with text/csv")
+  @ApiResponses({
+    @ApiResponse(responseCode = "202", description = "Job accepted"),
+    @ApiResponse(responseCode = "503", description = "Too many imports in progress")
+  })
+  public ResponseEntity<BulkImportResponse> submitCsv(
+      @RequestBody String csv, Authentication auth) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .body(jobs.submit(BulkOrderCsvParser.parse(csv), principalId(auth)));
+  }
+
+  @GetMapping("/jobs/{jobId}")
+  @Operation(
+      summary = "Bulk import job status",
+      description = "Progress counters; per-row results once status is DONE or FAILED")
+  public ResponseEntity<BulkImportResponse> getJob(
+      @PathVariable String jobId, Authentication auth) {
+    return ResponseEntity.ok(jobs.get(principalId(auth), jobId));
+  }
+
+  @GetMapping("/jobs/{jobId}/stream")
+  @Operation(
+      summary = "Stream bulk import progress (SSE)",
+      description =
+          "`progress` after every chunk, then one `result` with per-row results and the stream"
+              + " closes.")
+  public SseEmitter streamJob(@PathVariable String jobId, Authentication auth) {
+    return jobs.stream(principalId(auth), jobId);
+  }
+
+  private ResponseEntity<BulkImportResponse> importSync(
+      List<BulkOrderRow> rows, Authentication auth) {
+    UUID creatorId = principalId(auth);
+    importService.checkSyncSize(rows);
+    return ResponseEntity.ok(importService.importOrders(rows, creatorId, null, p -> {}));
+  }
+
+  private static List<BulkOrderRow> fromJson(List<CreateOrderRequest> orders) {
+    if (orders == null) throw AppException.badRequest("Body must be an array of orders");
+    List<BulkOrderRow> rows = new ArrayList<>(orders.size());
+    for (int i = 0; i < orders.size(); i++) rows.add(BulkOrderRow.of(i + 1, null, orders.get(i)));
+    return rows;
+  }
+
+  private static UUID principalId(Authentication auth) {
+    if (auth == null || auth.getName() == null) throw AppException.forbidden("Access denied");
+    try {
+      return UUID.fromString(auth.getName());
+    } catch (Exception ex) {
+      throw AppException.badRequest("Invalid principal id");
+    }
+  }
+}
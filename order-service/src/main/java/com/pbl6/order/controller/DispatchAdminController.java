@@ -0,0 +1,49 @@
+package com.pbl6.order.controller;
+
+import com.pbl6.order.dto.DispatchStatusResponse;
+import com.pbl6.order.service.dispatch.DispatchEngine;
+import com.pbl6.order.service.dispatch.DispatchState;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Comparator;
+import java.util.List;
+
+@RestController
+@RequestMapping("/dispatch")
+@RequiredArgsConstructor
+@Tag(name = "Dispatch", description = "Dispatch engine inspection")
+public class DispatchAdminController {
+
+  private final DispatchEngine dispatchEngine;
+
+  @GetMapping("/active")
+  @Operation(
+      summary = "In-flight dispatches",
+      description = "Các dispatch đang chạy trên instance này, cũ nhất trước")
+  @PreAuthorize("hasAuthority('ADMIN')")
+  public ResponseEntity<List<DispatchStatusResponse>> getActiveDispatches() {
+    long now = System.currentTimeMillis();
+    List<DispatchStatusResponse> resp =
+        dispatchEngine.activeDispatches().stream()
+            .sorted(Comparator.comparingLong(DispatchState::getStartedAtMs))
+            .map(
+                s ->
+                    new DispatchStatusResponse(
+                        s.getOrderId(),
+                        s.getPhase().name(),
+                        s.getAttempt(),
+                        s.getWaves(),
+                        s.getCandidateCount(),
+                        s.getRedisCalls(),
+                        now - s.getStartedAtMs()))
+            .toList();
+    return ResponseEntity.ok(resp);
+  }
+}
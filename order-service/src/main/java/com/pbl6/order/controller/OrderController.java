@@ -5,6 +5,10 @@ import com.pbl6.order.dto.payment.PaymentSuccessRequest;
 import com.pbl6.order.entity.PackageEntity;
 import com.pbl6.order.exception.AppException;
 import com.pbl6.order.service.OrderService;
+import com.pbl6.order.service.pricing.PricingSnapshot;
+import com.pbl6.order.service.pricing.PricingSnapshotHolder;
+import com.pbl6.order.service.quote.PriceQuoteService;
+import com.pbl6.order.service.tracking.OrderTrackingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -25,6 +29,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -35,6 +40,9 @@ import java.util.stream.Collectors;
 @Tag(name = "Order", description = "Order management APIs")
 public class OrderController {
   private final OrderService orderService;
+  private final OrderTrackingService orderTrackingService;
+  private final PriceQuoteService priceQuoteService;
+  private final PricingSnapshotHolder pricingSnapshots;
 
   @PostMapping
   @Operation(
@@ -295,6 +303,27 @@ public class OrderController {
     return ResponseEntity.ok(resp);
   }
 
+  @GetMapping("/{id}/stream")
+  @Operation(
+      summary = "Stream order tracking (SSE)",
+      description =
+          "Server-Sent Events for one order: `status` on every status change (first event is the"
+              + " current status) and `location` with the assigned shipper position, at most once"
+              + " every tracking.location-interval-ms. The stream closes when the order reaches a"
+              + " terminal status; clients should reconnect on timeout instead of polling GET"
+              + " /{id}.")
+  @ApiResponses({
+    @ApiResponse(responseCode = "200", description = "Event stream opened"),
+    @ApiResponse(
+        responseCode = "403",
+        description = "Not the order creator, its assigned shipper or an admin"),
+    @ApiResponse(responseCode = "404", description = "Order not found"),
+    @ApiResponse(responseCode = "503", description = "Too many open streams on this instance")
+  })
+  public SseEmitter streamOrder(@PathVariable UUID id, Authentication auth) {
+    return orderTrackingService.subscribe(id, parsePrincipalId(auth), extractRoles(auth));
+  }
+
   private Sort buildSortFromParam(String sortParam) {
     // Accept patterns:
     // "createdAt,desc"
@@ -423,9 +452,14 @@ public class OrderController {
   @PostMapping("/price-route")
   public ResponseEntity<List<PriceAndRouteDto>> computePriceAndRoute(
       @RequestBody CreateOrderRequest request) {
-    List<PriceAndRouteDto> resp = orderService.computePriceAndRouteForOrder(request);
+    // một snapshot cho cả tính giá và báo giá: reload config giữa chừng không làm báo giá mang
+    // fingerprint của config khác
+    PricingSnapshot pricing = pricingSnapshots.current();
+    List<PriceAndRouteDto> resp = orderService.computePriceAndRouteForOrder(request, pricing);
     if (resp.isEmpty()) return ResponseEntity.status(503).build();
-    return ResponseEntity.ok(resp);
+    String quoteId = priceQuoteService.issue(request, resp, pricing);
+    if (quoteId == null) return ResponseEntity.ok(resp);
+    return ResponseEntity.ok().header(PriceQuoteService.QUOTE_HEADER, quoteId).body(resp);
   }
 
   @PostMapping("/assign-shipper")
@@ -0,0 +1,44 @@
+package com.pbl6.order.controller;
+
+import com.pbl6.order.dto.PricingSnapshotResponse;
+import com.pbl6.order.service.pricing.PricingSnapshot;
+import com.pbl6.order.service.pricing.PricingSnapshotHolder;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/pricing")
+@RequiredArgsConstructor
+@Tag(name = "Pricing", description = "Pricing config snapshot")
+public class PricingAdminController {
+
+  private final PricingSnapshotHolder pricingSnapshots;
+
+  @GetMapping("/snapshot")
+  @Operation(summary = "Current pricing snapshot", description = "Bản chụp config đang dùng")
+  @PreAuthorize("hasAuthority('ADMIN')")
+  public ResponseEntity<PricingSnapshotResponse> getSnapshot() {
+    return ResponseEntity.ok(toResponse(pricingSnapshots.current()));
+  }
+
+  @PostMapping("/reload")
+  @Operation(
+      summary = "Reload pricing config",
+      description = "Gọi sau khi sửa shipping_config / size_config; mọi replica nạp lại")
+  @PreAuthorize("hasAuthority('ADMIN')")
+  public ResponseEntity<PricingSnapshotResponse> reload() {
+    return ResponseEntity.ok(toResponse(pricingSnapshots.reloadAndBroadcast()));
+  }
+
+  private static PricingSnapshotResponse toResponse(PricingSnapshot s) {
+    return new PricingSnapshotResponse(
+        Long.toHexString(s.fingerprint()), s.loadedAtMs(), s.minFee());
+  }
+}
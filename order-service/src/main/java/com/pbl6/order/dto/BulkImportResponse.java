@@ -0,0 +1,16 @@
+package com.pbl6.order.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Progress / result of a bulk order import")
+public record BulkImportResponse(
+    @Schema(description = "Job id for async imports, null for synchronous ones") String jobId,
+    @Schema(description = "RUNNING, DONE or FAILED") String status,
+    @Schema(description = "Orders in the file") int total,
+    @Schema(description = "Orders processed so far") int processed,
+    @Schema(description = "Orders created") int created,
+    @Schema(description = "Orders rejected") int failed,
+    @Schema(description = "Per-order results, only once the import has finished")
+        List<BulkImportRowResult> results) {}
@@ -0,0 +1,13 @@
+package com.pbl6.order.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+@Schema(description = "Result of one order in a bulk import")
+public record BulkImportRowResult(
+    @Schema(description = "1-based row: array index for JSON, first line number for CSV") int row,
+    @Schema(description = "Merchant reference (order_ref column for CSV)") String reference,
+    @Schema(description = "Created order id, null if the row failed") UUID orderId,
+    @Schema(description = "Total delivery fee of the created order") Double totalAmount,
+    @Schema(description = "Why the row was rejected, null on success") String error) {}
@@ -23,4 +23,6 @@ public record CreateOrderRequest(
     @Schema(description = "Whether a thermal bag is requested") Boolean thermalBag,
     @Schema(description = "Return to pickup location when COD fails") Boolean returnToPickupWhenCod,
     @Schema(description = "Scheduled pickup time in ISO-8601 format") String scheduledAt,
-    @Schema(description = "Payment method for the order") PaymentMethod paymentMethod) {}
+    @Schema(description = "Payment method for the order") PaymentMethod paymentMethod,
+    @Schema(description = "Quote id returned by /price-route in the X-Quote-Id header")
+        String quoteId) {}
@@ -0,0 +1,13 @@
+package com.pbl6.order.dto;
+
+import java.util.UUID;
+
+/** Một dispatch đang chạy trên instance hiện tại (admin). */
+public record DispatchStatusResponse(
+    UUID orderId,
+    String phase,
+    int attempt,
+    int waves,
+    int candidates,
+    int redisCalls,
+    long ageMs) {}
@@ -0,0 +1,4 @@
+package com.pbl6.order.dto;
+
+/** Bản chụp pricing đang dùng trên instance hiện tại (admin). */
+public record PricingSnapshotResponse(String fingerprint, long loadedAtMs, long minFee) {}
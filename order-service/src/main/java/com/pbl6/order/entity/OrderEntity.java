@@ -15,7 +15,12 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "orders")
+@Table(
+    name = "orders",
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_orders_creator_merchant_ref",
+            columnNames = {"creator_id", "merchant_ref"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -40,6 +45,19 @@ public class OrderEntity {
   @Column(name = "payment_status", nullable = false)
   private PaymentStatus paymentStatus = PaymentStatus.PENDING;
 
+  // chỉ có với order ONLINE
+  @Enumerated(EnumType.STRING)
+  @Column(name = "payment_link_status")
+  private PaymentLinkStatus paymentLinkStatus;
+
+  // thanh toán về sau khi order đã huỷ: cần hoàn tiền thủ công
+  @Column(name = "refund_required_at")
+  private LocalDateTime refundRequiredAt;
+
+  // mã order phía merchant (order_ref khi import hàng loạt); null với order tạo lẻ
+  @Column(name = "merchant_ref", length = 100)
+  private String merchantRef;
+
   // dùng BigDecimal cho tiền
   @Column(name = "total_amount", precision = 12, scale = 2, nullable = false)
   private BigDecimal totalAmount = BigDecimal.ZERO;
@@ -0,0 +1,58 @@
+package com.pbl6.order.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Event domain của order, ghi cùng transaction với thay đổi order và được relay đọc lại sau commit.
+ * Dòng có {@code processed_at} khác null là đã xử lý xong (hoặc bỏ cuộc sau quá nhiều lần lỗi).
+ */
+@Entity
+@Table(
+    name = "order_outbox",
+    indexes = @Index(name = "idx_order_outbox_pending", columnList = "processed_at, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderOutboxEntity {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "event_type", nullable = false, length = 64)
+  private String eventType;
+
+  @Column(name = "aggregate_id", nullable = false)
+  private UUID aggregateId;
+
+  @Column(name = "payload", nullable = false, columnDefinition = "text")
+  private String payload;
+
+  @Column(name = "attempts", nullable = false)
+  private int attempts;
+
+  @Column(name = "last_error", columnDefinition = "text")
+  private String lastError;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+
+  /** Relay chỉ lấy dòng đã tới hạn; dùng để lùi lần thử lại sau khi lỗi. */
+  @Column(name = "available_at", nullable = false)
+  private LocalDateTime availableAt;
+
+  @Column(name = "processed_at")
+  private LocalDateTime processedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    LocalDateTime now = LocalDateTime.now();
+    this.createdAt = now;
+    if (this.availableAt == null) this.availableAt = now;
+  }
+}
@@ -39,5 +39,21 @@ public enum OrderStatus {
   CANCELLED_BY_SENDER, // Người gửi hủy
   CANCELLED_BY_DRIVER, // Tài xế hủy
   CANCELLED_NO_DRIVER, // Hệ thống không tìm được tài xế
-  ORDER_CANCELLED // Đơn hàng bị hủy (trạng thái kết thúc)
+  ORDER_CANCELLED; // Đơn hàng bị hủy (trạng thái kết thúc)
+
+  /** Order đã kết thúc (giao xong / trả hàng / huỷ): không còn trạng thái nào sau đó. */
+  public boolean isTerminal() {
+    return switch (this) {
+      case DELIVERED,
+          DELIVERED_WITH_ISSUES,
+          DELIVERY_FAILED,
+          RETURNED,
+          CANCELLED_BY_DRIVER,
+          CANCELLED_BY_SENDER,
+          CANCELLED_NO_DRIVER,
+          ORDER_CANCELLED ->
+          true;
+      default -> false;
+    };
+  }
 }
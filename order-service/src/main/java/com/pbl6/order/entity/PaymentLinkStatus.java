@@ -0,0 +1,8 @@
+package com.pbl6.order.entity;
+
+/** Trạng thái tạo link thanh toán cho order ONLINE (tạo sau khi order đã commit). */
+public enum PaymentLinkStatus {
+  PENDING, // order đã lưu, chưa gọi payment-service xong
+  CREATED, // đã có link thanh toán
+  FAILED // payment-service lỗi, order bị huỷ
+}
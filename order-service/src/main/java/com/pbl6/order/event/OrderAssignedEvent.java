@@ -5,10 +5,13 @@ import java.util.UUID;
 public class OrderAssignedEvent {
     private final UUID orderId;
     private final UUID creatorId;
-    public OrderAssignedEvent(UUID orderId, UUID creatorId) {
+    private final UUID shipperId;
+    public OrderAssignedEvent(UUID orderId, UUID creatorId, UUID shipperId) {
         this.orderId = orderId;
         this.creatorId = creatorId;
+        this.shipperId = shipperId;
     }
     public UUID getOrderId() { return orderId; }
     public UUID getCreatorId() { return creatorId; }
+    public UUID getShipperId() { return shipperId; }
 }
@@ -6,6 +6,7 @@ public class OrderCreatedEvent {
   private final UUID orderId;
   private final double pickupLon;
   private final double pickupLat;
+  private final long createdAtMs;
 
   //    private final boolean scheduled;
 
@@ -16,6 +17,15 @@ public class OrderCreatedEvent {
     this.pickupLon = pickupLon;
     this.pickupLat = pickupLat;
     //        this.scheduled = scheduled;
+    this.createdAtMs = System.currentTimeMillis();
+  }
+
+  /** Dựng lại event từ outbox, giữ thời điểm tạo gốc. */
+  public OrderCreatedEvent(UUID orderId, double pickupLon, double pickupLat, long createdAtMs) {
+    this.orderId = orderId;
+    this.pickupLon = pickupLon;
+    this.pickupLat = pickupLat;
+    this.createdAtMs = createdAtMs;
   }
 
   public UUID getOrderId() {
@@ -29,5 +39,9 @@ public class OrderCreatedEvent {
   public double getPickupLat() {
     return pickupLat;
   }
+
+  public long getCreatedAtMs() {
+    return createdAtMs;
+  }
   //    public boolean isScheduled() { return scheduled; }
 }
@@ -0,0 +1,46 @@
+package com.pbl6.order.event;
+
+import java.util.UUID;
+
+/** Order chuyển sang REASSIGNING_DRIVER: cần tìm shipper mới từ điểm lấy hàng hiện tại. */
+public class OrderReassignRequestedEvent {
+  private final UUID orderId;
+  private final UUID previousShipper;
+  private final double pickupLon;
+  private final double pickupLat;
+  private final long createdAtMs;
+
+  public OrderReassignRequestedEvent(
+      UUID orderId, UUID previousShipper, double pickupLon, double pickupLat) {
+    this(orderId, previousShipper, pickupLon, pickupLat, System.currentTimeMillis());
+  }
+
+  public OrderReassignRequestedEvent(
+      UUID orderId, UUID previousShipper, double pickupLon, double pickupLat, long createdAtMs) {
+    this.orderId = orderId;
+    this.previousShipper = previousShipper;
+    this.pickupLon = pickupLon;
+    this.pickupLat = pickupLat;
+    this.createdAtMs = createdAtMs;
+  }
+
+  public UUID getOrderId() {
+    return orderId;
+  }
+
+  public UUID getPreviousShipper() {
+    return previousShipper;
+  }
+
+  public double getPickupLon() {
+    return pickupLon;
+  }
+
+  public double getPickupLat() {
+    return pickupLat;
+  }
+
+  public long getCreatedAtMs() {
+    return createdAtMs;
+  }
+}
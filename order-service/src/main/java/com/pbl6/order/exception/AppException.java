@@ -26,7 +26,15 @@ public class AppException extends RuntimeException {
     return new AppException(msg, HttpStatus.INTERNAL_SERVER_ERROR);
   }
 
+  public static AppException conflict(String msg) {
+    return new AppException(msg, HttpStatus.CONFLICT);
+  }
+
   public static AppException forbidden(String msg) {
     return new AppException(msg, HttpStatus.FORBIDDEN);
   }
+
+  public static AppException serviceUnavailable(String msg) {
+    return new AppException(msg, HttpStatus.SERVICE_UNAVAILABLE);
+  }
 }
@@ -2,17 +2,16 @@ package com.pbl6.order.listener;
 
 import com.pbl6.order.event.OrderAssignedEvent;
 import com.pbl6.order.service.FirebaseMessagingService;
+import com.pbl6.order.service.push.FcmTokenCache;
+import com.pbl6.order.service.push.PushRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
 
 import static com.pbl6.order.constant.RedisKeyConstants.USER_FCM_TOKEN;
 
@@ -21,70 +20,55 @@ public class CustomerNotificationListener {
 
   private static final Logger log = LoggerFactory.getLogger(CustomerNotificationListener.class);
 
-  private final RedisTemplate<String, String> redisTemplate;
+  private final FcmTokenCache fcmTokenCache;
   private final FirebaseMessagingService firebaseMessagingService;
-  private final ExecutorService pushExecutor;
 
   public CustomerNotificationListener(
-      RedisTemplate<String, String> redisTemplate,
-      FirebaseMessagingService firebaseMessagingService,
-      ExecutorService pushExecutor) {
-    this.redisTemplate = redisTemplate;
+      FcmTokenCache fcmTokenCache,
+      FirebaseMessagingService firebaseMessagingService) {
+    this.fcmTokenCache = fcmTokenCache;
     this.firebaseMessagingService = firebaseMessagingService;
-    this.pushExecutor = pushExecutor;
   }
 
-  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+  @EventListener
   public void onOrderAssigned(OrderAssignedEvent ev) {
     UUID creatorId = ev.getCreatorId();
     String orderIdStr = ev.getOrderId().toString();
     String title = "Đơn hàng của bạn đã có tài xế";
     String body = "Vui lòng kiểm tra trạng thái đơn hàng của bạn";
 
+    String userFcmTokenKey = String.format(USER_FCM_TOKEN, creatorId);
+    String fcmToken;
     try {
-      pushExecutor.submit(
-          () -> {
-            try {
-              String userFcmTokenKey = String.format(USER_FCM_TOKEN, creatorId);
-              String fcmToken = redisTemplate.opsForValue().get(userFcmTokenKey);
-              if (fcmToken != null && !fcmToken.isEmpty()) {
-                Map<String, String> data = new HashMap<>();
-                data.put("status", "🚗 Đơn hàng của bạn đã có tài xế");
-                data.put("orderID", orderIdStr);
-                data.put("message", body);
+      fcmToken = fcmTokenCache.get(userFcmTokenKey);
+    } catch (Exception ex) {
+      log.error("Failed to read FCM token for order={} user={}", orderIdStr, creatorId, ex);
+      return;
+    }
+    if (fcmToken == null || fcmToken.isEmpty()) {
+      log.info("No FCM token found for user={}, key={}", creatorId, userFcmTokenKey);
+      return;
+    }
+
+    Map<String, String> data = new HashMap<>();
+    data.put("status", "🚗 Đơn hàng của bạn đã có tài xế");
+    data.put("orderID", orderIdStr);
+    data.put("message", body);
 
-                firebaseMessagingService.sendNotificationWithData(fcmToken, title, body, data);
+    // async: FCM round trip không giữ thread commit
+    firebaseMessagingService
+        .send(new PushRequest(fcmToken, userFcmTokenKey, null, title, body, data))
+        .whenComplete(
+            (id, ex) -> {
+              if (ex != null) {
+                log.error(
+                    "Error when sending push for order={} to user={}", orderIdStr, creatorId, ex);
+              } else {
                 log.info(
                     "Pushed order-assigned notification for order={} to user={}",
                     orderIdStr,
                     creatorId);
-              } else {
-                log.info("No FCM token found for user={}, key={}", creatorId, userFcmTokenKey);
               }
-            } catch (Exception ex) {
-              log.error(
-                  "Error when sending push for order={} to user={}", orderIdStr, creatorId, ex);
-            }
-          });
-    } catch (Exception submitEx) {
-      // fallback: best-effort synchronous send (ngăn app crash)
-      log.warn(
-          "Push executor rejected or failed, running fallback send for order={}",
-          orderIdStr,
-          submitEx);
-      try {
-        String userFcmTokenKey = String.format(USER_FCM_TOKEN, creatorId);
-        String fcmToken = redisTemplate.opsForValue().get(userFcmTokenKey);
-        if (fcmToken != null && !fcmToken.isEmpty()) {
-          Map<String, String> data = new HashMap<>();
-          data.put("status", "🚗 Đơn hàng của bạn đã có tài xế");
-          data.put("orderID", orderIdStr);
-          data.put("message", body);
-          firebaseMessagingService.sendNotificationWithData(fcmToken, title, body, data);
-        }
-      } catch (Exception ex) {
-        log.error("Fallback send also failed for order={} user={}", orderIdStr, creatorId, ex);
-      }
-    }
+            });
   }
 }
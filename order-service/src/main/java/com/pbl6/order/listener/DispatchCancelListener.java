@@ -0,0 +1,49 @@
+package com.pbl6.order.listener;
+
+import com.pbl6.order.service.dispatch.DispatchEngine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DISPATCH_CANCEL_CHANNEL;
+
+/**
+ * Nghe channel dispatch:cancel: order bị huỷ / kết thúc ở bất kỳ replica nào thì dừng dispatch của
+ * order đó ngay trên replica này. Mất message cũng không sao, tick kế tiếp sẽ thấy
+ * order:{id}:state.
+ */
+@Slf4j
+@Component
+public class DispatchCancelListener implements MessageListener {
+
+  private final RedisMessageListenerContainer container;
+  private final DispatchEngine dispatchEngine;
+
+  public DispatchCancelListener(
+      RedisMessageListenerContainer container, DispatchEngine dispatchEngine) {
+    this.container = container;
+    this.dispatchEngine = dispatchEngine;
+  }
+
+  @PostConstruct
+  public void subscribe() {
+    container.addMessageListener(this, new ChannelTopic(DISPATCH_CANCEL_CHANNEL));
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    try {
+      dispatchEngine.cancel(UUID.fromString(body));
+    } catch (IllegalArgumentException ex) {
+      log.debug("Ignoring malformed dispatch cancel message {}", body);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.pbl6.order.listener;
+
+import com.pbl6.order.service.dispatch.DispatchEngine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Nghe keyspace notification của key order:{id}:assignee. Khi key được SET (ở bất kỳ replica nào)
+ * thì dừng dispatch của order đó ngay, không chờ tới tick tiếp theo.
+ *
+ * <p>Cần Redis bật notify-keyspace-events (ít nhất "K$"); hàm {@link #subscribe()} sẽ cố bật nếu
+ * server cho phép CONFIG SET. Nếu không bật được, dispatch vẫn dừng ở tick kế tiếp.
+ */
+@Slf4j
+@Component
+public class OrderAssigneeKeyspaceListener implements MessageListener {
+
+  private static final String ASSIGNEE_KEYSPACE_PATTERN = "__keyspace@*__:order:*:assignee";
+
+  private final RedisMessageListenerContainer container;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final DispatchEngine dispatchEngine;
+
+  public OrderAssigneeKeyspaceListener(
+      RedisMessageListenerContainer container,
+      RedisTemplate<String, String> redisTemplate,
+      DispatchEngine dispatchEngine) {
+    this.container = container;
+    this.redisTemplate = redisTemplate;
+    this.dispatchEngine = dispatchEngine;
+  }
+
+  @PostConstruct
+  public void subscribe() {
+    enableKeyspaceEvents();
+    container.addMessageListener(this, new PatternTopic(ASSIGNEE_KEYSPACE_PATTERN));
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String event = new String(message.getBody(), StandardCharsets.UTF_8);
+    if (!"set".equals(event)) return;
+
+    // channel = __keyspace@0__:order:{id}:assignee
+    String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+    int start = channel.indexOf(":order:");
+    int end = channel.lastIndexOf(":assignee");
+    if (start < 0 || end <= start) return;
+    try {
+      dispatchEngine.onOrderAssigned(UUID.fromString(channel.substring(start + 7, end)));
+    } catch (IllegalArgumentException ex) {
+      log.debug("Ignoring keyspace event on unexpected key {}", channel);
+    }
+  }
+
+  private void enableKeyspaceEvents() {
+    try {
+      redisTemplate.execute(
+          (RedisConnection connection) -> {
+            Properties current = connection.serverCommands().getConfig("notify-keyspace-events");
+            String flags =
+                current == null ? "" : current.getProperty("notify-keyspace-events", "");
+            String merged = flags;
+            if (merged.indexOf('K') < 0) merged += "K";
+            // 'A' là alias của "g$lshzxet" nên đã bao gồm '$'
+            if (merged.indexOf('$') < 0 && merged.indexOf('A') < 0) merged += "$";
+            if (!merged.equals(flags)) {
+              connection.serverCommands().setConfig("notify-keyspace-events", merged);
+              log.info("Enabled Redis keyspace notifications: {}", merged);
+            }
+            return null;
+          });
+    } catch (Exception ex) {
+      log.warn(
+          "Cannot enable Redis keyspace notifications ({}), dispatch will rely on tick polling",
+          ex.getMessage());
+    }
+  }
+}
@@ -1,24 +1,82 @@
 package com.pbl6.order.listener;
 
+import com.pbl6.order.config.DispatchProperties;
 import com.pbl6.order.event.OrderCreatedEvent;
+import com.pbl6.order.event.OrderReassignRequestedEvent;
 import com.pbl6.order.service.ShipperPushService;
+import com.pbl6.order.service.dispatch.DispatchJobQueue;
+import com.pbl6.order.service.dispatch.DispatchKind;
+import com.pbl6.order.service.dispatch.DispatchRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionalEventListener;
-import org.springframework.transaction.event.TransactionPhase;
 
+@Slf4j
 @Component
 public class OrderEventListener {
 
+  private final DispatchJobQueue dispatchJobQueue;
+  private final DispatchProperties dispatchProperties;
   private final ShipperPushService shipperPushService;
 
-  public OrderEventListener(ShipperPushService shipperPushService) {
+  public OrderEventListener(
+      DispatchJobQueue dispatchJobQueue,
+      DispatchProperties dispatchProperties,
+      ShipperPushService shipperPushService) {
+    this.dispatchJobQueue = dispatchJobQueue;
+    this.dispatchProperties = dispatchProperties;
     this.shipperPushService = shipperPushService;
   }
 
-  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+  @EventListener
   public void handleOrderCreated(OrderCreatedEvent evt) {
-    int batchK = 3; // top-k per batch
-    shipperPushService.pushToNearestShippersAsync(
-        evt.getOrderId(), evt.getPickupLon(), evt.getPickupLat(), batchK);
+    dispatch(
+        new DispatchRequest(
+            evt.getOrderId(),
+            evt.getPickupLon(),
+            evt.getPickupLat(),
+            dispatchProperties.getBatchK(),
+            evt.getCreatedAtMs(),
+            DispatchKind.FIRST,
+            null));
+  }
+
+  /** Shipper trả order (REASSIGNING_DRIVER): loại shipper cũ rồi dispatch lại từ điểm hiện tại. */
+  @EventListener
+  public void handleReassignRequested(OrderReassignRequestedEvent evt) {
+    if (evt.getPreviousShipper() != null) {
+      try {
+        shipperPushService.excludeDriver(evt.getOrderId(), evt.getPreviousShipper());
+      } catch (Exception ex) {
+        log.warn(
+            "Failed to exclude driver {} from order {}: {}",
+            evt.getPreviousShipper(),
+            evt.getOrderId(),
+            ex.getMessage());
+      }
+    }
+    dispatch(
+        new DispatchRequest(
+            evt.getOrderId(),
+            evt.getPickupLon(),
+            evt.getPickupLat(),
+            dispatchProperties.getBatchK(),
+            evt.getCreatedAtMs(),
+            DispatchKind.REASSIGN,
+            evt.getPreviousShipper()));
+  }
+
+  /**
+   * Lỗi ghi job được ném ra để outbox relay thử lại event sau (enqueue chống trùng theo order; job
+   * REASSIGN thay job cũ nên không bị bỏ).
+   */
+  private void dispatch(DispatchRequest request) {
+    if (!dispatchJobQueue.enqueue(request)) {
+      // FIRST trùng là bình thường (outbox relay giao lại event)
+      log.debug(
+          "{} dispatch for order {} not queued: job already live",
+          request.kind(),
+          request.orderId());
+    }
   }
 }
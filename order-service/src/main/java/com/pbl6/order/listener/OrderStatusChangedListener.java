@@ -4,17 +4,17 @@ import com.pbl6.order.dto.NotifyPayload;
 import com.pbl6.order.entity.OrderStatus;
 import com.pbl6.order.event.OrderStatusChangedEvent;
 import com.pbl6.order.service.FirebaseMessagingService;
+import com.pbl6.order.service.push.FcmTokenCache;
+import com.pbl6.order.service.push.NotificationCoalescer;
+import com.pbl6.order.service.push.PushRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
 
 import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_FCM_TOKEN;
 import static com.pbl6.order.constant.RedisKeyConstants.USER_FCM_TOKEN;
@@ -24,20 +24,21 @@ import static com.pbl6.order.entity.OrderStatus.*;
 public class OrderStatusChangedListener {
 
   private static final Logger log = LoggerFactory.getLogger(OrderStatusChangedListener.class);
-  private final RedisTemplate<String, String> redisTemplate;
+
+  private final FcmTokenCache fcmTokenCache;
   private final FirebaseMessagingService firebaseMessagingService;
-  private final ExecutorService pushExecutor;
+  private final NotificationCoalescer coalescer;
 
   public OrderStatusChangedListener(
-      RedisTemplate<String, String> redisTemplate,
+      FcmTokenCache fcmTokenCache,
       FirebaseMessagingService firebaseMessagingService,
-      ExecutorService pushExecutor) {
-    this.redisTemplate = redisTemplate;
+      NotificationCoalescer coalescer) {
+    this.fcmTokenCache = fcmTokenCache;
     this.firebaseMessagingService = firebaseMessagingService;
-    this.pushExecutor = pushExecutor;
+    this.coalescer = coalescer;
   }
 
-  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+  @EventListener
   public void onOrderStatusChanged(OrderStatusChangedEvent ev) {
     UUID creatorId = ev.getCreatorId();
     UUID assignedShipper = ev.getNewShipper();
@@ -48,84 +49,56 @@ public class OrderStatusChangedListener {
     NotifyPayload userPayload = buildUserPayload(to, orderId, assignedShipper);
     NotifyPayload driverPayload = buildDriverPayload(to, orderId, assignedShipper);
 
-    // submit to executor (non-blocking)
-    try {
-      pushExecutor.submit(
-          () -> {
-            // notify user
-            if (userPayload != null && creatorId != null) {
-              try {
-                String userToken =
-                    redisTemplate.opsForValue().get(String.format(USER_FCM_TOKEN, creatorId));
-                if (userToken != null && !userToken.isEmpty()) {
-                  firebaseMessagingService.sendNotificationWithData(
-                      userToken, userPayload.title, userPayload.body, userPayload.data);
-                  log.info("Sent user notification for order={} user={}", orderId, creatorId);
-                } else {
-                  log.debug("No user token for user={}, order={}", creatorId, orderId);
-                }
-              } catch (Exception ex) {
-                log.error(
-                    "Error sending user notification for order={} user={}", orderId, creatorId, ex);
-              }
-            }
+    // trạng thái trung gian được gộp theo người nhận + order; trạng thái kết thúc gửi ngay
+    boolean terminal = to != null && to.isTerminal();
+    if (userPayload != null && creatorId != null) {
+      String tokenKey = String.format(USER_FCM_TOKEN, creatorId);
+      coalescer.submit(
+          tokenKey + "|" + orderId,
+          "user",
+          terminal,
+          () -> notify(tokenKey, null, userPayload, orderId, "user"));
+    }
+    if (driverPayload != null && assignedShipper != null) {
+      String tokenKey = String.format(DRIVER_FCM_TOKEN, assignedShipper);
+      coalescer.submit(
+          tokenKey + "|" + orderId,
+          "driver",
+          terminal,
+          () -> notify(tokenKey, assignedShipper.toString(), driverPayload, orderId, "driver"));
+    }
+  }
 
-            // notify driver
-            if (driverPayload != null && assignedShipper != null) {
-              try {
-                  String driverKey = String.format(DRIVER_FCM_TOKEN, assignedShipper);
-                String driverToken =
-                    redisTemplate
-                        .opsForValue()
-                        .get(String.format(driverKey));
-                if (driverToken != null && !driverToken.isEmpty()) {
-                  firebaseMessagingService.sendNotificationWithData(
-                      driverToken, driverPayload.title, driverPayload.body, driverPayload.data);
-                  log.info(
-                      "Sent driver notification for order={} driver={}", orderId, assignedShipper);
-                } else {
-                  log.debug("No driver token for driver={}, order={}", assignedShipper, orderId);
-                }
-              } catch (Exception ex) {
+  private void notify(
+      String tokenKey, String availableMember, NotifyPayload payload, UUID orderId, String who) {
+    String token;
+    try {
+      token = fcmTokenCache.get(tokenKey);
+    } catch (Exception ex) {
+      log.error("Failed to read {} token {} for order={}", who, tokenKey, orderId, ex);
+      return;
+    }
+    if (token == null || token.isEmpty()) {
+      log.debug("No {} token at {}, order={}", who, tokenKey, orderId);
+      return;
+    }
+    firebaseMessagingService
+        .send(
+            new PushRequest(
+                token, tokenKey, availableMember, payload.title, payload.body, payload.data))
+        .whenComplete(
+            (id, ex) -> {
+              if (ex != null) {
                 log.error(
-                    "Error sending driver notification for order={} driver={}",
+                    "Error sending {} notification for order={} ({})",
+                    who,
                     orderId,
-                    assignedShipper,
+                    tokenKey,
                     ex);
+              } else {
+                log.info("Sent {} notification for order={} ({})", who, orderId, tokenKey);
               }
-            }
-          });
-    } catch (Exception submitEx) {
-      // fallback synchronous best-effort
-      log.warn("Push executor rejected, falling back sync for order={}", orderId, submitEx);
-      // user fallback
-      if (userPayload != null && creatorId != null) {
-        try {
-          String userToken =
-              redisTemplate.opsForValue().get(String.format(USER_FCM_TOKEN, creatorId));
-          if (userToken != null && !userToken.isEmpty()) {
-            firebaseMessagingService.sendNotificationWithData(
-                userToken, userPayload.title, userPayload.body, userPayload.data);
-          }
-        } catch (Exception ex) {
-          log.error("Fallback user push failed for order={} user={}", orderId, creatorId, ex);
-        }
-      }
-      // driver fallback
-      if (driverPayload != null && assignedShipper != null) {
-        try {
-          String driverToken =
-              redisTemplate.opsForValue().get(String.format(DRIVER_FCM_TOKEN, assignedShipper));
-          if (driverToken != null && !driverToken.isEmpty()) {
-            firebaseMessagingService.sendNotificationWithData(
-                driverToken, driverPayload.title, driverPayload.body, driverPayload.data);
-          }
-        } catch (Exception ex) {
-          log.error(
-              "Fallback driver push failed for order={} driver={}", orderId, assignedShipper, ex);
-        }
-      }
-    }
+            });
   }
 
   // ---------------- helper builders (dùng same logic bạn đã viết) ----------------
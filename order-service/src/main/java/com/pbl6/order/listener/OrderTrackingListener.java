@@ -0,0 +1,42 @@
+package com.pbl6.order.listener;
+
+import com.pbl6.order.entity.OrderStatus;
+import com.pbl6.order.event.OrderAssignedEvent;
+import com.pbl6.order.event.OrderStatusChangedEvent;
+import com.pbl6.order.service.tracking.OrderTrackingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/** Đẩy thay đổi trạng thái order lên channel tracking để các stream SSE đang mở nhận được. */
+@Slf4j
+@Component
+public class OrderTrackingListener {
+
+  private final OrderTrackingService trackingService;
+
+  public OrderTrackingListener(OrderTrackingService trackingService) {
+    this.trackingService = trackingService;
+  }
+
+  @EventListener
+  public void onOrderStatusChanged(OrderStatusChangedEvent ev) {
+    publish(ev.getOrderId(), ev.getTo(), ev.getNewShipper());
+  }
+
+  @EventListener
+  public void onOrderAssigned(OrderAssignedEvent ev) {
+    publish(ev.getOrderId(), OrderStatus.DRIVER_ASSIGNED, ev.getShipperId());
+  }
+
+  // best effort: không ném lỗi để relay không phát lại event (và gửi trùng thông báo)
+  private void publish(UUID orderId, OrderStatus status, UUID shipperId) {
+    try {
+      trackingService.publishStatus(orderId, status, shipperId);
+    } catch (Exception ex) {
+      log.warn("Failed to publish tracking status for order {}: {}", orderId, ex.getMessage());
+    }
+  }
+}
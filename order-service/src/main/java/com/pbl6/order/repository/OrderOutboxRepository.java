@@ -0,0 +1,29 @@
+package com.pbl6.order.repository;
+
+import com.pbl6.order.entity.OrderOutboxEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEntity, Long> {
+
+  /**
+   * Khoá một batch event chưa xử lý. SKIP LOCKED để các replica chạy relay song song không chờ
+   * nhau và không lấy trùng dòng.
+   */
+  @Query(
+      value =
+          "SELECT * FROM order_outbox WHERE processed_at IS NULL AND available_at <= :now"
+              + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<OrderOutboxEntity> lockPending(
+      @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+  @Modifying
+  @Query("DELETE FROM OrderOutboxEntity o WHERE o.processedAt < :before")
+  int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -3,13 +3,17 @@ package com.pbl6.order.repository;
 import com.pbl6.order.entity.OrderEntity;
 import com.pbl6.order.repository.projection.OrderStatusCountProjection;
 import com.pbl6.order.repository.projection.MonthlyRevenueProjection;
+import com.pbl6.order.repository.projection.OrderTrackingProjection;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -26,6 +30,14 @@ public interface OrderRepository
       """)
   Optional<UUID> findShipperIdByPackageId(@Param("packageId") UUID packageId);
 
+  /** Chỉ các cột cần để mở stream theo dõi order (không load packages / address). */
+  @Query("""
+        select o.creatorId as creatorId, o.shipperId as shipperId, o.status as status
+        from OrderEntity o
+        where o.id = :orderId
+      """)
+  Optional<OrderTrackingProjection> findTrackingById(@Param("orderId") UUID orderId);
+
   /**
    * Fetch orders + packages + package.dropoffAddress + order.pickupAddress for a
    * list of ids.
@@ -41,9 +53,75 @@ public interface OrderRepository
       """)
   List<OrderEntity> findAllByIdInWithPackages(@Param("ids") List<UUID> ids);
 
+  /**
+   * Conditional claim: chỉ gán shipper nếu order chưa có shipper và còn ở trạng thái tìm tài xế.
+   *
+   * @return số dòng được cập nhật (0 = đã có người nhận / không còn claim được)
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+        update OrderEntity o
+        set o.shipperId = :driverId,
+            o.status = com.pbl6.order.entity.OrderStatus.DRIVER_ASSIGNED,
+            o.updatedAt = :now
+        where o.id = :orderId
+          and o.shipperId is null
+          and o.status in :claimableStatuses
+      """)
+  int claimOrder(
+      @Param("orderId") UUID orderId,
+      @Param("driverId") UUID driverId,
+      @Param("claimableStatuses") List<com.pbl6.order.entity.OrderStatus> claimableStatuses,
+      @Param("now") LocalDateTime now);
+
   @Query("select o.orderCode from OrderEntity o where o.id = :id")
   Long findOrderCodeById(UUID id);
 
+  @Modifying
+  @Query("update OrderEntity o set o.paymentLinkStatus = :status where o.id = :orderId")
+  int updatePaymentLinkStatus(
+      @Param("orderId") UUID orderId,
+      @Param("status") com.pbl6.order.entity.PaymentLinkStatus status);
+
+  /**
+   * Không tạo được payment: huỷ order nếu vẫn đang chờ thanh toán và chưa có link. Chỉ gọi qua
+   * {@code OrderService#cancelUnpaidOrder} (ghi kèm history + outbox).
+   */
+  @Modifying
+  @Query("""
+        update OrderEntity o
+        set o.paymentLinkStatus = com.pbl6.order.entity.PaymentLinkStatus.FAILED,
+            o.paymentStatus = com.pbl6.order.entity.PaymentStatus.FAILED,
+            o.status = :status,
+            o.updatedAt = :now
+        where o.id = :orderId
+          and o.status = com.pbl6.order.entity.OrderStatus.PENDING_PAYMENT
+          and o.paymentLinkStatus = com.pbl6.order.entity.PaymentLinkStatus.PENDING
+      """)
+  int markPaymentLinkFailed(
+      @Param("orderId") UUID orderId,
+      @Param("status") com.pbl6.order.entity.OrderStatus status,
+      @Param("now") LocalDateTime now);
+
+  /** Order ONLINE chưa xác nhận được link thanh toán, tạo trước {@code before}, cũ nhất trước. */
+  @Query("""
+        select o from OrderEntity o
+        where o.status = com.pbl6.order.entity.OrderStatus.PENDING_PAYMENT
+          and o.paymentLinkStatus = com.pbl6.order.entity.PaymentLinkStatus.PENDING
+          and o.createdAt < :before
+        order by o.createdAt
+      """)
+  List<OrderEntity> findPendingPaymentLinks(
+      @Param("before") LocalDateTime before, Pageable pageable);
+
+  /** Các {@code refs} đã có order của {@code creatorId} (import lại cùng file). */
+  @Query("""
+        select o.merchantRef from OrderEntity o
+        where o.creatorId = :creatorId and o.merchantRef in :refs
+      """)
+  List<String> findExistingMerchantRefs(
+      @Param("creatorId") UUID creatorId, @Param("refs") Collection<String> refs);
+
   OrderEntity findOrderEntitiesByOrderCode(Long orderCode);
 
   @Query("""
@@ -24,6 +24,11 @@ public interface OrderReviewRepository extends JpaRepository<OrderReviewEntity,
     @Query("SELECT r.rating, COUNT(r) FROM OrderReviewEntity r WHERE r.shipperId = :shipperId GROUP BY r.rating")
     List<Object[]> findRatingDistributionByShipperId(UUID shipperId);
 
+    // shipperId -> (SUM, COUNT) cho toàn bộ shipper, dùng để nạp feature cache của dispatch
+    @Query("SELECT r.shipperId, SUM(r.rating), COUNT(r) FROM OrderReviewEntity r "
+        + "WHERE r.shipperId IS NOT NULL GROUP BY r.shipperId")
+    List<Object[]> findRatingTotalsGroupByShipper();
+
     // Recent reviews (paging)
     Page<OrderReviewEntity> findByShipperIdOrderByCreatedAtDesc(UUID shipperId, Pageable pageable);
 }
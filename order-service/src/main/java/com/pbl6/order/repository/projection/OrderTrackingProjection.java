@@ -0,0 +1,13 @@
+package com.pbl6.order.repository.projection;
+
+import com.pbl6.order.entity.OrderStatus;
+
+import java.util.UUID;
+
+public interface OrderTrackingProjection {
+    UUID getCreatorId();
+
+    UUID getShipperId();
+
+    OrderStatus getStatus();
+}
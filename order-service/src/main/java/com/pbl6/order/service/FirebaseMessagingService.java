@@ -1,38 +1,244 @@
 package com.pbl6.order.service;
 
-import com.google.firebase.messaging.*;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.Notification;
+import com.pbl6.order.config.PushProperties;
+import com.pbl6.order.service.push.FcmTokenPurger;
+import com.pbl6.order.service.push.PushRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gửi push FCM từng message, không block thread gọi.
+ *
+ * <p>{@link #send(PushRequest)} trả về future ngay; request được xếp hàng và gửi bằng {@code
+ * FirebaseMessaging.sendAsync}, kết quả xử lý qua callback của ApiFuture. Số request đang bay bị
+ * giới hạn bởi semaphore ({@code push.direct.max-in-flight}); lỗi tạm thời được thử lại với
+ * backoff có jitter, token UNREGISTERED bị xoá khỏi Redis.
+ *
+ * <p>Mỗi lúc chỉ một thread chạy vòng drain: callback hoàn tất ngay trên thread đang drain (future
+ * đã xong sẵn) chỉ đánh dấu cần drain thêm rồi trả về, nên chuỗi release -&gt; drain -&gt; dispatch
+ * không đệ quy theo độ dài hàng đợi.
+ */
+@Slf4j
 @Service
 public class FirebaseMessagingService {
 
-  public String sendToToken(String fcmToken, String title, String body)
-      throws ExecutionException, InterruptedException {
-    Notification notification = Notification.builder().setTitle(title).setBody(body).build();
+  private static final String SUCCESS = "success";
+  private static final String FAILURE = "failure";
+  private static final String INVALID_TOKEN = "invalid_token";
+  private static final String REJECTED = "rejected";
+
+  private final PushProperties.Direct props;
+  private final FcmTokenPurger tokenPurger;
+  private final ScheduledExecutorService scheduler;
+  private final MeterRegistry registry;
+  private final Timer latency;
+  private final Counter retries;
 
-    Message message = Message.builder().setToken(fcmToken).setNotification(notification).build();
+  private final Semaphore inFlight;
+  private final Queue<Attempt> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
 
-    String response = FirebaseMessaging.getInstance().sendAsync(message).get();
-    return response;
+  /** Số lần drain() được yêu cầu chưa xử lý; khác 0 nghĩa là đã có thread đang drain. */
+  private final AtomicInteger drainRequests = new AtomicInteger();
+
+  public FirebaseMessagingService(
+      PushProperties pushProperties,
+      FcmTokenPurger tokenPurger,
+      @Qualifier("dispatchScheduler") ScheduledExecutorService scheduler,
+      MeterRegistry registry) {
+    this.props = pushProperties.getDirect();
+    this.tokenPurger = tokenPurger;
+    this.scheduler = scheduler;
+    this.registry = registry;
+    this.inFlight = new Semaphore(Math.max(1, props.getMaxInFlight()));
+    this.latency =
+        Timer.builder("push.direct.latency")
+            .description("Latency of one FCM send, including retries")
+            .publishPercentileHistogram()
+            .register(registry);
+    this.retries =
+        Counter.builder("push.direct.retries")
+            .description("FCM sends retried after a transient error")
+            .register(registry);
+    Gauge.builder("push.direct.queued", queued, AtomicInteger::get)
+        .description("FCM sends waiting for an in-flight slot")
+        .register(registry);
+    Gauge.builder(
+            "push.direct.in_flight", inFlight, s -> props.getMaxInFlight() - s.availablePermits())
+        .description("FCM sends in flight")
+        .register(registry);
   }
 
-    public String sendNotificationWithData(String fcmToken, String title, String body, Map<String, String> data)
-            throws Exception {
+  /**
+   * Gửi một push. Future hoàn tất với message id của FCM, hoặc exception nếu hết lượt thử / token
+   * không hợp lệ / hàng đợi đầy.
+   */
+  public CompletableFuture<String> send(PushRequest request) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    if (queued.incrementAndGet() > props.getMaxQueued()) {
+      queued.decrementAndGet();
+      sent(REJECTED);
+      result.completeExceptionally(
+          new RejectedExecutionException("FCM send queue is full (" + props.getMaxQueued() + ")"));
+      return result;
+    }
+    Attempt attempt = new Attempt(request, toMessage(request), result, Timer.start(registry));
+    queue.add(attempt);
+    drain();
+    return result;
+  }
 
-        Notification notification = Notification.builder()
-                .setTitle(title)
-                .setBody(body)
-                .build();
+  /** Tiện ích cho push chỉ có token (không purge được vì không biết key lưu token). */
+  public CompletableFuture<String> sendToToken(String fcmToken, String title, String body) {
+    return send(new PushRequest(fcmToken, null, null, title, body, null));
+  }
 
-        Message message = Message.builder()
-                .setToken(fcmToken)
-                .setNotification(notification)
-                .putAllData(data)
-                .build();
+  private void drain() {
+    // thread đang drain sẽ chạy thêm một vòng cho yêu cầu này
+    if (drainRequests.getAndIncrement() != 0) return;
+    int missed = 1;
+    do {
+      while (!queue.isEmpty() && inFlight.tryAcquire()) {
+        Attempt attempt = queue.poll();
+        if (attempt == null) {
+          inFlight.release();
+          // request khác có thể vừa được thêm giữa isEmpty() và poll()
+          continue;
+        }
+        queued.decrementAndGet();
+        dispatch(attempt);
+      }
+      missed = drainRequests.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void dispatch(Attempt attempt) {
+    try {
+      ApiFutures.addCallback(
+          FirebaseMessaging.getInstance().sendAsync(attempt.message),
+          new ApiFutureCallback<String>() {
+            @Override
+            public void onSuccess(String messageId) {
+              release();
+              attempt.sample.stop(latency);
+              sent(SUCCESS);
+              attempt.result.complete(messageId);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              release();
+              onSendFailure(attempt, t);
+            }
+          },
+          // callback nhẹ (trả slot, báo drain) nên chạy luôn trên thread của FCM; future đã xong
+          // sẵn thì callback chạy trên thread đang drain và drain() lồng nhau trả về ngay
+          Runnable::run);
+    } catch (Exception ex) {
+      // lỗi đồng bộ (vd. FirebaseApp chưa init): trả slot, vòng drain() đang chạy sẽ lấy tiếp
+      inFlight.release();
+      onSendFailure(attempt, ex);
+    }
+  }
+
+  private void release() {
+    inFlight.release();
+    drain();
+  }
 
-        return FirebaseMessaging.getInstance().send(message);
+  private void onSendFailure(Attempt attempt, Throwable t) {
+    MessagingErrorCode code =
+        t instanceof FirebaseMessagingException fme ? fme.getMessagingErrorCode() : null;
+    if (code == MessagingErrorCode.UNREGISTERED || code == MessagingErrorCode.SENDER_ID_MISMATCH) {
+      attempt.sample.stop(latency);
+      sent(INVALID_TOKEN);
+      tokenPurger.purge(attempt.request);
+      attempt.result.completeExceptionally(t);
+      return;
     }
+    if (isRetryable(t, code) && attempt.tries < props.getMaxRetries()) {
+      attempt.tries++;
+      retries.increment();
+      long delay = backoffMs(attempt.tries);
+      log.debug("FCM send failed ({}), retry {} in {} ms", code, attempt.tries, delay);
+      scheduler.schedule(
+          () -> {
+            queued.incrementAndGet();
+            queue.add(attempt);
+            drain();
+          },
+          delay,
+          TimeUnit.MILLISECONDS);
+      return;
+    }
+    attempt.sample.stop(latency);
+    sent(FAILURE);
+    attempt.result.completeExceptionally(t);
+  }
+
+  /** Lỗi phía FCM / mạng thì thử lại; lỗi do request (INVALID_ARGUMENT...) thì không. */
+  private static boolean isRetryable(Throwable t, MessagingErrorCode code) {
+    if (code == null) return !(t instanceof FirebaseMessagingException);
+    return code == MessagingErrorCode.UNAVAILABLE
+        || code == MessagingErrorCode.INTERNAL
+        || code == MessagingErrorCode.QUOTA_EXCEEDED;
+  }
 
+  private long backoffMs(int tries) {
+    long base = props.getRetryBaseMs() << Math.min(tries - 1, 16);
+    double jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+    return Math.min(props.getRetryMaxMs(), (long) (base * jitter));
+  }
+
+  private static Message toMessage(PushRequest req) {
+    Message.Builder builder =
+        Message.builder()
+            .setToken(req.token())
+            .setNotification(
+                Notification.builder().setTitle(req.title()).setBody(req.body()).build());
+    if (req.data() != null) builder.putAllData(req.data());
+    return builder.build();
+  }
+
+  private void sent(String result) {
+    Counter.builder("push.direct.sent").tag("result", result).register(registry).increment();
+  }
+
+  private static final class Attempt {
+    final PushRequest request;
+    final Message message;
+    final CompletableFuture<String> result;
+    final Timer.Sample sample;
+    int tries;
+
+    Attempt(
+        PushRequest request, Message message, CompletableFuture<String> result, Timer.Sample s) {
+      this.request = request;
+      this.message = message;
+      this.result = result;
+      this.sample = s;
+    }
+  }
 }
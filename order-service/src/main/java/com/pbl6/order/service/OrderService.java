@@ -1,39 +1,56 @@
 package com.pbl6.order.service;
 
 import com.pbl6.order.dto.*;
-import com.pbl6.order.dto.payment.CreatePaymentRequest;
 import com.pbl6.order.dto.payment.PaymentResponse;
 import com.pbl6.order.dto.payment.PaymentSuccessRequest;
 import com.pbl6.order.entity.*;
 import com.pbl6.order.event.OrderCreatedEvent;
+import com.pbl6.order.event.OrderReassignRequestedEvent;
 import com.pbl6.order.event.OrderStatusChangedEvent;
 import com.pbl6.order.exception.AppException;
 import com.pbl6.order.event.OrderAssignedEvent;
 import com.pbl6.order.mapper.OrderMapper;
 import com.pbl6.order.repository.*;
+import com.pbl6.order.config.DispatchProperties;
+import com.pbl6.order.service.dispatch.DispatchEngine;
+import com.pbl6.order.service.dispatch.DispatchJobQueue;
+import com.pbl6.order.service.dispatch.DispatchKind;
+import com.pbl6.order.service.dispatch.DispatchMetrics;
+import com.pbl6.order.service.dispatch.DispatchRequest;
+import com.pbl6.order.service.dispatch.DriverFeatureCache;
+import com.pbl6.order.service.geo.DistanceMatrixCache;
+import com.pbl6.order.service.outbox.OrderOutbox;
+import com.pbl6.order.service.pricing.PricingSnapshot;
+import com.pbl6.order.service.pricing.PricingSnapshotHolder;
+import com.pbl6.order.service.quote.PriceQuoteService;
+import com.pbl6.order.service.route.RouteSolver;
 import com.pbl6.order.spec.OrderSpecifications;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.geo.Point;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.*;
 import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -48,19 +65,38 @@ public class OrderService {
   private final PackageAddressRepository addressRepo;
   private final PricingService pricingService;
   private final OrderStatusHistoryRepository historyRepo;
-  private final GooongMapClientService gooongMapClient;
-  private final ShippingConfigRepository shippingConfigRepo;
-  private final SizeConfigRepository sizeConfigRepo;
-  private final ApplicationEventPublisher publisher;
+  private final DistanceMatrixCache distanceMatrixCache;
+  private final PricingSnapshotHolder pricingSnapshots;
+  private final OrderOutbox orderOutbox;
   private final RedisTemplate<String, String> redisTemplate;
   private final FirebaseMessagingService firebaseMessagingService;
-  private final ExecutorService pushExecutor;
   private final PackageStatusHistoryRepository packageStatusHistoryRepo;
   private final OrderPriceRouteRepository priceRouteRepo;
   private final PaymentClientService paymentClient;
   private final OrderReviewRepository reviewRepo;
+  private final DispatchEngine dispatchEngine;
+  private final DispatchJobQueue dispatchJobQueue;
+  private final DispatchProperties dispatchProperties;
+  private final ShipperPushService shipperPushService;
+  private final DispatchMetrics dispatchMetrics;
+  private final DriverFeatureCache driverFeatureCache;
+  private final RouteSolver routeSolver;
+  private final PriceQuoteService priceQuoteService;
+  private final RedisScript<Long> claimOrderScript;
+  private final RedisScript<Long> releaseOrderClaimScript;
+  private final TransactionTemplate transactionTemplate;
+  private final MeterRegistry meterRegistry;
 
-  @Transactional
+  /**
+   * Tạo order theo pha để không giữ connection DB trong lúc gọi service ngoài:
+   *
+   * <ol>
+   *   <li>báo giá (Distance Matrix + lộ trình + giá, hoặc quote id từ /price-route) ngoài
+   *       transaction;
+   *   <li>ghi order + outbox trong một transaction ngắn;
+   *   <li>order ONLINE: tạo payment sau commit, kết quả ghi vào {@code paymentLinkStatus}.
+   * </ol>
+   */
   public CreateOrderResponse createOrder(CreateOrderRequest req) {
     // get creator id or phone from security context (subject)
     String creatorSubject = SecurityContextHolder.getContext().getAuthentication().getName();
@@ -70,6 +106,64 @@ public class OrderService {
     } catch (Exception ignored) {
     }
 
+    // kiểm tra trước khi báo giá để request sai không tốn lượt gọi map
+    validateOrderRequest(req);
+
+    // 1) báo giá /price-route còn hạn và đúng đầu vào thì dùng lại, không tính lại lộ trình + giá
+    Timer.Sample sample = Timer.start(meterRegistry);
+    List<PriceAndRouteDto> quoted = priceQuoteService.redeem(req.quoteId(), req);
+    List<PriceAndRouteDto> priceAndRouteDtos =
+        quoted != null ? quoted : computePriceAndRouteForOrder(req);
+    sample.stop(createPhaseTimer("quote"));
+
+    // 2) ghi order trong transaction ngắn
+    UUID creator = creatorId;
+    sample = Timer.start(meterRegistry);
+    OrderEntity order;
+    try {
+      order = transactionTemplate.execute(tx -> persistOrder(req, creator, priceAndRouteDtos));
+    } finally {
+      sample.stop(createPhaseTimer("persist"));
+    }
+
+    if (order.getPaymentMethod() == PaymentMethod.CASH) {
+      return new CreateOrderResponse(
+          order.getId(), order.getTotalAmount().doubleValue(), "VND", order.getStatus(), null);
+    }
+    // 3) payment sau commit
+    return requestPayment(order);
+  }
+
+  /** Rule nghiệp vụ của request tạo order (ngoài bean validation): lịch hẹn, COD, voucher. */
+  public void validateOrderRequest(CreateOrderRequest req) {
+    if (req.scheduledAt() != null) {
+      try {
+        LocalDateTime.parse(req.scheduledAt()); // expects ISO-8601
+      } catch (DateTimeParseException ex) {
+        throw AppException.badRequest("scheduledAt phải là ISO-8601");
+      }
+    }
+    for (PackageDto packageDto : req.packages()) {
+      Double codAmount = packageDto.codAmount();
+      if (Boolean.TRUE.equals(packageDto.cod())) {
+        if (codAmount == null || codAmount <= 0.0) {
+          throw AppException.badRequest("Khi chọn COD, codAmount phải > 0");
+        }
+      } else if (codAmount != null && codAmount > 0.0) {
+        // business rule: không cho phép gửi codAmount nếu client không tick COD
+        throw AppException.badRequest("Không được cung cấp codAmount khi COD không được chọn");
+      }
+    }
+    if (req.voucherCode() != null) {
+      // Ap dung logic voucher o day neu can
+      if (!req.voucherCode().equals("VALID-VOUCHER")) {
+        throw AppException.badRequest("Mã voucher không hợp lệ");
+      }
+    }
+  }
+
+  private OrderEntity persistOrder(
+      CreateOrderRequest req, UUID creatorId, List<PriceAndRouteDto> priceAndRouteDtos) {
     // create or reuse pickup address
     PackageAddressEntity pickup = createAddress(req.pickupAddress());
 
@@ -78,11 +172,7 @@ public class OrderService {
     order.setPickupAddress(pickup);
     order.setCustomerNote(req.customerNote());
     if (req.scheduledAt() != null) {
-      try {
-        order.setScheduledAt(LocalDateTime.parse(req.scheduledAt())); // expects ISO-8601
-      } catch (DateTimeParseException ex) {
-        throw AppException.badRequest("scheduledAt phải là ISO-8601");
-      }
+      order.setScheduledAt(LocalDateTime.parse(req.scheduledAt())); // đã kiểm tra ISO-8601
     }
 
     // packages
@@ -113,32 +203,15 @@ public class OrderService {
       if (packageDto.category() != null) {
         pkg.setCategory(packageDto.category());
       }
-      Boolean cod = packageDto.cod();
-      Double codAmount = packageDto.codAmount();
-
-      if (cod != null && cod) {
-        if (codAmount == null || codAmount <= 0.0) {
-          throw AppException.badRequest("Khi chọn COD, codAmount phải > 0");
-        }
-        // convert to BigDecimal và set
-        pkg.setCodFee(BigDecimal.valueOf(codAmount));
+      if (Boolean.TRUE.equals(packageDto.cod())) {
+        // convert to BigDecimal và set (codAmount > 0 đã được kiểm tra)
+        pkg.setCodFee(BigDecimal.valueOf(packageDto.codAmount()));
       } else {
-        if (codAmount != null && codAmount > 0.0) {
-          // business rule: không cho phép gửi codAmount nếu client không tick COD
-          throw AppException.badRequest("Không được cung cấp codAmount khi COD không được chọn");
-        }
         pkg.setCodFee(BigDecimal.ZERO);
       }
       packageEntities.add(pkg);
     }
 
-    if (req.voucherCode() != null) {
-      // Ap dung logic voucher o day neu can
-      if (!req.voucherCode().equals("VALID-VOUCHER")) {
-        throw AppException.badRequest("Mã voucher không hợp lệ");
-      }
-    }
-
     if (req.paymentMethod() != null) {
       if (req.paymentMethod().equals(PaymentMethod.ONLINE)) {
         order.setStatus(OrderStatus.PENDING_PAYMENT);
@@ -147,8 +220,10 @@ public class OrderService {
     } else {
       order.setPaymentMethod(PaymentMethod.CASH); // default
     }
+    if (order.getPaymentMethod() == PaymentMethod.ONLINE) {
+      order.setPaymentLinkStatus(PaymentLinkStatus.PENDING);
+    }
 
-    List<PriceAndRouteDto> priceAndRouteDtos = computePriceAndRouteForOrder(req);
     Map<Integer, PriceAndRouteDto> indexToPriceRoute = new HashMap<>();
     for (PriceAndRouteDto dto : priceAndRouteDtos) {
       indexToPriceRoute.put(dto.packageIndex(), dto);
@@ -194,13 +269,9 @@ public class OrderService {
       }
     }
 
-    if (req.scheduledAt() != null) {
-      order.setScheduledAt(LocalDateTime.parse(req.scheduledAt()));
-    }
-
     // SAVE order (packages sẽ được persist bởi cascade = CascadeType.ALL)
     orderRepo.save(order);
-    // PUBLISH event AFTER commit via @TransactionalEventListener (we still publish inside tx)
+    // event ghi vào outbox trong cùng tx; relay fan-out sau commit
     double lon =
         order.getPickupAddress() != null && order.getPickupAddress().getLongitude() != null
             ? order.getPickupAddress().getLongitude().doubleValue()
@@ -211,37 +282,120 @@ public class OrderService {
             : 0.0;
 
     if (order.getPaymentMethod().equals(PaymentMethod.CASH)) {
-      publisher.publishEvent(new OrderCreatedEvent(order.getId(), lon, lat));
-      return new CreateOrderResponse(
-          order.getId(), order.getTotalAmount().doubleValue(), "VND", order.getStatus(), null);
+      orderOutbox.append(new OrderCreatedEvent(order.getId(), lon, lat));
     } else {
+      // orderCode do DB sinh, cần cho payment ở pha sau commit
       orderRepo.flush();
-      Long OrderCode = orderRepo.findOrderCodeById(order.getId());
-      CreatePaymentRequest paymentRequest = new CreatePaymentRequest();
-      paymentRequest.setOrderCode(OrderCode);
-      paymentRequest.setDescription(OrderCode.toString());
-      paymentRequest.setAmount(order.getTotalAmount().longValue());
-      paymentRequest.setCancelUrl("Nothing");
-      paymentRequest.setReturnUrl("Nothing");
-      try {
-        Mono<PaymentResponse> paymentResponse = paymentClient.createPayment(paymentRequest);
-        PaymentResponse payment = paymentResponse.block();
-        if (payment != null) {
-          return new CreateOrderResponse(
-              order.getId(),
-              order.getTotalAmount().doubleValue(),
-              "VND",
-              order.getStatus(),
-              payment);
-        } else {
-          throw AppException.internal("Lỗi khi tạo payment");
-        }
-      } catch (Exception e) {
-        throw AppException.internal("Lỗi khi tạo payment: " + e.getMessage());
+      order.setOrderCode(orderRepo.findOrderCodeById(order.getId()));
+    }
+    return order;
+  }
+
+  /**
+   * Pha 3 (order ONLINE): tạo payment sau khi order đã commit, không giữ connection DB.
+   *
+   * <p>Chỉ huỷ order khi payment-service từ chối (4xx, chắc chắn không có link). Timeout / lỗi mạng
+   * / 5xx thì không biết link đã được tạo chưa: order giữ PENDING_PAYMENT với link PENDING để
+   * {@link com.pbl6.order.service.payment.PaymentLinkSweeper} tạo lại (idempotent theo orderCode)
+   * hoặc huỷ khi quá hạn, tránh huỷ một order mà khách vẫn trả tiền được.
+   */
+  private CreateOrderResponse requestPayment(OrderEntity order) {
+    PaymentResponse payment = null;
+    Exception error = null;
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      payment =
+          paymentClient
+              .createPaymentLink(order.getOrderCode(), order.getTotalAmount().longValue())
+              .block();
+    } catch (Exception e) {
+      error = e;
+    } finally {
+      sample.stop(createPhaseTimer("payment"));
+    }
+
+    if (payment == null && PaymentClientService.isRejected(error)) {
+      log.warn("Payment creation rejected for order {}: {}", order.getId(), error.getMessage());
+      cancelUnpaidOrder(
+          order.getId(), order.getCreatorId(), "Payment rejected: " + error.getMessage());
+      throw AppException.internal("Lỗi khi tạo payment: " + error.getMessage());
+    }
+    if (payment == null) {
+      // order vẫn tồn tại: trả về không kèm link thay vì lỗi, để client không tạo order trùng
+      log.warn(
+          "Payment link of order {} unknown ({}), left to the sweeper",
+          order.getId(),
+          error != null ? error.getMessage() : "empty response");
+      return new CreateOrderResponse(
+          order.getId(), order.getTotalAmount().doubleValue(), "VND", order.getStatus(), null);
+    }
+    transactionTemplate.executeWithoutResult(
+        tx -> orderRepo.updatePaymentLinkStatus(order.getId(), PaymentLinkStatus.CREATED));
+    return new CreateOrderResponse(
+        order.getId(), order.getTotalAmount().doubleValue(), "VND", order.getStatus(), payment);
+  }
+
+  /**
+   * Shipper rảnh lại -> đưa về tập available nếu vẫn đang online (còn FCM token). Chỉ gọi sau
+   * commit: rollback thì DB vẫn ghi shipper đang giữ order, không được mời order khác.
+   */
+  private void markShipperFree(UUID shipperId) {
+    try {
+      if (Boolean.TRUE.equals(redisTemplate.hasKey(String.format(DRIVER_FCM_TOKEN, shipperId)))) {
+        redisTemplate.opsForSet().add(DRIVERS_AVAILABLE_KEY, shipperId.toString());
+        driverFeatureCache.markFree(shipperId);
       }
+    } catch (Exception ex) {
+      log.warn("Failed to mark shipper {} available: {}", shipperId, ex.getMessage());
     }
+  }
+
+  /**
+   * Huỷ order ONLINE không tạo được payment link (bị từ chối hoặc quá hạn), chỉ khi order vẫn
+   * PENDING_PAYMENT với link PENDING. Cùng transaction ghi history và outbox {@link
+   * OrderStatusChangedEvent} như {@link #updateOrderStatus}: khách được báo, tracking stream nhận
+   * trạng thái cuối.
+   *
+   * @return false nếu order đã rời trạng thái đó (vd. vừa thanh toán)
+   */
+  public boolean cancelUnpaidOrder(UUID orderId, UUID creatorId, String reason) {
+    Boolean cancelled =
+        transactionTemplate.execute(
+            tx -> {
+              LocalDateTime now = LocalDateTime.now();
+              if (orderRepo.markPaymentLinkFailed(orderId, OrderStatus.ORDER_CANCELLED, now)
+                  == 0) {
+                return false;
+              }
+              OrderStatusHistory hist = new OrderStatusHistory();
+              hist.setOrderId(orderId);
+              hist.setFromStatus(OrderStatus.PENDING_PAYMENT);
+              hist.setToStatus(OrderStatus.ORDER_CANCELLED);
+              hist.setReason(reason);
+              hist.setCreatedAt(now);
+              historyRepo.save(hist);
+              orderOutbox.append(
+                  new OrderStatusChangedEvent(
+                      orderId,
+                      creatorId,
+                      null,
+                      null,
+                      OrderStatus.PENDING_PAYMENT,
+                      OrderStatus.ORDER_CANCELLED));
+              return true;
+            });
+    return Boolean.TRUE.equals(cancelled);
+  }
 
-    // trả về totalAmount (BigDecimal). CreateOrderResponse now uses OrderStatus enum for status
+  /**
+   * Thời gian từng pha tạo order; {@code phase=persist} là thời gian một order giữ connection DB.
+   */
+  private Timer createPhaseTimer(String phase) {
+    return Timer.builder("order.create.phase")
+        .description("Order creation time by phase; persist = DB connection hold time per order")
+        .tag("phase", phase)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
   }
 
   @Transactional
@@ -270,12 +424,25 @@ public class OrderService {
     if (order.getPaymentStatus() == PaymentStatus.PAID) {
       return;
     }
+    // order đã bị huỷ trong lúc chờ thanh toán (vd. sweeper huỷ link quá hạn) -> ghi nhận thanh
+    // toán, đánh dấu cần hoàn tiền, không mở lại dispatch
+    if (order.getStatus().isTerminal()) {
+      log.error(
+          "Payment received for {} order {} (code {}), refund required",
+          order.getStatus(),
+          order.getId(),
+          orderCode);
+      order.setPaymentStatus(PaymentStatus.PAID);
+      order.setRefundRequiredAt(LocalDateTime.now());
+      orderRepo.save(order);
+      return;
+    }
     order.setStatus(OrderStatus.FINDING_DRIVER);
     order.setPaymentStatus(PaymentStatus.PAID);
     orderRepo.save(order);
 
-    // CHỈ publish event
-    publisher.publishEvent(new OrderCreatedEvent(order.getId(), lon, lat));
+    // CHỈ ghi event vào outbox
+    orderOutbox.append(new OrderCreatedEvent(order.getId(), lon, lat));
   }
 
   private PackageAddressEntity createAddress(AddressDto addrDto) {
@@ -588,11 +755,32 @@ public class OrderService {
             OrderStatus.CANCELLED_BY_SENDER,
             OrderStatus.CANCELLED_NO_DRIVER);
 
+    boolean freeShipper = driverCompletedOrder.contains(to) && oldShipper != null;
     if (driverCompletedOrder.contains(to)) {
       String driverDeliveringOrder = String.format(DRIVER_DELIVERING_ORDER_KEY, oldShipper);
       redisTemplate.delete(driverDeliveringOrder);
     }
 
+    boolean closed = to.isTerminal();
+    if (freeShipper || closed) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              if (closed) {
+                // dừng dispatch đang chạy (mọi replica) ngay khi order huỷ / kết thúc được commit
+                try {
+                  shipperPushService.markOrderClosed(orderId);
+                } catch (Exception ex) {
+                  log.warn("Failed to publish dispatch cancel for order {}", orderId, ex);
+                }
+                dispatchEngine.cancel(orderId);
+              }
+              if (freeShipper) markShipperFree(oldShipper);
+            }
+          });
+    }
+
     if (OrderStatus.REASSIGNING_DRIVER.equals(to)) {
       String orderAssigneeKey = String.format(ORDER_ASSIGNEE_KEY_PATTERN, order.getId());
       redisTemplate.delete(orderAssigneeKey);
@@ -632,13 +820,56 @@ public class OrderService {
     NotifyPayload userPayload = null;
     NotifyPayload driverPayload = null;
 
-    publisher.publishEvent(
+    orderOutbox.append(
         new OrderStatusChangedEvent(
             orderId, creatorId, finalOldShipper, finalNewShipper, finalFrom, finalTo));
 
+    // order chưa có shipper mới (admin không chỉ định) -> dispatch lại sau commit
+    if (to == OrderStatus.REASSIGNING_DRIVER && order.getShipperId() == null) {
+      double[] pickup = reassignPickupLocation(order, from, oldShipper);
+      if (pickup != null) {
+        orderOutbox.append(
+            new OrderReassignRequestedEvent(orderId, oldShipper, pickup[0], pickup[1]));
+      } else {
+        log.error("Order {} has no pickup coordinates, reassign dispatch skipped", orderId);
+      }
+    }
+
     return OrderMapper.toDetail(order);
   }
 
+  /** Hàng đã rời điểm lấy hàng: reassign phải tìm shipper quanh vị trí hiện tại của hàng. */
+  private static final Set<OrderStatus> POST_PICKUP_STATUSES =
+      EnumSet.of(
+          OrderStatus.PACKAGE_PICKED,
+          OrderStatus.EN_ROUTE_DELIVERY,
+          OrderStatus.ARRIVED_DELIVERY,
+          OrderStatus.DELIVERY_ATTEMPT_FAILED);
+
+  /**
+   * Điểm bắt đầu tìm shipper khi reassign: nếu hàng đã được lấy thì là vị trí cuối của shipper cũ
+   * (drivers:geo), ngược lại là địa chỉ lấy hàng của order. Trả về {lon, lat}, hoặc null nếu địa
+   * chỉ lấy hàng không có toạ độ (không dispatch quanh (0, 0)).
+   */
+  private double[] reassignPickupLocation(OrderEntity order, OrderStatus from, UUID oldShipper) {
+    if (oldShipper != null && POST_PICKUP_STATUSES.contains(from)) {
+      try {
+        List<Point> pos =
+            redisTemplate.opsForGeo().position(DRIVERS_GEO_KEY, oldShipper.toString());
+        if (pos != null && !pos.isEmpty() && pos.get(0) != null) {
+          return new double[] {pos.get(0).getX(), pos.get(0).getY()};
+        }
+      } catch (Exception ex) {
+        log.warn("Failed to read last location of driver {}: {}", oldShipper, ex.getMessage());
+      }
+    }
+    var pickup = order.getPickupAddress();
+    if (pickup == null || pickup.getLongitude() == null || pickup.getLatitude() == null) {
+      return null;
+    }
+    return new double[] {pickup.getLongitude().doubleValue(), pickup.getLatitude().doubleValue()};
+  }
+
   // --- Decide notifications for user ---
   // helper nhỏ để build map data (status=title, message=body)
   private Map<String, String> buildDataMap(
@@ -675,42 +906,65 @@ public class OrderService {
     return histories.stream().map(OrderMapper::toHistory).toList();
   }
 
+  /** Phương tiện dùng cho Distance Matrix khi báo giá. */
+  public static final String ROUTE_VEHICLE = "bike";
+
   public List<PriceAndRouteDto> computePriceAndRouteForOrder(CreateOrderRequest order) {
-    StringBuilder origins =
-        new StringBuilder(
-            order.pickupAddress().latitude() + "," + order.pickupAddress().longitude());
+    return computePriceAndRouteForOrder(order, pricingSnapshots.current());
+  }
+
+  /** Như trên nhưng tính giá theo {@code pricing} của caller (báo giá ghi đúng fingerprint đó). */
+  public List<PriceAndRouteDto> computePriceAndRouteForOrder(
+      CreateOrderRequest order, PricingSnapshot pricing) {
+    DistanceMatrixResponse data;
+    try {
+      // destinations = origins; ô đã cache (LRU / Redis) không gọi lại Goong
+      data = distanceMatrixCache.matrix(routePoints(order), ROUTE_VEHICLE);
+    } catch (Exception e) {
+      throw AppException.badRequest("Failed to compute route: " + e.getMessage());
+    }
+    return priceAndRoute(order, data, pricing);
+  }
+
+  /** Điểm của order theo thứ tự ma trận: [điểm lấy, điểm giao gói 1, gói 2...]. */
+  public List<DistanceMatrixCache.Location> routePoints(CreateOrderRequest order) {
+    List<DistanceMatrixCache.Location> points = new ArrayList<>(order.packages().size() + 1);
+    points.add(
+        new DistanceMatrixCache.Location(
+            order.pickupAddress().latitude(), order.pickupAddress().longitude()));
+    for (PackageDto pkg : order.packages()) {
+      points.add(
+          new DistanceMatrixCache.Location(
+              pkg.receiverAddress().latitude(), pkg.receiverAddress().longitude()));
+    }
+    return points;
+  }
+
+  /**
+   * Lộ trình + giá từng gói trên ma trận đã có của {@link #routePoints}; chỉ tính trong bộ nhớ
+   * (route solver + pricing snapshot).
+   */
+  public List<PriceAndRouteDto> priceAndRoute(
+      CreateOrderRequest order, DistanceMatrixResponse data) {
+    return priceAndRoute(order, data, pricingSnapshots.current());
+  }
+
+  private List<PriceAndRouteDto> priceAndRoute(
+      CreateOrderRequest order, DistanceMatrixResponse data, PricingSnapshot pricing) {
     Map<Integer, PackageDto> indexToPackage = new HashMap<>();
     int index = 1;
     double curWeight = 0;
     for (PackageDto pkg : order.packages()) {
-      String location = pkg.receiverAddress().latitude() + "," + pkg.receiverAddress().longitude();
-      origins.append("|").append(location);
       indexToPackage.put(index, pkg);
       curWeight += pkg.weightKg();
       index++;
     }
 
     try {
-      String vehicle = "bike";
-      DistanceMatrixRequest request =
-          new DistanceMatrixRequest(
-              origins.toString(), origins.toString(), vehicle); // destinations = origins
-      Mono<DistanceMatrixResponse> response = gooongMapClient.getDistanceMatrixWithQuery(request);
-      if (response == null) {
-        throw AppException.badRequest("Gooong Map API returned null response");
-      }
-      DistanceMatrixResponse data = response.block();
-      if (data == null) {
-        throw AppException.badRequest("Gooong Map API returned null data");
-      }
       // distance
       int[][] weightMatrix = toWeightMatrix(data, true);
       int[][] durationMatrix = toWeightMatrix(data, false);
       List<Integer> route = computeRoute(weightMatrix);
-      ShippingConfig cfg =
-          shippingConfigRepo
-              .findById(1L)
-              .orElseThrow(() -> new IllegalStateException("Shipping config (id=1) not found"));
       List<PriceAndRouteDto> routeDtos = new ArrayList<>();
       double curPrice = 0;
       int distance = 0;
@@ -735,11 +989,11 @@ public class OrderService {
         }
 
         curPrice +=
-            calculateTotalShippingCost(distanceKm, curWeight, pkg.size(), cfg) / totalDestinations;
+            pricing.shippingCost(distanceKm, curWeight, pkg.size()) / totalDestinations;
 
         PriceAndRouteDto dto =
             new PriceAndRouteDto(
-                Math.max(cfg.getMinFee(), Math.round(curPrice / 1000) * 1000),
+                Math.max(pricing.minFee(), Math.round(curPrice / 1000) * 1000),
                 pkg.receiverAddress().latitude(),
                 pkg.receiverAddress().longitude(),
                 i,
@@ -791,116 +1045,154 @@ public class OrderService {
     return matrix;
   }
 
+  /** Thứ tự giao: [0 (điểm lấy), các điểm giao...]; xem {@link RouteSolver}. */
   public List<Integer> computeRoute(int[][] weightMatrix) {
-    int n = weightMatrix.length; // including point A at index 0
-    int N = n - 1; // number of delivery points
-    int[][] dp = new int[1 << N][n];
-    int[][] parent = new int[1 << N][n];
-
-    // Init: from 0 to each point i
-    for (int i = 1; i < n; i++) {
-      int mask = 1 << (i - 1); // bit i-1 represents point i
-      dp[mask][i] = weightMatrix[0][i];
-      parent[mask][i] = 0;
-    }
-
-    // DP
-    for (int mask = 1; mask < (1 << N); mask++) {
-      for (int u = 1; u < n; u++) {
-        if ((mask & (1 << (u - 1))) == 0) continue;
-        int prevMask = mask ^ (1 << (u - 1));
-        if (prevMask == 0) continue;
-
-        dp[mask][u] = Integer.MAX_VALUE / 2;
-        for (int v = 1; v < n; v++) {
-          if ((prevMask & (1 << (v - 1))) == 0) continue;
-          int cost = dp[prevMask][v] + weightMatrix[v][u];
-          if (cost < dp[mask][u]) {
-            dp[mask][u] = cost;
-            parent[mask][u] = v;
-          }
-        }
-      }
-    }
-
-    // Find best end point
-    int finalMask = (1 << N) - 1;
-    int end = -1;
-    int minCost = Integer.MAX_VALUE / 2;
-    for (int u = 1; u < n; u++) {
-      if (dp[finalMask][u] < minCost) {
-        minCost = dp[finalMask][u];
-        end = u;
-      }
-    }
-
-    // Reconstruct path
-    List<Integer> path = new ArrayList<>();
-    int mask = finalMask;
-    while (end != 0) {
-      path.add(end);
-      int temp = parent[mask][end];
-      mask ^= (1 << (end - 1));
-      end = temp;
-    }
-    path.add(0);
-    Collections.reverse(path);
-    return path;
+    return routeSolver.solve(weightMatrix).path();
   }
 
-  public double calculateTotalShippingCost(
-      double distanceKm, double actualWeightKg, PackageSize size, ShippingConfig cfg) {
-    SizeConfig sizeCfg =
-        sizeConfigRepo
-            .findBySizeCode(size)
-            .orElseThrow(
-                () -> new IllegalStateException("Size config not found for size: " + size));
-    // 1) distance fee
-    double extraKm = Math.max(0, distanceKm - cfg.getBaseKm());
-    long distanceFee = Math.round(cfg.getBaseKmFee() + extraKm * cfg.getRatePerKm());
+  /** Các trạng thái cho phép shipper nhận đơn. */
+  private static final List<OrderStatus> CLAIMABLE_STATUSES =
+      List.of(OrderStatus.FINDING_DRIVER, OrderStatus.REASSIGNING_DRIVER);
 
-    // 2) size surcharge
-    long sizeFee = sizeCfg.getSurcharge();
+  /**
+   * Shipper nhận đơn. Claim được quyết định bởi một Lua script trên Redis (1 round trip, atomic):
+   * các shipper đến sau nhận 409 ngay mà không chạm tới row của order. Người thắng mới cập nhật DB
+   * bằng một UPDATE có điều kiện; nếu UPDATE không khớp hoặc transaction rollback thì claim trên
+   * Redis được hoàn tác.
+   */
+  @Transactional
+  public OrderDetailResponse assignDriverToOrder(UUID driverId, UUID orderId) {
+    log.info("Assigning driver {} to order {}", driverId, orderId);
+    String driver = driverId.toString();
+    String orderAssigneeKey = String.format(ORDER_ASSIGNEE_KEY_PATTERN, orderId);
+    String deliveringOrder = String.format(DRIVER_DELIVERING_ORDER_KEY, driverId);
 
-    // 3) weight fee
-    long weightFee = Math.round(actualWeightKg * cfg.getRatePerKg());
+    Long claim =
+        redisTemplate.execute(
+            claimOrderScript,
+            List.of(
+                orderAssigneeKey,
+                deliveringOrder,
+                DRIVERS_AVAILABLE_KEY,
+                String.format(ORDER_OFFERS_PREFIX, orderId),
+                String.format(DRIVER_OFFER_STATS_KEY, driverId)),
+            driver,
+            orderId.toString(),
+            String.valueOf(System.currentTimeMillis()));
+    if (claim == null || claim == 0L) {
+      throw AppException.conflict("Order already has a driver assigned");
+    }
+    if (claim < 0L) {
+      throw AppException.conflict("Driver is already delivering another order");
+    }
+    boolean fromOffer = claim == 2L;
+
+    // từ đây claim đã thuộc về driver này -> mọi nhánh thất bại phải hoàn tác Redis
+    List<String> releaseKeys =
+        List.of(
+            orderAssigneeKey,
+            deliveringOrder,
+            DRIVERS_AVAILABLE_KEY,
+            String.format(DRIVER_FCM_TOKEN, driverId));
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            // báo dispatch engine local ngay, không chờ keyspace notification / tick kế tiếp
+            dispatchEngine.onOrderAssigned(orderId);
+            if (fromOffer) dispatchMetrics.offerAccepted();
+          }
 
-    // 4) subtotal
-    double subtotal = distanceFee + sizeFee + weightFee;
+          @Override
+          public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+              redisTemplate.execute(
+                  releaseOrderClaimScript, releaseKeys, driver, orderId.toString());
+              // SET assignee ở trên đã dừng dispatch (keyspace event / tick) trước khi biết kết quả
+              // DB -> order còn chờ shipper phải được dispatch lại
+              redispatchAfterFailedClaim(orderId);
+            }
+          }
+        });
 
-    // 5) fuel surcharge
-    if (cfg.getFuelSurchargePercent() != null && cfg.getFuelSurchargePercent() > 0) {
-      subtotal = subtotal * (1 + cfg.getFuelSurchargePercent() / 100.0);
+    int updated =
+        orderRepo.claimOrder(orderId, driverId, CLAIMABLE_STATUSES, LocalDateTime.now());
+    if (updated == 0) {
+      if (!orderRepo.existsById(orderId)) {
+        throw AppException.notFound("Order not found");
+      }
+      throw AppException.conflict("Order is no longer available for assignment");
     }
 
-    //    return Math.max(cfg.getMinFee(), Math.round(subtotal));
-    return subtotal;
-  }
-
-  public OrderDetailResponse assignDriverToOrder(UUID driverId, UUID orderId) {
     OrderEntity order =
-        orderRepo.findById(orderId).orElseThrow(() -> AppException.badRequest("Order not found"));
-
-    if (order.getShipperId() != null) {
-      throw AppException.badRequest("Order already has a driver assigned");
-    }
-    log.info("Assigning driver {} to order {}", driverId, orderId);
-    String orderAssigneeKey = String.format(ORDER_ASSIGNEE_KEY_PATTERN, orderId);
-    String deliveringOrder = String.format(DRIVER_DELIVERING_ORDER_KEY, driverId);
-    redisTemplate.opsForValue().set(orderAssigneeKey, driverId.toString());
-    redisTemplate.opsForValue().set(deliveringOrder, orderId.toString());
-    order.setStatus(OrderStatus.DRIVER_ASSIGNED);
-    order.setShipperId(driverId);
-    orderRepo.save(order);
+        orderRepo.findById(orderId).orElseThrow(() -> AppException.notFound("Order not found"));
 
     // 3) Prepare notification payload (do not send inside transaction)
     final UUID creatorId = order.getCreatorId();
-    publisher.publishEvent(new OrderAssignedEvent(orderId, creatorId));
+    orderOutbox.append(new OrderAssignedEvent(orderId, creatorId, driverId));
 
     // 5) Return immediately (notification happens after commit asynchronously)
     return OrderMapper.toDetail(order);
   }
 
+  /** Đưa order vẫn đang chờ shipper vào lại hàng đợi dispatch (job chống trùng theo order). */
+  private void redispatchAfterFailedClaim(UUID orderId) {
+    try {
+      // afterCompletion: transaction cũ đã kết thúc, đọc trong transaction mới
+      TransactionTemplate readTx =
+          new TransactionTemplate(transactionTemplate.getTransactionManager());
+      readTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+      readTx.setReadOnly(true);
+      DispatchRequest request = readTx.execute(tx -> redispatchRequest(orderId));
+      if (request != null && dispatchJobQueue.enqueue(request)) {
+        log.info("Re-dispatching order {} after a rolled back claim", orderId);
+      }
+    } catch (Exception ex) {
+      log.error("Failed to re-dispatch order {} after a rolled back claim", orderId, ex);
+    }
+  }
+
+  private DispatchRequest redispatchRequest(UUID orderId) {
+    OrderEntity order = orderRepo.findById(orderId).orElse(null);
+    if (order == null
+        || order.getShipperId() != null
+        || !CLAIMABLE_STATUSES.contains(order.getStatus())) {
+      return null;
+    }
+    double[] point;
+    DispatchKind kind;
+    UUID previousShipper = null;
+    if (order.getStatus() == OrderStatus.REASSIGNING_DRIVER) {
+      // cùng điểm tìm như lúc shipper cũ trả order
+      OrderStatusHistory reassign =
+          historyRepo.findAllByOrderIdOrderByCreatedAtAsc(orderId).stream()
+              .filter(h -> h.getToStatus() == OrderStatus.REASSIGNING_DRIVER)
+              .reduce((first, second) -> second)
+              .orElse(null);
+      point =
+          reassign != null
+              ? reassignPickupLocation(order, reassign.getFromStatus(), reassign.getOldShipperId())
+              : reassignPickupLocation(order, null, null);
+      kind = DispatchKind.REASSIGN;
+      previousShipper = reassign != null ? reassign.getOldShipperId() : null;
+    } else {
+      point = reassignPickupLocation(order, null, null);
+      kind = DispatchKind.FIRST;
+    }
+    if (point == null) {
+      log.error("Order {} has no pickup coordinates, re-dispatch skipped", orderId);
+      return null;
+    }
+    return new DispatchRequest(
+        orderId,
+        point[0],
+        point[1],
+        dispatchProperties.getBatchK(),
+        System.currentTimeMillis(),
+        kind,
+        previousShipper);
+  }
+
   /**
    * State transition map: allowed next statuses from a current status. Tinh gọn/khởi tạo theo logic
    * bạn muốn; bạn có thể mở rộng.
@@ -1023,6 +1315,7 @@ public class OrderService {
     return OrderMapper.toPackageItem(saved);
   }
 
+  @Transactional
   public ReviewResponse submitReview(UUID orderId, UUID userId, CreateReviewRequest req) {
     OrderEntity order =
         orderRepo
@@ -1058,7 +1351,8 @@ public class OrderService {
             .createdAt(LocalDateTime.now())
             .build();
     try {
-      reviewRepo.save(review);
+      // flush ngay để vi phạm unique(order_id) rơi vào catch bên dưới thay vì lúc commit
+      reviewRepo.saveAndFlush(review);
 
       // 6. Update flag trong order
       order.setRated(true);
@@ -1069,6 +1363,16 @@ public class OrderService {
       // fallback nếu unique(order_id) bị hit
       throw new IllegalStateException("Order đã được đánh giá (concurrent)", ex);
     }
+    // chỉ cộng vào feature ranking khi review đã commit (rollback không để lại rating ảo)
+    final UUID reviewedShipper = review.getShipperId();
+    final int rating = review.getRating();
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            driverFeatureCache.recordRating(reviewedShipper, rating);
+          }
+        });
     return OrderMapper.toReviewResponse(review);
   }
 
@@ -40,13 +40,39 @@ public class PaymentClientService {
             response ->
                 response
                     .bodyToMono(String.class)
+                    .defaultIfEmpty("")
                     .flatMap(
                         body ->
-                            Mono.error(AppException.internal("Create payment failed: " + body))))
+                            Mono.error(
+                                response.statusCode().is4xxClientError()
+                                    ? AppException.badRequest("Create payment rejected: " + body)
+                                    : AppException.internal("Create payment failed: " + body))))
         .bodyToMono(PaymentResponse.class)
         .timeout(Duration.ofSeconds(5));
   }
 
+  /**
+   * Link thanh toán cho order; payment-service idempotent theo orderCode nên gọi lại an toàn (trả
+   * về link đã có).
+   */
+  public Mono<PaymentResponse> createPaymentLink(Long orderCode, long amount) {
+    CreatePaymentRequest request = new CreatePaymentRequest();
+    request.setOrderCode(orderCode);
+    request.setDescription(orderCode.toString());
+    request.setAmount(amount);
+    request.setCancelUrl("Nothing");
+    request.setReturnUrl("Nothing");
+    return createPayment(request);
+  }
+
+  /**
+   * payment-service đã từ chối request (4xx): chắc chắn không có link. Lỗi khác (timeout, mạng,
+   * 5xx) không biết link đã được tạo hay chưa.
+   */
+  public static boolean isRejected(Throwable t) {
+    return t instanceof AppException ex && ex.getStatus().is4xxClientError();
+  }
+
   public Mono<PaymentStatus> getPaymentStatus(String paymentId) {
     return webClient
         .get()
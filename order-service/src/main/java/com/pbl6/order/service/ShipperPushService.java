@@ -1,24 +1,28 @@
 package com.pbl6.order.service;
 
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.Message;
-import com.google.firebase.messaging.Notification;
-import com.pbl6.order.constant.RedisKeyConstants;
+import com.pbl6.order.config.DispatchProperties;
+import com.pbl6.order.service.dispatch.DispatchCandidate;
+import com.pbl6.order.service.dispatch.DispatchMetrics;
+import com.pbl6.order.service.dispatch.DispatchPhase;
+import com.pbl6.order.service.dispatch.DriverFeatures;
+import com.pbl6.order.service.geo.DriverLocationSync;
+import com.pbl6.order.service.geo.DriverSpatialIndex;
+import com.pbl6.order.service.push.PushBatcher;
+import com.pbl6.order.service.push.PushRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.geo.Circle;
-import org.springframework.data.geo.Distance;
-import org.springframework.data.geo.Metrics;
-import org.springframework.data.geo.Point;
-import org.springframework.data.geo.GeoResults;
-import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static com.pbl6.order.constant.RedisKeyConstants.*;
 
@@ -26,184 +30,279 @@ import static com.pbl6.order.constant.RedisKeyConstants.*;
 @Service
 public class ShipperPushService {
 
+  /** Giá trị của order:{id}:state khi order đã huỷ / kết thúc. */
+  private static final String ORDER_STATE_CLOSED = "CLOSED";
+
   private final RedisTemplate<String, String> redisTemplate;
-  private final ExecutorService pushExecutor;
-  private final int candidateLimit = 100; // M (số candidate lấy ban đầu)
-  private final long perBatchTimeoutMs = 8000; // T (chờ giữa các batch, ví dụ 8000 ms)
+  private final DispatchProperties dispatchProperties;
+  private final PushBatcher pushBatcher;
+  private final DispatchMetrics dispatchMetrics;
+
+  private final ObjectProvider<DriverLocationSync> driverLocationSync;
+
+  @SuppressWarnings("rawtypes")
+  private final RedisScript<List> dispatchCandidatesScript;
+
+  @SuppressWarnings("rawtypes")
+  private final RedisScript<List> filterAvailableDriversScript;
+
+  private final RedisScript<Long> recordOffersScript;
 
+  @SuppressWarnings("rawtypes")
   public ShipperPushService(
-      RedisTemplate<String, String> redisTemplate, ExecutorService pushExecutor) {
+      RedisTemplate<String, String> redisTemplate,
+      DispatchProperties dispatchProperties,
+      PushBatcher pushBatcher,
+      DispatchMetrics dispatchMetrics,
+      ObjectProvider<DriverLocationSync> driverLocationSync,
+      @Qualifier("dispatchCandidatesScript") RedisScript<List> dispatchCandidatesScript,
+      @Qualifier("filterAvailableDriversScript") RedisScript<List> filterAvailableDriversScript,
+      @Qualifier("recordOffersScript") RedisScript<Long> recordOffersScript) {
     this.redisTemplate = redisTemplate;
-    this.pushExecutor = pushExecutor;
+    this.dispatchProperties = dispatchProperties;
+    this.pushBatcher = pushBatcher;
+    this.dispatchMetrics = dispatchMetrics;
+    this.driverLocationSync = driverLocationSync;
+    this.dispatchCandidatesScript = dispatchCandidatesScript;
+    this.filterAvailableDriversScript = filterAvailableDriversScript;
+    this.recordOffersScript = recordOffersScript;
   }
 
   /**
-   * Public API: gọi hàm này khi có order mới. Hàm non-blocking: submit task vào executor rồi return
-   * ngay.
+   * Lấy danh sách candidate (gần -> xa) đã lọc online/available, kèm FCM token. GEO search theo
+   * các vòng bán kính tăng dần (sorted ASC + COUNT), kiểm tra available và đọc token đều chạy trong
+   * một Lua script nên chỉ tốn một round trip Redis, và payload không phình theo số shipper.
    *
-   * @param orderId order id
-   * @param longitude kinh độ (double)
-   * @param latitude vĩ độ (double)
-   * @param k số shipper muốn push trong mỗi batch (top-K)
+   * <p>Khi {@code dispatch.candidate-source=local-index} và index đã nạp xong, nearest-k lấy từ
+   * spatial index local thay cho GEOSEARCH.
+   *
+   * <p>Shipper đã được offer order này trong {@code dispatch.offer-cooldown-ms} bị loại ngay trong
+   * script.
+   *
+   * @param orderId order cần tìm shipper
+   * @param longitude kinh độ điểm lấy hàng
+   * @param latitude vĩ độ điểm lấy hàng
+   * @param limit số candidate tối đa (N)
    */
-  public void pushToNearestShippersAsync(UUID orderId, double longitude, double latitude, int k) {
-    // Submit task bất đồng bộ - trả về ngay
-    pushExecutor.submit(() -> pushToNearestShippersWorker(orderId, longitude, latitude, k));
+  public List<DispatchCandidate> findAvailableCandidates(
+      UUID orderId, double longitude, double latitude, int limit) {
+    String offersKey = String.format(ORDER_OFFERS_PREFIX, orderId);
+    DriverLocationSync sync = driverLocationSync.getIfAvailable();
+    if (sync != null && sync.isReady()) {
+      return findFromLocalIndex(sync.index(), offersKey, longitude, latitude, limit);
+    }
+
+    List<?> raw =
+        redisTemplate.execute(
+            dispatchCandidatesScript,
+            List.of(DRIVERS_GEO_KEY, DRIVERS_AVAILABLE_KEY, offersKey),
+            String.valueOf(longitude),
+            String.valueOf(latitude),
+            ringsArg(),
+            String.valueOf(limit),
+            String.valueOf(Math.min(limit, dispatchProperties.getRingMinCandidates())),
+            String.valueOf(limit * Math.max(1, dispatchProperties.getRingScanFactor())),
+            cooldownCutoff());
+    if (raw == null || raw.isEmpty()) return List.of();
+
+    // raw[0] = vòng bán kính (km) đã dừng lại; mỗi candidate: id, token, dist, features...
+    int stride = 3 + DriverFeatures.FIELD_COUNT;
+    int hits = (raw.size() - 1) / stride;
+    log.debug("Candidate search stopped at ring {} km with {} hits", raw.get(0), hits);
+    dispatchMetrics.ringCandidates(String.valueOf(raw.get(0)), hits);
+    List<DispatchCandidate> candidates = new ArrayList<>(hits);
+    for (int i = 1; i + stride <= raw.size(); i += stride) {
+      candidates.add(
+          new DispatchCandidate(
+              String.valueOf(raw.get(i)),
+              String.valueOf(raw.get(i + 1)),
+              Double.parseDouble(String.valueOf(raw.get(i + 2))),
+              DriverFeatures.parse(raw, i + 3)));
+    }
+    return candidates;
   }
 
   /**
-   * Worker thực hiện tìm shipper và push theo batch. Chạy trong thread pool (không block caller).
+   * Nearest-k lấy từ spatial index trong JVM (không round trip), sau đó một Lua script lọc
+   * available / đang giao / token cho đúng danh sách đó.
    */
-  private void pushToNearestShippersWorker(UUID orderId, double longitude, double latitude, int k) {
-    String assigneeKey = String.format(ORDER_ASSIGNEE_KEY_PATTERN, orderId.toString());
+  private List<DispatchCandidate> findFromLocalIndex(
+      DriverSpatialIndex index, String offersKey, double longitude, double latitude, int limit) {
+    List<Double> rings = dispatchProperties.getRingsKm();
+    double maxKm = rings.isEmpty() ? 50.0 : Collections.max(rings);
+    int scan = limit * Math.max(1, dispatchProperties.getRingScanFactor());
+    List<DriverSpatialIndex.Neighbor> nearest = index.nearest(longitude, latitude, scan, maxKm);
+    if (nearest.isEmpty()) {
+      dispatchMetrics.ringCandidates("local", 0);
+      return List.of();
+    }
 
-    try {
-      int maxTries = 5;
-      for (int i = 0; i < maxTries; i++) {
-        // 1) Lấy danh sách candidate từ GEO (gần -> xa)
-        // radius: 50 km (có thể thay). Lấy tối đa candidateLimit sau khi filter online.
-        Circle circle =
-            new Circle(new Point(longitude, latitude), new Distance(50, Metrics.KILOMETERS));
-        GeoResults<RedisGeoCommands.GeoLocation<String>> geoResults =
-            redisTemplate.opsForGeo().radius(DRIVERS_GEO_KEY, circle);
-
-        List<String> candidateIds = new ArrayList<>();
-        if (geoResults != null) {
-          candidateIds =
-              geoResults.getContent().stream()
-                  .map(g -> g.getContent().getName()) // shipperId as String
-                  .filter(this::isDriverAvailable) // lọc online/available (kiểm tra FCM token hoặc
-                  // status)
-                  .limit(candidateLimit)
-                  .toList();
-        }
-
-        if (candidateIds.isEmpty()) {
-          log.debug("No available drivers found for order {}", orderId);
-          return;
-        }
-
-        // 2) Batch push: mỗi lần gửi top-k shipper tiếp theo, chờ perBatchTimeoutMs để xem có ai
-        // nhận
-        // không
-        int idx = 0;
-        final int total = candidateIds.size();
-
-        while (idx < total) {
-          // Trước khi gửi batch kiểm tra order đã có assignee chưa
-          if (isOrderAssigned(assigneeKey)) {
-            // có người nhận rồi -> dừng
-            return;
-          }
-
-          int end = Math.min(idx + k, total);
-          List<String> batch = candidateIds.subList(idx, end);
-
-          // Gửi notification không đồng bộ cho từng driver trong batch
-          for (String driverId : batch) {
-            // kiểm tra lại order trước khi gọi push để giảm gửi thừa
-            if (isOrderAssigned(assigneeKey) || !isDriverAvailable(driverId)) {
-              return;
-            }
-
-            // Nếu sendPushToDriver blocking thì cân nhắc submit mỗi push vào executor khác.
-            sendPushToDriver(driverId, orderId.toString());
-          }
-
-          // Sau khi gửi batch, chờ 0..perBatchTimeoutMs nhưng check orderAssigned sớm (polling nhỏ)
-          long waited = 0;
-          final long pollInterval = 200; // check every 200ms để dừng sớm nếu có assignee
-          while (waited < perBatchTimeoutMs) {
-            if (isOrderAssigned(assigneeKey)) {
-              return; // có shipper nhận -> dừng ngay
-            }
-            try {
-              Thread.sleep(Math.min(pollInterval, perBatchTimeoutMs - waited));
-            } catch (InterruptedException e) {
-              Thread.currentThread().interrupt();
-              return;
-            }
-            waited += pollInterval;
-          }
-
-          // nếu hết timeout mà chưa ai nhận -> tiếp batch tiếp theo
-          idx = end;
-        }
-        log.debug("No available drivers found for order {}", orderId);
-        // Hết danh sách candidate, tìm lại từ đầu (nếu có thể)
-        Thread.sleep(60000); // đợi 60s trước khi thử lại từ đầu
-      }
-    } catch (Exception ex) {
-      // log error nhưng không throw (worker), tránh crash cả pool
-      // logger.warn("Push worker failed for order {}: {}", orderId, ex.getMessage());
+    List<String> ids = new ArrayList<>(nearest.size());
+    for (DriverSpatialIndex.Neighbor n : nearest) ids.add(n.driverId().toString());
+    List<?> raw = filterAvailable(offersKey, ids, limit);
+    // mỗi shipper: pos, token, features...
+    int stride = 2 + DriverFeatures.FIELD_COUNT;
+    int hits = raw == null ? 0 : raw.size() / stride;
+    dispatchMetrics.ringCandidates("local", hits);
+    if (hits == 0) return List.of();
+
+    List<DispatchCandidate> candidates = new ArrayList<>(hits);
+    for (int i = 0; i + stride <= raw.size(); i += stride) {
+      DriverSpatialIndex.Neighbor n = nearest.get(Integer.parseInt(String.valueOf(raw.get(i))));
+      candidates.add(
+          new DispatchCandidate(
+              n.driverId().toString(),
+              String.valueOf(raw.get(i + 1)),
+              n.distanceKm(),
+              DriverFeatures.parse(raw, i + 2)));
     }
-    if (!isOrderAssigned(assigneeKey)) {
-      log.debug("No drivers accepted the order {}", orderId);
+    return candidates;
+  }
 
+  /**
+   * Kiểm tra lại các candidate giữ từ lần dispatch trước (có thể đã nhận order khác, offline hay
+   * mất token): chỉ giữ shipper vẫn available, token và feature đọc mới, thứ tự giữ nguyên.
+   */
+  public List<DispatchCandidate> recheckCandidates(
+      UUID orderId, List<DispatchCandidate> candidates) {
+    if (candidates.isEmpty()) return List.of();
+    List<String> ids = candidates.stream().map(DispatchCandidate::driverId).toList();
+    List<?> raw =
+        filterAvailable(String.format(ORDER_OFFERS_PREFIX, orderId), ids, candidates.size());
+    int stride = 2 + DriverFeatures.FIELD_COUNT;
+    if (raw == null || raw.size() < stride) return List.of();
+    List<DispatchCandidate> alive = new ArrayList<>(raw.size() / stride);
+    for (int i = 0; i + stride <= raw.size(); i += stride) {
+      DispatchCandidate c = candidates.get(Integer.parseInt(String.valueOf(raw.get(i))));
+      alive.add(
+          new DispatchCandidate(
+              c.driverId(),
+              String.valueOf(raw.get(i + 1)),
+              c.distanceKm(),
+              DriverFeatures.parse(raw, i + 2)));
     }
+    return alive;
+  }
+
+  /** Chạy {@code filter_available_drivers.lua} cho {@code driverIds} (giữ thứ tự). */
+  private List<?> filterAvailable(String offersKey, List<String> driverIds, int limit) {
+    String[] args = new String[driverIds.size() + 2];
+    args[0] = String.valueOf(limit);
+    args[1] = cooldownCutoff();
+    for (int i = 0; i < driverIds.size(); i++) args[i + 2] = driverIds.get(i);
+    return redisTemplate.execute(
+        filterAvailableDriversScript,
+        List.of(DRIVERS_AVAILABLE_KEY, offersKey),
+        (Object[]) args);
+  }
+
+  private String cooldownCutoff() {
+    return String.valueOf(System.currentTimeMillis() - dispatchProperties.getOfferCooldownMs());
+  }
+
+  private String ringsArg() {
+    return dispatchProperties.getRingsKm().stream()
+        .sorted()
+        .map(String::valueOf)
+        .collect(Collectors.joining(","));
   }
 
   /**
-   * Kiểm tra order đã có assignee hay chưa. Trả về true nếu order đã được assign
-   * (order:{id}:assignee tồn tại / có value).
+   * Kiểm tra order còn cần dispatch không, đọc order:{id}:assignee và order:{id}:state trong một
+   * MGET.
+   *
+   * @return {@link DispatchPhase#CANCELLED} nếu order đã huỷ / kết thúc, {@link
+   *     DispatchPhase#ASSIGNED} nếu đã có shipper, null nếu vẫn cần tìm shipper
    */
-  private boolean isOrderAssigned(String assigneeKey) {
+  public DispatchPhase closedPhase(UUID orderId) {
     try {
-      return redisTemplate.hasKey(assigneeKey);
+      List<String> values =
+          redisTemplate
+              .opsForValue()
+              .multiGet(
+                  List.of(
+                      String.format(ORDER_ASSIGNEE_KEY_PATTERN, orderId),
+                      String.format(ORDER_STATE_PREFIX, orderId)));
+      if (values == null) return null;
+      if (ORDER_STATE_CLOSED.equals(values.get(1))) return DispatchPhase.CANCELLED;
+      return values.get(0) != null ? DispatchPhase.ASSIGNED : null;
     } catch (Exception ex) {
-      // trong trường hợp redis lỗi, tránh false negative -> log rồi assume not assigned (tùy
-      // policy)
-      return false;
+      // redis lỗi -> coi như order vẫn mở, tick sau kiểm tra lại
+      log.warn("Failed to check dispatch state of order {}: {}", orderId, ex.getMessage());
+      return null;
     }
   }
 
   /**
-   * Kiểm tra driver có available (ví dụ có FCM token) hay không. Dùng cùng key pattern với hàm
-   * updateLocation của bạn: DRIVER_FCM_TOKEN
+   * Đánh dấu order không còn cần dispatch (huỷ / kết thúc) và báo mọi replica dừng dispatch ngay.
+   * Key order:{id}:state giữ kết quả cho các tick / job đến muộn (vd. OrderCreatedEvent trùng).
    */
-  private boolean isDriverAvailable(String driverId) {
-    try {
-      String tokenKey = String.format(DRIVER_FCM_TOKEN, driverId);
-      String isDelivering = String.format(DRIVER_DELIVERING_ORDER_KEY, driverId);
-      return redisTemplate.hasKey(tokenKey) && !redisTemplate.hasKey(isDelivering);
-    } catch (Exception ex) {
-      return false;
+  public void markOrderClosed(UUID orderId) {
+    redisTemplate
+        .opsForValue()
+        .set(
+            String.format(ORDER_STATE_PREFIX, orderId),
+            ORDER_STATE_CLOSED,
+            Duration.ofSeconds(dispatchProperties.getOffersTtlSeconds()));
+    redisTemplate.convertAndSend(DISPATCH_CANCEL_CHANNEL, orderId.toString());
+  }
+
+  /**
+   * Push offer của một wave tới các driver. Token đã có sẵn trong candidate nên không cần GET lại;
+   * cả wave được đưa vào {@link PushBatcher} và đi chung một batch FCM. Offer được ghi vào
+   * order:{id}:offers để các wave / lần tìm lại sau bỏ qua shipper này trong thời gian cooldown.
+   */
+  public void pushOffers(List<DispatchCandidate> wave, String orderId) {
+    recordOffers(wave, orderId);
+    List<PushRequest> requests = new ArrayList<>(wave.size());
+    for (DispatchCandidate candidate : wave) {
+      String fcmToken = candidate.fcmToken();
+      if (fcmToken == null || fcmToken.isEmpty()) continue;
+      String driverId = candidate.driverId();
+      requests.add(
+          new PushRequest(
+              fcmToken,
+              String.format(DRIVER_FCM_TOKEN, driverId),
+              driverId,
+              "📦 Bạn có đơn hàng mới!",
+              "Mời xem chi tiết và nhận đơn.",
+              Map.of(
+                  "status", "📦 Bạn có đơn hàng mới!",
+                  "orderId", orderId,
+                  "message", "Vui lòng kiểm tra để nhận.")));
     }
+    log.debug("Pushing order {} to {} candidate drivers", orderId, requests.size());
+    pushBatcher.enqueueAll(requests);
   }
 
-  /** Gửi push notification tới driver. Dùng sendAsync của Firebase để không block. */
-  private void sendPushToDriver(String driverId, String orderId) {
+  /**
+   * Loại shipper khỏi các lần dispatch sau của order (vd. shipper vừa trả order): ghi vào
+   * order:{id}:offers với score ở tương lai để cooldown kéo dài hết TTL của offers. claim_order.lua
+   * không tính score ở tương lai là offer được nhận.
+   */
+  public void excludeDriver(UUID orderId, UUID driverId) {
+    long until = System.currentTimeMillis() + dispatchProperties.getOffersTtlSeconds() * 1000;
+    String offersKey = String.format(ORDER_OFFERS_PREFIX, orderId);
+    redisTemplate.opsForZSet().add(offersKey, driverId.toString(), until);
+    redisTemplate.expire(offersKey, Duration.ofSeconds(dispatchProperties.getOffersTtlSeconds()));
+  }
+
+  private void recordOffers(List<DispatchCandidate> wave, String orderId) {
+    if (wave.isEmpty()) return;
+    String[] args = new String[wave.size() + 3];
+    args[0] = String.valueOf(System.currentTimeMillis());
+    args[1] = String.valueOf(dispatchProperties.getOffersTtlSeconds());
+    args[2] = String.valueOf(dispatchProperties.getRanking().getAcceptanceWindow());
+    for (int i = 0; i < wave.size(); i++) {
+      args[i + 3] = wave.get(i).driverId();
+    }
     try {
-      System.out.println("Candidates driver: " + driverId + " for order " + orderId);
-      String tokenKey = String.format(DRIVER_FCM_TOKEN, driverId);
-      String fcmToken = redisTemplate.opsForValue().get(tokenKey);
-      if (fcmToken == null || fcmToken.isEmpty()) return;
-
-      Map<String, String> data =
-          Map.of(
-              "status", "📦 Bạn có đơn hàng mới!",
-              "orderId", orderId,
-              "message", "Vui lòng kiểm tra để nhận.");
-
-      Notification notification =
-          Notification.builder()
-              .setTitle("📦 Bạn có đơn hàng mới!")
-              .setBody("Mời xem chi tiết và nhận đơn.")
-              .build();
-
-      Message message =
-          Message.builder()
-              .setToken(fcmToken)
-              .setNotification(notification)
-              .putAllData(data)
-              .build();
-
-      // sendAsync để không block worker thread
-      FirebaseMessaging.getInstance().sendAsync(message);
+      String offersKey = String.format(ORDER_OFFERS_PREFIX, orderId);
+      redisTemplate.execute(recordOffersScript, List.of(offersKey), (Object[]) args);
     } catch (Exception ex) {
-      // log error nếu cần
-      // logger.error("Failed to send push to driver {} for order {}: {}", driverId, orderId,
-      // ex.getMessage());
+      // không ghi được offer chỉ làm mất cooldown, vẫn push
+      log.warn("Failed to record offers for order {}: {}", orderId, ex.getMessage());
     }
+    dispatchMetrics.offersSent(wave.size());
   }
 }
@@ -0,0 +1,218 @@
+package com.pbl6.order.service.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pbl6.order.config.BulkImportProperties;
+import com.pbl6.order.dto.BulkImportResponse;
+import com.pbl6.order.exception.AppException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.pbl6.order.constant.RedisKeyConstants.BULK_IMPORT_JOB_KEY;
+
+/**
+ * Import hàng loạt chạy nền cho file lớn.
+ *
+ * <p>Trạng thái job (JSON {@link BulkImportResponse}) nằm ở {@code bulk:job:{creatorId}:{jobId}}
+ * trên Redis, được ghi lại sau mỗi chunk và giữ {@code bulk-import.job-ttl-seconds} sau khi xong;
+ * vì vậy GET / stream có thể vào bất kỳ replica nào. Stream SSE đọc lại key theo chu kỳ {@code
+ * bulk-import.stream-poll-ms} (một MGET cho mọi stream đang mở) và chỉ gửi khi trạng thái đổi.
+ */
+@Slf4j
+@Service
+public class BulkImportJobs {
+
+  private static final String RUNNING = "RUNNING";
+
+  private final BulkOrderImportService importService;
+  private final ExecutorService executor;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final BulkImportProperties props;
+
+  /** Stream đang mở trên replica này -> key job và trạng thái gửi gần nhất. */
+  private final ConcurrentMap<SseEmitter, Watch> streams = new ConcurrentHashMap<>();
+
+  public BulkImportJobs(
+      BulkOrderImportService importService,
+      @Qualifier("bulkImportExecutor") ExecutorService executor,
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      BulkImportProperties props,
+      MeterRegistry registry) {
+    this.importService = importService;
+    this.executor = executor;
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.props = props;
+    Gauge.builder("order.bulk.streams", streams, Map::size)
+        .description("Open bulk import progress streams on this replica")
+        .register(registry);
+  }
+
+  /** Nhận job và trả trạng thái ban đầu; import chạy trên {@code bulkImportExecutor}. */
+  public BulkImportResponse submit(List<BulkOrderRow> rows, UUID creatorId) {
+    importService.checkSize(rows);
+    String jobId = UUID.randomUUID().toString();
+    String key = BULK_IMPORT_JOB_KEY.formatted(creatorId, jobId);
+    BulkImportResponse initial =
+        new BulkImportResponse(jobId, RUNNING, rows.size(), 0, 0, 0, null);
+    save(key, initial);
+    try {
+      executor.execute(() -> run(rows, creatorId, jobId, key));
+    } catch (RejectedExecutionException ex) {
+      redisTemplate.delete(key);
+      throw AppException.serviceUnavailable("Too many bulk imports in progress, retry later");
+    }
+    return initial;
+  }
+
+  public BulkImportResponse get(UUID creatorId, String jobId) {
+    String key = BULK_IMPORT_JOB_KEY.formatted(creatorId, jobId);
+    String value = redisTemplate.opsForValue().get(key);
+    if (value == null) throw AppException.notFound("Bulk import job not found");
+    return read(value);
+  }
+
+  /** Stream {@code progress} mỗi khi trạng thái đổi, cuối cùng {@code result} rồi đóng. */
+  public SseEmitter stream(UUID creatorId, String jobId) {
+    String key = BULK_IMPORT_JOB_KEY.formatted(creatorId, jobId);
+    String value = redisTemplate.opsForValue().get(key);
+    if (value == null) throw AppException.notFound("Bulk import job not found");
+    SseEmitter emitter = new SseEmitter(props.getStreamTimeoutMs());
+    emitter.onCompletion(() -> streams.remove(emitter));
+    emitter.onError(ex -> streams.remove(emitter));
+    emitter.onTimeout(emitter::complete);
+    Watch watch = new Watch(key);
+    if (push(emitter, watch, value)) streams.put(emitter, watch);
+    return emitter;
+  }
+
+  @Scheduled(fixedDelayString = "${bulk-import.stream-poll-ms:500}")
+  public void pollStreams() {
+    if (streams.isEmpty()) return;
+    List<Map.Entry<SseEmitter, Watch>> open = new ArrayList<>(streams.entrySet());
+    List<String> values;
+    try {
+      values =
+          redisTemplate.opsForValue().multiGet(open.stream().map(e -> e.getValue().key).toList());
+    } catch (Exception ex) {
+      log.warn("Bulk import progress poll failed: {}", ex.getMessage());
+      return;
+    }
+    if (values == null) return;
+    for (int i = 0; i < open.size(); i++) {
+      SseEmitter emitter = open.get(i).getKey();
+      String value = values.get(i);
+      if (value == null) {
+        // hết TTL
+        emitter.complete();
+      } else if (!push(emitter, open.get(i).getValue(), value)) {
+        streams.remove(emitter);
+      }
+    }
+  }
+
+  private void run(List<BulkOrderRow> rows, UUID creatorId, String jobId, String key) {
+    try {
+      save(key, importService.importOrders(rows, creatorId, jobId, p -> saveProgress(key, p)));
+    } catch (Exception ex) {
+      // importOrders tự trả FAILED kèm kết quả; tới đây là lỗi ngoài import (vd. ghi Redis)
+      log.error("Bulk import {} failed", jobId, ex);
+      try {
+        BulkImportResponse last = read(redisTemplate.opsForValue().get(key));
+        save(
+            key,
+            new BulkImportResponse(
+                jobId,
+                "FAILED",
+                last.total(),
+                last.processed(),
+                last.created(),
+                last.failed(),
+                null));
+      } catch (Exception saveEx) {
+        log.warn("Failed to mark bulk import {} as failed: {}", jobId, saveEx.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Gửi {@code value} nếu khác lần trước; job kết thúc thì gửi {@code result} và đóng stream.
+   *
+   * @return false nếu stream đã đóng
+   */
+  private boolean push(SseEmitter emitter, Watch watch, String value) {
+    if (value.equals(watch.last)) return true;
+    watch.last = value;
+    boolean done = !RUNNING.equals(read(value).status());
+    try {
+      emitter.send(SseEmitter.event().name(done ? "result" : "progress").data(value));
+    } catch (IOException | IllegalStateException ex) {
+      // client đã ngắt
+      return false;
+    }
+    if (done) {
+      emitter.complete();
+      return false;
+    }
+    return true;
+  }
+
+  /** Progress giữa chừng: Redis lỗi thì bỏ qua, không dừng import đang ghi DB. */
+  private void saveProgress(String key, BulkImportResponse state) {
+    try {
+      save(key, state);
+    } catch (Exception ex) {
+      log.warn("Failed to save bulk import progress {}: {}", key, ex.getMessage());
+    }
+  }
+
+  private void save(String key, BulkImportResponse state) {
+    try {
+      redisTemplate
+          .opsForValue()
+          .set(
+              key,
+              objectMapper.writeValueAsString(state),
+              Duration.ofSeconds(props.getJobTtlSeconds()));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Cannot serialize bulk import state", ex);
+    }
+  }
+
+  private BulkImportResponse read(String value) {
+    try {
+      return objectMapper.readValue(Objects.requireNonNull(value), BulkImportResponse.class);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Corrupt bulk import state", ex);
+    }
+  }
+
+  private static final class Watch {
+    final String key;
+    String last;
+
+    Watch(String key) {
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.pbl6.order.service.bulk;
+
+import com.pbl6.order.dto.AddressDto;
+import com.pbl6.order.dto.CreateOrderRequest;
+import com.pbl6.order.dto.PackageDto;
+import com.pbl6.order.entity.PackageCategory;
+import com.pbl6.order.entity.PackageSize;
+import com.pbl6.order.entity.PayerType;
+import com.pbl6.order.entity.PaymentMethod;
+import com.pbl6.order.exception.AppException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc file CSV import order (RFC 4180: dấu phẩy, field trong ngoặc kép, {@code ""} là ngoặc kép).
+ *
+ * <p>Dòng đầu là header, tên cột không phân biệt hoa thường. Mỗi dòng là một gói hàng; các dòng
+ * cùng {@code order_ref} gộp thành một order nhiều điểm giao, thông tin lấy hàng / ghi chú lấy từ
+ * dòng đầu tiên. Không có {@code order_ref} thì mỗi dòng là một order.
+ */
+public final class BulkOrderCsvParser {
+
+  static final List<String> REQUIRED_COLUMNS =
+      List.of(
+          "pickup_detail",
+          "pickup_name",
+          "pickup_phone",
+          "pickup_lat",
+          "pickup_lon",
+          "receiver_detail",
+          "receiver_name",
+          "receiver_phone",
+          "receiver_lat",
+          "receiver_lon",
+          "size",
+          "weight_kg",
+          "image_url");
+
+  private BulkOrderCsvParser() {}
+
+  public static List<BulkOrderRow> parse(String csv) {
+    List<Record> records = records(csv);
+    if (records.isEmpty()) throw AppException.badRequest("CSV rỗng");
+    Map<String, Integer> header = new HashMap<>();
+    List<String> names = records.getFirst().fields;
+    for (int i = 0; i < names.size(); i++) {
+      header.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+    }
+    List<String> absent = REQUIRED_COLUMNS.stream().filter(c -> !header.containsKey(c)).toList();
+    if (!absent.isEmpty()) throw AppException.badRequest("CSV thiếu cột: " + absent);
+
+    Map<String, Group> byRef = new LinkedHashMap<>();
+    List<Group> groups = new ArrayList<>();
+    for (Record rec : records.subList(1, records.size())) {
+      if (rec.isBlank()) continue;
+      Line line = new Line(rec, header);
+      String ref = line.text("order_ref");
+      Group group = ref != null ? byRef.get(ref) : null;
+      if (group == null) {
+        group = new Group(rec.lineNumber, ref);
+        groups.add(group);
+        if (ref != null) byRef.put(ref, group);
+      }
+      if (group.error != null) continue;
+      try {
+        if (group.pickup == null) {
+          group.pickup = address(line, "pickup_");
+          group.customerNote = line.text("customer_note");
+          group.scheduledAt = line.text("scheduled_at");
+        }
+        group.packages.add(pkg(line));
+      } catch (IllegalArgumentException ex) {
+        group.error = "Dòng " + rec.lineNumber + ": " + ex.getMessage();
+      }
+    }
+
+    List<BulkOrderRow> rows = new ArrayList<>(groups.size());
+    for (Group g : groups) {
+      if (g.error != null) {
+        rows.add(BulkOrderRow.invalid(g.firstLine, g.ref, g.error));
+      } else {
+        rows.add(
+            BulkOrderRow.of(
+                g.firstLine,
+                g.ref,
+                new CreateOrderRequest(
+                    g.pickup,
+                    g.packages,
+                    g.customerNote,
+                    null,
+                    null,
+                    null,
+                    null,
+                    g.scheduledAt,
+                    PaymentMethod.CASH,
+                    null)));
+      }
+    }
+    return rows;
+  }
+
+  private static AddressDto address(Line line, String prefix) {
+    return new AddressDto(
+        line.text(prefix + "detail"),
+        line.text(prefix + "name"),
+        line.text(prefix + "phone"),
+        null,
+        null,
+        line.text(prefix + "note"),
+        line.number(prefix + "lat"),
+        line.number(prefix + "lon"));
+  }
+
+  private static PackageDto pkg(Line line) {
+    Double codAmount = line.number("cod_amount");
+    return new PackageDto(
+        null,
+        line.enumValue("size", PackageSize.class),
+        line.number("weight_kg"),
+        address(line, "receiver_"),
+        line.text("payer_type") != null
+            ? line.enumValue("payer_type", PayerType.class)
+            : PayerType.SENDER,
+        line.enumValue("category", PackageCategory.class),
+        codAmount != null && codAmount > 0,
+        codAmount,
+        line.text("image_url"),
+        null,
+        null,
+        null,
+        line.text("description"));
+  }
+
+  /** Tách CSV thành record, giữ số dòng bắt đầu của mỗi record (field có thể chứa xuống dòng). */
+  static List<Record> records(String csv) {
+    List<Record> out = new ArrayList<>();
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    int line = 1;
+    int recordLine = 1;
+    int i = csv.startsWith("﻿") ? 1 : 0; // BOM của file xuất từ Excel
+    for (; i < csv.length(); i++) {
+      char c = csv.charAt(i);
+      if (quoted) {
+        if (c == '"') {
+          if (i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+            field.append('"');
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else {
+          if (c == '\n') line++;
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\n' || c == '\r') {
+        if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') i++;
+        fields.add(field.toString());
+        field.setLength(0);
+        out.add(new Record(recordLine, fields));
+        fields = new ArrayList<>();
+        line++;
+        recordLine = line;
+      } else {
+        field.append(c);
+      }
+    }
+    if (!field.isEmpty() || !fields.isEmpty()) {
+      fields.add(field.toString());
+      out.add(new Record(recordLine, fields));
+    }
+    return out;
+  }
+
+  record Record(int lineNumber, List<String> fields) {
+    boolean isBlank() {
+      return fields.stream().allMatch(String::isBlank);
+    }
+  }
+
+  private static final class Group {
+    final int firstLine;
+    final String ref;
+    final List<PackageDto> packages = new ArrayList<>();
+    AddressDto pickup;
+    String customerNote;
+    String scheduledAt;
+    String error;
+
+    Group(int firstLine, String ref) {
+      this.firstLine = firstLine;
+      this.ref = ref;
+    }
+  }
+
+  private record Line(Record rec, Map<String, Integer> header) {
+
+    String text(String column) {
+      Integer idx = header.get(column);
+      if (idx == null || idx >= rec.fields.size()) return null;
+      String v = rec.fields.get(idx).trim();
+      return v.isEmpty() ? null : v;
+    }
+
+    Double number(String column) {
+      String v = text(column);
+      if (v == null) return null;
+      try {
+        return Double.valueOf(v);
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException(column + " không phải số: " + v);
+      }
+    }
+
+    <E extends Enum<E>> E enumValue(String column, Class<E> type) {
+      String v = text(column);
+      if (v == null) return null;
+      try {
+        return Enum.valueOf(type, v.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException ex) {
+        throw new IllegalArgumentException(column + " không hợp lệ: " + v);
+      }
+    }
+  }
+}
@@ -0,0 +1,343 @@
+package com.pbl6.order.service.bulk;
+
+import com.pbl6.order.config.BulkImportProperties;
+import com.pbl6.order.dto.BulkImportResponse;
+import com.pbl6.order.dto.BulkImportRowResult;
+import com.pbl6.order.dto.CreateOrderRequest;
+import com.pbl6.order.dto.DistanceMatrixResponse;
+import com.pbl6.order.dto.PriceAndRouteDto;
+import com.pbl6.order.entity.PaymentMethod;
+import com.pbl6.order.event.OrderCreatedEvent;
+import com.pbl6.order.exception.AppException;
+import com.pbl6.order.repository.OrderRepository;
+import com.pbl6.order.service.OrderService;
+import com.pbl6.order.service.geo.DistanceMatrixCache;
+import com.pbl6.order.service.outbox.OrderOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Import order hàng loạt cho merchant.
+ *
+ * <ol>
+ *   <li>Kiểm tra toàn bộ file trước (bean validation + rule của {@link
+ *       OrderService#validateOrderRequest}); dòng lỗi bị loại, dòng còn lại vẫn được tạo.
+ *   <li>{@code order_ref} đã có order của cùng merchant thì bỏ qua, để import lại file sau khi
+ *       job lỗi giữa chừng không tạo order trùng (unique {@code (creator_id, merchant_ref)}).
+ *   <li>Theo từng chunk {@code bulk-import.chunk-size} order: lấy ma trận khoảng cách của cả chunk
+ *       qua {@link DistanceMatrixCache#matrices} (ô trùng giữa các order chỉ lấy một lần, các ô
+ *       thiếu gom thành ít lần gọi Goong), tính lộ trình + giá trong bộ nhớ.
+ *   <li>Mỗi chunk một transaction: JDBC batch insert địa chỉ / order / package / route và outbox
+ *       {@code OrderCreatedEvent} cho cả chunk; relay dispatch sau commit như order tạo lẻ.
+ * </ol>
+ *
+ * <p>Chỉ nhận order CASH: order ONLINE cần tạo payment link từng order nên vẫn đi qua API tạo lẻ.
+ */
+@Slf4j
+@Service
+public class BulkOrderImportService {
+
+  /** Độ dài cột {@code orders.merchant_ref}. */
+  private static final int MAX_REFERENCE_LENGTH = 100;
+
+  private final OrderService orderService;
+  private final OrderRepository orderRepository;
+  private final DistanceMatrixCache distanceMatrixCache;
+  private final BulkOrderWriter writer;
+  private final OrderOutbox orderOutbox;
+  private final TransactionTemplate transactionTemplate;
+  private final Validator validator;
+  private final BulkImportProperties props;
+  private final MeterRegistry registry;
+  private final Timer importTimer;
+
+  public BulkOrderImportService(
+      OrderService orderService,
+      OrderRepository orderRepository,
+      DistanceMatrixCache distanceMatrixCache,
+      BulkOrderWriter writer,
+      OrderOutbox orderOutbox,
+      TransactionTemplate transactionTemplate,
+      Validator validator,
+      BulkImportProperties props,
+      MeterRegistry registry) {
+    this.orderService = orderService;
+    this.orderRepository = orderRepository;
+    this.distanceMatrixCache = distanceMatrixCache;
+    this.writer = writer;
+    this.orderOutbox = orderOutbox;
+    this.transactionTemplate = transactionTemplate;
+    this.validator = validator;
+    this.props = props;
+    this.registry = registry;
+    this.importTimer =
+        Timer.builder("order.bulk.import")
+            .description("Duration of a whole bulk order import")
+            .register(registry);
+  }
+
+  /** Chặn file quá lớn trước khi nhận job. */
+  public void checkSize(List<BulkOrderRow> rows) {
+    if (rows.isEmpty()) throw AppException.badRequest("Không có order nào để import");
+    if (rows.size() > props.getMaxOrders()) {
+      throw AppException.badRequest(
+          "Tối đa " + props.getMaxOrders() + " order mỗi lần import, nhận " + rows.size());
+    }
+  }
+
+  /** Import đồng bộ giữ request HTTP đến khi xong nên giới hạn nhỏ hơn; file lớn đi qua job. */
+  public void checkSyncSize(List<BulkOrderRow> rows) {
+    checkSize(rows);
+    if (rows.size() > props.getSyncMaxOrders()) {
+      throw AppException.badRequest(
+          "Import đồng bộ tối đa "
+              + props.getSyncMaxOrders()
+              + " order, nhận "
+              + rows.size()
+              + "; dùng POST /bulk/jobs cho file lớn hơn");
+    }
+  }
+
+  /**
+   * Import {@code rows} cho {@code creatorId}; {@code progress} được gọi sau mỗi chunk (không kèm
+   * kết quả từng dòng). Kết quả trả về có đủ {@code results} theo thứ tự {@code rows}; lỗi bất ngờ
+   * giữa chừng cho status {@code FAILED}, các chunk đã commit vẫn giữ kết quả, dòng chưa xử lý
+   * được đánh lỗi.
+   */
+  public BulkImportResponse importOrders(
+      List<BulkOrderRow> rows,
+      UUID creatorId,
+      String jobId,
+      Consumer<BulkImportResponse> progress) {
+    checkSize(rows);
+    Timer.Sample sample = Timer.start(registry);
+    Progress p = new Progress(jobId, rows.size());
+
+    try {
+      // 1) kiểm tra trước toàn bộ
+      List<Integer> accepted = new ArrayList<>(rows.size());
+      for (int i = 0; i < rows.size(); i++) {
+        String error = validate(rows.get(i));
+        if (error != null) {
+          p.reject(i, rows.get(i), error);
+        } else {
+          accepted.add(i);
+        }
+      }
+      progress.accept(p.snapshot("RUNNING", false));
+
+      // 2) tính giá + ghi theo chunk
+      int chunkSize = Math.max(1, props.getChunkSize());
+      for (int from = 0; from < accepted.size(); from += chunkSize) {
+        List<Integer> chunk = accepted.subList(from, Math.min(accepted.size(), from + chunkSize));
+        importChunk(rows, chunk, creatorId, p);
+        progress.accept(p.snapshot("RUNNING", false));
+      }
+    } catch (Exception ex) {
+      log.error("Bulk import {} for {} aborted", jobId, creatorId, ex);
+      p.abort(rows, "Import bị dừng do lỗi hệ thống, dòng này chưa được tạo");
+      return p.snapshot("FAILED", true);
+    } finally {
+      sample.stop(importTimer);
+    }
+    log.info(
+        "Bulk import {} for {}: {} orders, {} created, {} failed",
+        jobId,
+        creatorId,
+        rows.size(),
+        p.created,
+        p.failed);
+    return p.snapshot("DONE", true);
+  }
+
+  private String validate(BulkOrderRow row) {
+    if (row.error() != null) return row.error();
+    if (row.reference() != null && row.reference().length() > MAX_REFERENCE_LENGTH) {
+      return "order_ref dài tối đa " + MAX_REFERENCE_LENGTH + " ký tự";
+    }
+    CreateOrderRequest req = row.request();
+    if (req == null) return "Order rỗng";
+    Set<ConstraintViolation<CreateOrderRequest>> violations = validator.validate(req);
+    if (!violations.isEmpty()) {
+      return violations.stream()
+          .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+          .sorted()
+          .collect(Collectors.joining("; "));
+    }
+    if (req.paymentMethod() == PaymentMethod.ONLINE) {
+      return "Import hàng loạt chỉ hỗ trợ thanh toán CASH";
+    }
+    try {
+      orderService.validateOrderRequest(req);
+    } catch (AppException ex) {
+      return ex.getMessage();
+    }
+    return null;
+  }
+
+  private void importChunk(
+      List<BulkOrderRow> rows, List<Integer> chunk, UUID creatorId, Progress p) {
+    chunk = skipImported(rows, chunk, creatorId, p);
+    if (chunk.isEmpty()) return;
+    List<List<DistanceMatrixCache.Location>> groups = new ArrayList<>(chunk.size());
+    for (int i : chunk) groups.add(orderService.routePoints(rows.get(i).request()));
+    List<DistanceMatrixResponse> matrices;
+    try {
+      matrices = distanceMatrixCache.matrices(groups, OrderService.ROUTE_VEHICLE);
+    } catch (Exception ex) {
+      log.warn("Bulk import distance matrix failed: {}", ex.getMessage());
+      for (int i : chunk) p.fail(i, rows.get(i), "Không tính được khoảng cách");
+      return;
+    }
+
+    List<Integer> priced = new ArrayList<>(chunk.size());
+    List<BulkOrderWriter.PricedOrder> orders = new ArrayList<>(chunk.size());
+    for (int k = 0; k < chunk.size(); k++) {
+      int i = chunk.get(k);
+      CreateOrderRequest req = rows.get(i).request();
+      if (matrices.get(k) == null) {
+        p.fail(i, rows.get(i), "Không tính được khoảng cách");
+        continue;
+      }
+      try {
+        List<PriceAndRouteDto> routes = orderService.priceAndRoute(req, matrices.get(k));
+        orders.add(new BulkOrderWriter.PricedOrder(req, rows.get(i).reference(), routes));
+        priced.add(i);
+      } catch (AppException ex) {
+        p.fail(i, rows.get(i), ex.getMessage());
+      }
+    }
+    if (orders.isEmpty()) return;
+
+    List<BulkOrderWriter.WrittenOrder> written;
+    try {
+      written =
+          transactionTemplate.execute(
+              tx -> {
+                List<BulkOrderWriter.WrittenOrder> w = writer.write(orders, creatorId);
+                List<OrderCreatedEvent> events = new ArrayList<>(w.size());
+                for (int k = 0; k < w.size(); k++) {
+                  CreateOrderRequest req = orders.get(k).request();
+                  events.add(
+                      new OrderCreatedEvent(
+                          w.get(k).orderId(),
+                          req.pickupAddress().longitude(),
+                          req.pickupAddress().latitude()));
+                }
+                orderOutbox.appendAll(events);
+                return w;
+              });
+    } catch (Exception ex) {
+      log.error("Bulk import chunk of {} orders failed to persist", orders.size(), ex);
+      for (int i : priced) p.fail(i, rows.get(i), "Lỗi lưu order, vui lòng thử lại");
+      return;
+    }
+    for (int k = 0; k < priced.size(); k++) {
+      int i = priced.get(k);
+      p.created(i, rows.get(i), written.get(k));
+    }
+  }
+
+  /** Bỏ các dòng có {@code order_ref} đã tạo order (lần import trước của cùng merchant). */
+  private List<Integer> skipImported(
+      List<BulkOrderRow> rows, List<Integer> chunk, UUID creatorId, Progress p) {
+    Set<String> refs = new HashSet<>();
+    for (int i : chunk) {
+      if (rows.get(i).reference() != null) refs.add(rows.get(i).reference());
+    }
+    if (refs.isEmpty()) return chunk;
+    Set<String> existing = new HashSet<>(orderRepository.findExistingMerchantRefs(creatorId, refs));
+    if (existing.isEmpty()) return chunk;
+    List<Integer> remaining = new ArrayList<>(chunk.size());
+    for (int i : chunk) {
+      if (existing.contains(rows.get(i).reference())) {
+        p.fail(i, rows.get(i), "order_ref đã được import trước đó");
+      } else {
+        remaining.add(i);
+      }
+    }
+    return remaining;
+  }
+
+  private void count(String result) {
+    Counter.builder("order.bulk.rows")
+        .description("Bulk import rows by result")
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+
+  /** Trạng thái của một lần import; chỉ thread chạy import ghi. */
+  private final class Progress {
+    final String jobId;
+    final BulkImportRowResult[] results;
+    int processed;
+    int created;
+    int failed;
+
+    Progress(String jobId, int total) {
+      this.jobId = jobId;
+      this.results = new BulkImportRowResult[total];
+    }
+
+    /** Dòng không qua kiểm tra đầu vào. */
+    void reject(int i, BulkOrderRow row, String error) {
+      count("rejected");
+      error(i, row, error);
+    }
+
+    /** Dòng hợp lệ nhưng không tính giá / ghi được. */
+    void fail(int i, BulkOrderRow row, String error) {
+      count("failed");
+      error(i, row, error);
+    }
+
+    void created(int i, BulkOrderRow row, BulkOrderWriter.WrittenOrder w) {
+      count("created");
+      results[i] =
+          new BulkImportRowResult(
+              row.row(), row.reference(), w.orderId(), w.totalAmount().doubleValue(), null);
+      processed++;
+      created++;
+    }
+
+    /** Import dừng giữa chừng: mọi dòng chưa có kết quả được đánh lỗi. */
+    void abort(List<BulkOrderRow> rows, String error) {
+      for (int i = 0; i < results.length; i++) {
+        if (results[i] == null) fail(i, rows.get(i), error);
+      }
+    }
+
+    private void error(int i, BulkOrderRow row, String error) {
+      results[i] = new BulkImportRowResult(row.row(), row.reference(), null, null, error);
+      processed++;
+      failed++;
+    }
+
+    BulkImportResponse snapshot(String status, boolean withResults) {
+      return new BulkImportResponse(
+          jobId,
+          status,
+          results.length,
+          processed,
+          created,
+          failed,
+          withResults ? Arrays.asList(results) : null);
+    }
+  }
+}
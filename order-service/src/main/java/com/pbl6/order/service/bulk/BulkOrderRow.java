@@ -0,0 +1,21 @@
+package com.pbl6.order.service.bulk;
+
+import com.pbl6.order.dto.CreateOrderRequest;
+
+/**
+ * Một order trong file import.
+ *
+ * @param row số thứ tự (1-based) trong mảng JSON, hoặc dòng đầu tiên của order trong CSV
+ * @param reference mã order phía merchant (cột {@code order_ref}), có thể null
+ * @param request null nếu dòng không đọc được, khi đó {@code error} cho biết lý do
+ */
+public record BulkOrderRow(int row, String reference, CreateOrderRequest request, String error) {
+
+  public static BulkOrderRow of(int row, String reference, CreateOrderRequest request) {
+    return new BulkOrderRow(row, reference, request, null);
+  }
+
+  public static BulkOrderRow invalid(int row, String reference, String error) {
+    return new BulkOrderRow(row, reference, null, error);
+  }
+}
@@ -0,0 +1,185 @@
+package com.pbl6.order.service.bulk;
+
+import com.pbl6.order.dto.AddressDto;
+import com.pbl6.order.dto.CreateOrderRequest;
+import com.pbl6.order.dto.PackageDto;
+import com.pbl6.order.dto.PriceAndRouteDto;
+import com.pbl6.order.entity.OrderStatus;
+import com.pbl6.order.entity.PackageCategory;
+import com.pbl6.order.entity.PackageStatus;
+import com.pbl6.order.entity.PayerType;
+import com.pbl6.order.entity.PaymentMethod;
+import com.pbl6.order.entity.PaymentStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ghi order import hàng loạt bằng JDBC batch insert: mỗi bảng một batch cho cả chunk thay vì
+ * {@code save()} từng entity qua cascade. Giá trị ghi giống hệt {@code OrderService.persistOrder}
+ * cho order CASH; id sinh ở phía app để không phải đọc lại sau insert.
+ */
+@Component
+public class BulkOrderWriter {
+
+  private static final String INSERT_ADDRESS =
+      "insert into package_addresses (id, detail, name, phone, latitude, longitude, ward_code,"
+          + " district_code, note, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_ORDER =
+      "insert into orders (id, creator_id, payment_method, payment_status, total_amount,"
+          + " scheduled_at, created_at, updated_at, pickup_address_id, customer_note,"
+          + " estimated_distance_km, estimated_duration_min, status, merchant_ref, is_rated)"
+          + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+  private static final String INSERT_PACKAGE =
+      "insert into packages (id, order_id, dropoff_address_id, weight_kg, package_size,"
+          + " delivery_fee, cod_fee, estimated_distance_km, estimated_duration_min, payer_type,"
+          + " category, status, status_updated_at, description, image_url, created_at)"
+          + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_ROUTE =
+      "insert into order_price_routes (id, order_id, price, latitude, longitude, route_index,"
+          + " package_index, distance_m, estimate_duration_s) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public BulkOrderWriter(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /** Order đã tính giá, chờ ghi; {@code reference} là {@code order_ref}, có thể null. */
+  public record PricedOrder(
+      CreateOrderRequest request, String reference, List<PriceAndRouteDto> routes) {}
+
+  /** Order đã ghi (cùng thứ tự với đầu vào). */
+  public record WrittenOrder(UUID orderId, BigDecimal totalAmount) {}
+
+  /** Ghi cả chunk; phải chạy trong transaction của caller (cùng tx với outbox). */
+  public List<WrittenOrder> write(List<PricedOrder> orders, UUID creatorId) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Bulk orders must be written inside a transaction");
+    }
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> addresses = new ArrayList<>();
+    List<Object[]> orderRows = new ArrayList<>(orders.size());
+    List<Object[]> packages = new ArrayList<>();
+    List<Object[]> routes = new ArrayList<>();
+    List<WrittenOrder> written = new ArrayList<>(orders.size());
+
+    for (PricedOrder priced : orders) {
+      CreateOrderRequest req = priced.request();
+      UUID orderId = UUID.randomUUID();
+      UUID pickupId = UUID.randomUUID();
+      addresses.add(address(pickupId, req.pickupAddress(), now));
+
+      Map<Integer, PriceAndRouteDto> byPackage = new HashMap<>();
+      for (PriceAndRouteDto r : priced.routes()) byPackage.put(r.packageIndex(), r);
+
+      BigDecimal totalAmount = BigDecimal.ZERO;
+      BigDecimal maxDistanceKm = BigDecimal.ZERO;
+      int maxDurationMin = 0;
+      for (int i = 0; i < req.packages().size(); i++) {
+        PackageDto pkg = req.packages().get(i);
+        PriceAndRouteDto r = byPackage.get(i + 1); // packageIndex is 1-based
+        if (r == null) {
+          throw new IllegalStateException("Missing price route for package " + (i + 1));
+        }
+        UUID dropId = UUID.randomUUID();
+        addresses.add(address(dropId, pkg.receiverAddress(), now));
+
+        BigDecimal fee = BigDecimal.valueOf(r.price());
+        BigDecimal distanceKm = BigDecimal.valueOf((double) r.distance() / 1000);
+        int durationMin = (int) Math.round((double) r.estimatedDuration() / 60);
+        packages.add(
+            new Object[] {
+              UUID.randomUUID(),
+              orderId,
+              dropId,
+              pkg.weightKg() != null ? BigDecimal.valueOf(pkg.weightKg()) : BigDecimal.ZERO,
+              pkg.size().name(),
+              fee,
+              Boolean.TRUE.equals(pkg.cod())
+                  ? BigDecimal.valueOf(pkg.codAmount())
+                  : BigDecimal.ZERO,
+              distanceKm,
+              durationMin,
+              (pkg.payerType() != null ? pkg.payerType() : PayerType.SENDER).name(),
+              (pkg.category() != null ? pkg.category() : PackageCategory.DEFAULT).name(),
+              PackageStatus.WAITING_FOR_PICKUP.name(),
+              now,
+              pkg.description(),
+              pkg.imageUrl(),
+              now
+            });
+        totalAmount = totalAmount.add(fee);
+        maxDistanceKm = maxDistanceKm.max(distanceKm);
+        maxDurationMin = Math.max(maxDurationMin, durationMin);
+      }
+
+      for (PriceAndRouteDto r : priced.routes()) {
+        routes.add(
+            new Object[] {
+              UUID.randomUUID(),
+              orderId,
+              BigDecimal.valueOf(r.price()),
+              BigDecimal.valueOf(r.latitude()),
+              BigDecimal.valueOf(r.longitude()),
+              r.routeIndex(),
+              r.packageIndex(),
+              r.distance(),
+              r.estimatedDuration()
+            });
+      }
+
+      orderRows.add(
+          new Object[] {
+            orderId,
+            creatorId,
+            PaymentMethod.CASH.name(),
+            PaymentStatus.PENDING.name(),
+            totalAmount,
+            req.scheduledAt() != null
+                ? Timestamp.valueOf(LocalDateTime.parse(req.scheduledAt()))
+                : null,
+            now,
+            now,
+            pickupId,
+            req.customerNote(),
+            maxDistanceKm,
+            maxDurationMin,
+            OrderStatus.FINDING_DRIVER.name(),
+            priced.reference()
+          });
+      written.add(new WrittenOrder(orderId, totalAmount));
+    }
+
+    // thứ tự theo FK: địa chỉ -> order -> package / route
+    jdbcTemplate.batchUpdate(INSERT_ADDRESS, addresses);
+    jdbcTemplate.batchUpdate(INSERT_ORDER, orderRows);
+    jdbcTemplate.batchUpdate(INSERT_PACKAGE, packages);
+    jdbcTemplate.batchUpdate(INSERT_ROUTE, routes);
+    return written;
+  }
+
+  private static Object[] address(UUID id, AddressDto a, Timestamp now) {
+    return new Object[] {
+      id,
+      a.detail(),
+      a.name(),
+      a.phone(),
+      a.latitude() != null ? BigDecimal.valueOf(a.latitude()) : null,
+      a.longitude() != null ? BigDecimal.valueOf(a.longitude()) : null,
+      a.wardCode(),
+      a.districtCode(),
+      a.note(),
+      now
+    };
+  }
+}
@@ -0,0 +1,122 @@
+package com.pbl6.order.service.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Bài toán gán order -> shipper tổng chi phí nhỏ nhất (Hungarian, dạng potentials O(n^2 m)) trên
+ * ma trận chi phí primitive, phẳng theo hàng: {@code cost[r * cols + c]}.
+ *
+ * <p>Cạnh không tồn tại (shipper không phải candidate của order) dùng {@link #NO_EDGE}; hàng nào
+ * chỉ gán được vào cạnh như vậy sẽ nhận -1. Nếu số hàng lớn hơn số cột, bài toán được giải trên ma
+ * trận chuyển vị.
+ *
+ * <p>Không thread-safe: buffer được tái sử dụng giữa các lần giải, mỗi thread dùng một instance.
+ */
+public final class AssignmentSolver {
+
+  /** Chi phí của cạnh không tồn tại; đủ lớn để không bao giờ được chọn khi còn cạnh thật. */
+  public static final double NO_EDGE = 1e9;
+
+  private double[] u = new double[0];
+  private double[] v = new double[0];
+  private double[] minv = new double[0];
+  private int[] p = new int[0];
+  private int[] way = new int[0];
+  private boolean[] used = new boolean[0];
+  private double[] transposed = new double[0];
+
+  /**
+   * @return mảng dài {@code rows}: cột được gán cho từng hàng, hoặc -1 nếu hàng không được gán
+   */
+  public int[] solve(double[] cost, int rows, int cols) {
+    if (rows == 0 || cols == 0) {
+      int[] none = new int[rows];
+      Arrays.fill(none, -1);
+      return none;
+    }
+    if (rows <= cols) return solveWide(cost, rows, cols);
+
+    // nhiều order hơn shipper: gán shipper -> order rồi đảo lại
+    if (transposed.length < cost.length) transposed = new double[cost.length];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        transposed[c * rows + r] = cost[r * cols + c];
+      }
+    }
+    int[] colToRow = solveWide(transposed, cols, rows);
+    int[] rowToCol = new int[rows];
+    Arrays.fill(rowToCol, -1);
+    for (int c = 0; c < cols; c++) {
+      if (colToRow[c] >= 0) rowToCol[colToRow[c]] = c;
+    }
+    return rowToCol;
+  }
+
+  /** rows <= cols. Chỉ số 1-based như bản gốc; cột 0 là cột ảo. */
+  private int[] solveWide(double[] a, int n, int m) {
+    ensureCapacity(n, m);
+    Arrays.fill(u, 0, n + 1, 0);
+    Arrays.fill(v, 0, m + 1, 0);
+    Arrays.fill(p, 0, m + 1, 0);
+    Arrays.fill(way, 0, m + 1, 0);
+
+    for (int i = 1; i <= n; i++) {
+      p[0] = i;
+      int j0 = 0;
+      Arrays.fill(minv, 0, m + 1, Double.POSITIVE_INFINITY);
+      Arrays.fill(used, 0, m + 1, false);
+      do {
+        used[j0] = true;
+        int i0 = p[j0];
+        int row = (i0 - 1) * m;
+        double delta = Double.POSITIVE_INFINITY;
+        int j1 = 0;
+        for (int j = 1; j <= m; j++) {
+          if (used[j]) continue;
+          double cur = a[row + j - 1] - u[i0] - v[j];
+          if (cur < minv[j]) {
+            minv[j] = cur;
+            way[j] = j0;
+          }
+          if (minv[j] < delta) {
+            delta = minv[j];
+            j1 = j;
+          }
+        }
+        for (int j = 0; j <= m; j++) {
+          if (used[j]) {
+            u[p[j]] += delta;
+            v[j] -= delta;
+          } else {
+            minv[j] -= delta;
+          }
+        }
+        j0 = j1;
+      } while (p[j0] != 0);
+      do {
+        int j1 = way[j0];
+        p[j0] = p[j1];
+        j0 = j1;
+      } while (j0 != 0);
+    }
+
+    int[] rowToCol = new int[n];
+    Arrays.fill(rowToCol, -1);
+    for (int j = 1; j <= m; j++) {
+      int i = p[j];
+      if (i != 0 && a[(i - 1) * m + j - 1] < NO_EDGE) rowToCol[i - 1] = j - 1;
+    }
+    return rowToCol;
+  }
+
+  private void ensureCapacity(int n, int m) {
+    if (u.length < n + 1) u = new double[n + 1];
+    if (v.length < m + 1) {
+      v = new double[m + 1];
+      minv = new double[m + 1];
+      p = new int[m + 1];
+      way = new int[m + 1];
+      used = new boolean[m + 1];
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.pbl6.order.service.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Gom các order vừa tìm xong candidate trong một cửa sổ ngắn rồi gán order -> shipper toàn cục
+ * (tổng khoảng cách lấy hàng nhỏ nhất) thay vì để mỗi order tự push cho cùng vài shipper gần nhất.
+ *
+ * <p>Kết quả chỉ sắp xếp lại candidate: shipper được gán cho order đứng đầu wave đầu tiên, shipper
+ * được gán cho order khác trong cùng batch bị đẩy xuống cuối. Phần còn lại (wave, timeout, retry)
+ * vẫn do {@link DispatchEngine} xử lý như dispatch thường.
+ */
+@Slf4j
+class BatchAssigner {
+
+  private final long windowMs;
+  private final int maxOrders;
+  private final int candidatesPerOrder;
+  private final ScheduledExecutorService scheduler;
+  private final Consumer<Runnable> executor;
+  private final Consumer<DispatchState> resume;
+  private final DispatchMetrics metrics;
+  private final AssignmentSolver solver = new AssignmentSolver();
+  private final ConcurrentLinkedQueue<DispatchState> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  /**
+   * @param executor chạy flush (giải bài toán) ngoài thread scheduler
+   * @param resume gọi cho từng order sau khi candidate đã được sắp xếp lại
+   */
+  BatchAssigner(
+      long windowMs,
+      int maxOrders,
+      int candidatesPerOrder,
+      ScheduledExecutorService scheduler,
+      Consumer<Runnable> executor,
+      Consumer<DispatchState> resume,
+      DispatchMetrics metrics) {
+    this.windowMs = windowMs;
+    this.maxOrders = maxOrders;
+    this.candidatesPerOrder = candidatesPerOrder;
+    this.scheduler = scheduler;
+    this.executor = executor;
+    this.resume = resume;
+    this.metrics = metrics;
+  }
+
+  void add(DispatchState state) {
+    pending.add(state);
+    if (flushScheduled.compareAndSet(false, true)) {
+      scheduler.schedule(() -> executor.accept(this::flush), windowMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void flush() {
+    flushScheduled.set(false);
+    List<DispatchState> batch = new ArrayList<>();
+    DispatchState s;
+    while (batch.size() < maxOrders && (s = pending.poll()) != null) {
+      if (!s.isFinished()) batch.add(s);
+    }
+    // quá maxOrders -> phần còn lại vào batch kế tiếp
+    if (!pending.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+      scheduler.schedule(() -> executor.accept(this::flush), windowMs, TimeUnit.MILLISECONDS);
+    }
+    try {
+      if (batch.size() > 1) assign(batch);
+    } catch (Exception ex) {
+      // không gán được thì các order vẫn dispatch theo thứ tự ranking
+      log.warn("Batch assignment of {} orders failed: {}", batch.size(), ex.getMessage(), ex);
+    }
+    for (DispatchState state : batch) resume.accept(state);
+  }
+
+  private void assign(List<DispatchState> batch) {
+    long startNs = System.nanoTime();
+    Map<String, Integer> driverCol = new HashMap<>();
+    for (DispatchState state : batch) {
+      for (DispatchCandidate c : head(state)) {
+        driverCol.putIfAbsent(c.driverId(), driverCol.size());
+      }
+    }
+    int rows = batch.size();
+    int cols = driverCol.size();
+    double[] cost = new double[rows * cols];
+    Arrays.fill(cost, AssignmentSolver.NO_EDGE);
+    for (int r = 0; r < rows; r++) {
+      for (DispatchCandidate c : head(batch.get(r))) {
+        cost[r * cols + driverCol.get(c.driverId())] = c.distanceKm();
+      }
+    }
+
+    int[] rowToCol = solver.solve(cost, rows, cols);
+
+    String[] colDriver = new String[cols];
+    driverCol.forEach((id, col) -> colDriver[col] = id);
+    Set<String> taken = new HashSet<>();
+    for (int col : rowToCol) {
+      if (col >= 0) taken.add(colDriver[col]);
+    }
+    for (int r = 0; r < rows; r++) {
+      String mine = rowToCol[r] >= 0 ? colDriver[rowToCol[r]] : null;
+      batch.get(r).reorderCandidates(prioritize(batch.get(r).remainingCandidates(), mine, taken));
+    }
+    metrics.batchAssigned(rows, cols, taken.size(), System.nanoTime() - startNs);
+  }
+
+  private List<DispatchCandidate> head(DispatchState state) {
+    List<DispatchCandidate> remaining = state.remainingCandidates();
+    return remaining.subList(0, Math.min(candidatesPerOrder, remaining.size()));
+  }
+
+  /** [shipper được gán] + candidate chưa ai giữ + candidate đã được gán cho order khác. */
+  private static List<DispatchCandidate> prioritize(
+      List<DispatchCandidate> candidates, String mine, Set<String> taken) {
+    List<DispatchCandidate> first = new ArrayList<>(candidates.size());
+    List<DispatchCandidate> free = new ArrayList<>(candidates.size());
+    List<DispatchCandidate> others = new ArrayList<>();
+    for (DispatchCandidate c : candidates) {
+      if (c.driverId().equals(mine)) first.add(c);
+      else if (taken.contains(c.driverId())) others.add(c);
+      else free.add(c);
+    }
+    first.addAll(free);
+    first.addAll(others);
+    return first;
+  }
+}
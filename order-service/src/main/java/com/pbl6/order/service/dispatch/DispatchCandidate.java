@@ -0,0 +1,8 @@
+package com.pbl6.order.service.dispatch;
+
+/**
+ * Một shipper available gần điểm lấy hàng, kèm FCM token để push không cần GET lại và feature
+ * dùng cho {@link DriverRanker}.
+ */
+public record DispatchCandidate(
+    String driverId, String fcmToken, double distanceKm, DriverFeatures features) {}
@@ -0,0 +1,311 @@
+package com.pbl6.order.service.dispatch;
+
+import com.pbl6.order.config.DispatchProperties;
+import com.pbl6.order.service.ShipperPushService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch engine dạng state machine, không giữ thread trong lúc chờ.
+ *
+ * <p>Mỗi order là một {@link DispatchState}. Scheduler chỉ hẹn giờ tick; mỗi tick (vài ms I/O) chạy
+ * trên dispatchExecutor rồi trả thread ngay, tick tiếp theo được hẹn lại sau perBatchTimeoutMs /
+ * retryDelayMs. Khi order được nhận ({@link #onOrderAssigned}) state bị huỷ ngay, không chờ hết
+ * wave.
+ */
+@Slf4j
+@Service
+public class DispatchEngine {
+
+  private static final long REJECTED_RETRY_MS = 200;
+  private static final int MAX_RECENT = 10_000;
+
+  private final ShipperPushService shipperPushService;
+  private final DispatchProperties props;
+  private final DispatchMetrics metrics;
+  private final DriverRanker ranker;
+  private final ExecutorService dispatchExecutor;
+  private final ScheduledExecutorService dispatchScheduler;
+  private final ConcurrentMap<UUID, DispatchState> active = new ConcurrentHashMap<>();
+
+  /** Null khi dispatch.mode != batch. */
+  private final BatchAssigner batchAssigner;
+
+  /** Candidate còn lại của các dispatch vừa assigned, cho reassign (theo order). */
+  private final ConcurrentMap<UUID, RecentCandidates> recent = new ConcurrentHashMap<>();
+
+  public DispatchEngine(
+      ShipperPushService shipperPushService,
+      DispatchProperties props,
+      DispatchMetrics metrics,
+      DriverRanker ranker,
+      MeterRegistry registry,
+      @Qualifier("dispatchExecutor") ExecutorService dispatchExecutor,
+      @Qualifier("dispatchScheduler") ScheduledExecutorService dispatchScheduler) {
+    this.shipperPushService = shipperPushService;
+    this.props = props;
+    this.metrics = metrics;
+    this.ranker = ranker;
+    this.dispatchExecutor = dispatchExecutor;
+    this.dispatchScheduler = dispatchScheduler;
+    this.batchAssigner =
+        "batch".equalsIgnoreCase(props.getMode())
+            ? new BatchAssigner(
+                props.getBatch().getWindowMs(),
+                props.getBatch().getMaxOrders(),
+                props.getBatch().getCandidatesPerOrder(),
+                dispatchScheduler,
+                this::submitBatchFlush,
+                s -> schedule(s, 0),
+                metrics)
+            : null;
+    Gauge.builder("dispatch.active", active, Map::size)
+        .description("Dispatches in flight on this instance")
+        .register(registry);
+  }
+
+  /**
+   * Bắt đầu dispatch cho order. Non-blocking: chỉ đăng ký state và hẹn tick đầu tiên.
+   *
+   * @return false nếu order đã có dispatch đang chạy trên instance này
+   */
+  public boolean start(UUID orderId, double longitude, double latitude, int k) {
+    return start(DispatchRequest.first(orderId, longitude, latitude, k), null);
+  }
+
+  /**
+   * Như {@link #start(UUID, double, double, int)}, kèm callback chạy một lần khi dispatch kết thúc
+   * (assigned hoặc no driver). Callback không được gọi nếu hàm trả về false.
+   *
+   * <p>Với {@link DispatchKind#REASSIGN}, nếu instance này vừa dispatch order ở cùng điểm lấy hàng
+   * trong {@code dispatch.reuse-candidates-ms} thì các candidate chưa push của lần trước được kiểm
+   * tra lại (available / token) ở tick đầu và dùng tiếp thay cho lần tìm; không còn ai thì tìm
+   * như thường.
+   */
+  public boolean start(DispatchRequest request, Runnable onFinish) {
+    UUID orderId = request.orderId();
+    DispatchState state = new DispatchState(request, onFinish);
+    if (active.putIfAbsent(orderId, state) != null) {
+      log.debug("Dispatch already running for order {}", orderId);
+      return false;
+    }
+    if (request.kind() == DispatchKind.REASSIGN) {
+      List<DispatchCandidate> reused = takeRecentCandidates(request);
+      if (!reused.isEmpty()) state.setReusable(reused);
+    }
+    schedule(state, 0);
+    return true;
+  }
+
+  /** Signal "order đã có shipper": dừng dispatch ngay lập tức. */
+  public void onOrderAssigned(UUID orderId) {
+    DispatchState state = active.remove(orderId);
+    if (state != null) {
+      finishState(state, DispatchPhase.ASSIGNED);
+      log.debug("Dispatch for order {} stopped: assigned after {} waves", orderId, state.getWaves());
+    }
+  }
+
+  /**
+   * Signal "order bị huỷ / kết thúc": dừng dispatch ngay (huỷ tick đang hẹn, ack job). Không làm gì
+   * nếu order không dispatch trên instance này.
+   */
+  public void cancel(UUID orderId) {
+    recent.remove(orderId);
+    DispatchState state = active.remove(orderId);
+    if (state != null) {
+      finishState(state, DispatchPhase.CANCELLED);
+      log.info("Dispatch for order {} cancelled after {} waves", orderId, state.getWaves());
+    }
+  }
+
+  public int activeCount() {
+    return active.size();
+  }
+
+  /** Snapshot các dispatch đang chạy trên instance này (cho admin endpoint). */
+  public List<DispatchState> activeDispatches() {
+    return List.copyOf(active.values());
+  }
+
+  private void schedule(DispatchState state, long delayMs) {
+    if (state.isFinished()) return;
+    ScheduledFuture<?> f =
+        dispatchScheduler.schedule(() -> submitTick(state), delayMs, TimeUnit.MILLISECONDS);
+    state.setNextTick(f);
+    // signal có thể tới giữa isFinished() và setNextTick()
+    if (state.isFinished()) f.cancel(false);
+  }
+
+  private void submitTick(DispatchState state) {
+    try {
+      dispatchExecutor.execute(() -> tick(state));
+    } catch (RejectedExecutionException ex) {
+      log.warn("Dispatch executor rejected tick for order {}, retrying", state.getOrderId());
+      schedule(state, REJECTED_RETRY_MS);
+    }
+  }
+
+  private void submitBatchFlush(Runnable flush) {
+    try {
+      dispatchExecutor.execute(flush);
+    } catch (RejectedExecutionException ex) {
+      log.warn("Dispatch executor rejected batch flush, retrying");
+      dispatchScheduler.schedule(
+          () -> submitBatchFlush(flush), REJECTED_RETRY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void tick(DispatchState state) {
+    if (state.isFinished()) return;
+    UUID orderId = state.getOrderId();
+    try {
+      state.countRedisCall();
+      DispatchPhase closed = shipperPushService.closedPhase(orderId);
+      if (closed != null) {
+        finish(state, closed);
+        return;
+      }
+
+      if (state.hasMoreCandidates()) {
+        sendWave(state);
+        return;
+      }
+
+      if (state.getPhase() == DispatchPhase.OFFERING) {
+        // wave cuối đã hết timeout mà chưa ai nhận -> chờ rồi tìm lại từ đầu
+        state.setPhase(DispatchPhase.WAITING_RETRY);
+        schedule(state, props.getRetryDelayMs());
+        return;
+      }
+
+      if (state.getAttempt() >= props.getMaxTries()) {
+        log.info("No drivers accepted the order {} after {} tries", orderId, state.getAttempt());
+        finish(state, DispatchPhase.NO_DRIVER);
+        return;
+      }
+
+      state.setPhase(DispatchPhase.SEARCHING);
+      List<DispatchCandidate> candidates = recheckReused(state);
+      if (candidates.isEmpty()) {
+        state.countRedisCall();
+        candidates =
+            shipperPushService.findAvailableCandidates(
+                orderId, state.getLongitude(), state.getLatitude(), props.getCandidateLimit());
+      }
+      state.resetCandidates(ranker.rank(candidates));
+      if (candidates.isEmpty()) {
+        log.debug("No available drivers found for order {}", orderId);
+        state.setPhase(DispatchPhase.WAITING_RETRY);
+        schedule(state, props.getRetryDelayMs());
+        return;
+      }
+      if (batchAssigner != null && state.getWaves() == 0) {
+        // wave đầu chờ gán toàn cục cùng các order khác trong cửa sổ batch
+        state.setPhase(DispatchPhase.BATCHING);
+        batchAssigner.add(state);
+        return;
+      }
+      sendWave(state);
+    } catch (Exception ex) {
+      // lỗi tạm thời (redis, firebase...) -> thử lại ở tick sau; tick lỗi cũng tính là một lần thử
+      // để order lỗi liên tục không bị thử mãi
+      state.countFailedAttempt();
+      if (state.getAttempt() >= props.getMaxTries()) {
+        log.warn(
+            "Dispatch for order {} stopped after {} attempts, last tick failed: {}",
+            orderId,
+            state.getAttempt(),
+            ex.getMessage(),
+            ex);
+        finish(state, DispatchPhase.NO_DRIVER);
+        return;
+      }
+      log.warn("Dispatch tick failed for order {}: {}", orderId, ex.getMessage(), ex);
+      schedule(state, props.getPerBatchTimeoutMs());
+    }
+  }
+
+  /** Candidate giữ lại từ lần dispatch trước, chỉ còn những shipper vẫn nhận offer được. */
+  private List<DispatchCandidate> recheckReused(DispatchState state) {
+    List<DispatchCandidate> reused = state.takeReusable();
+    if (reused.isEmpty()) return reused;
+    state.countRedisCall();
+    List<DispatchCandidate> alive =
+        shipperPushService.recheckCandidates(state.getOrderId(), reused);
+    log.debug(
+        "Reusing {} of {} candidates for reassigned order {}",
+        alive.size(),
+        reused.size(),
+        state.getOrderId());
+    return alive;
+  }
+
+  private void sendWave(DispatchState state) {
+    state.countRedisCall(); // ghi offer
+    shipperPushService.pushOffers(state.nextWave(), state.getOrderId().toString());
+    if (state.getWaves() == 1) metrics.firstPush(state);
+    state.setPhase(DispatchPhase.OFFERING);
+    schedule(state, props.getPerBatchTimeoutMs());
+  }
+
+  private void finish(DispatchState state, DispatchPhase terminal) {
+    active.remove(state.getOrderId(), state);
+    finishState(state, terminal);
+  }
+
+  private void finishState(DispatchState state, DispatchPhase terminal) {
+    if (!state.finish(terminal)) return;
+    metrics.finished(state, terminal);
+    if (terminal == DispatchPhase.ASSIGNED && state.hasMoreCandidates()) {
+      rememberCandidates(state);
+    }
+  }
+
+  /** Giữ lại candidate chưa push để lần reassign sớm sau đó không phải tìm lại. */
+  private void rememberCandidates(DispatchState state) {
+    long now = System.currentTimeMillis();
+    if (recent.size() >= MAX_RECENT) {
+      recent.values().removeIf(r -> now - r.atMs() > props.getReuseCandidatesMs());
+      if (recent.size() >= MAX_RECENT) return;
+    }
+    recent.put(
+        state.getOrderId(),
+        new RecentCandidates(
+            state.getLongitude(),
+            state.getLatitude(),
+            List.copyOf(state.remainingCandidates()),
+            now));
+  }
+
+  private List<DispatchCandidate> takeRecentCandidates(DispatchRequest request) {
+    RecentCandidates r = recent.remove(request.orderId());
+    if (r == null
+        || System.currentTimeMillis() - r.atMs() > props.getReuseCandidatesMs()
+        || r.longitude() != request.longitude()
+        || r.latitude() != request.latitude()) {
+      return List.of();
+    }
+    if (request.previousShipper() == null) return r.candidates();
+    // shipper vừa trả order có thể vẫn nằm trong danh sách cũ (chưa tới lượt mời)
+    String previous = request.previousShipper().toString();
+    return r.candidates().stream().filter(c -> !previous.equals(c.driverId())).toList();
+  }
+
+  private record RecentCandidates(
+      double longitude, double latitude, List<DispatchCandidate> candidates, long atMs) {}
+}
@@ -0,0 +1,337 @@
+package com.pbl6.order.service.dispatch;
+
+import com.pbl6.order.config.DispatchProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DISPATCH_JOBS_STREAM;
+import static com.pbl6.order.constant.RedisKeyConstants.DISPATCH_JOB_DEDUP_KEY;
+
+/**
+ * Hàng đợi job dispatch bền vững trên Redis Stream {@code dispatch:jobs}.
+ *
+ * <ul>
+ *   <li>Producer: {@link #enqueue} XADD job khi order được tạo, chống trùng theo order; job
+ *       REASSIGN thay job còn sống của order thay vì bị bỏ.
+ *   <li>Consumer: mỗi replica đọc qua consumer group chung nên một job chỉ được một replica chạy;
+ *       tăng throughput bằng cách thêm replica. Job chỉ được ack khi dispatch kết thúc.
+ *   <li>Heartbeat: replica định kỳ XCLAIM JUSTID các job đang chạy của mình để giữ idle time thấp
+ *       (JUSTID không tăng delivery count, dispatch chạy lâu không chạm {@code max-deliveries}).
+ *   <li>Reclaim: job pending idle quá {@code reclaim-idle-ms} (replica đã chết / restart) được
+ *       replica khác nhận lại và dispatch tiếp.
+ * </ul>
+ */
+@Slf4j
+@Service
+public class DispatchJobQueue {
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final DispatchEngine dispatchEngine;
+  private final DispatchMetrics dispatchMetrics;
+  private final DispatchProperties.Jobs props;
+  private final RedisScript<String> enqueueDispatchJobScript;
+  private final RedisScript<Long> ackDispatchJobScript;
+  private final String consumerName;
+
+  /** stream id -> orderId của các job đang chạy trên replica này. */
+  private final ConcurrentMap<String, UUID> inFlight = new ConcurrentHashMap<>();
+
+  private volatile boolean running;
+  private Thread poller;
+
+  public DispatchJobQueue(
+      RedisTemplate<String, String> redisTemplate,
+      DispatchEngine dispatchEngine,
+      DispatchMetrics dispatchMetrics,
+      DispatchProperties dispatchProperties,
+      @Qualifier("enqueueDispatchJobScript") RedisScript<String> enqueueDispatchJobScript,
+      @Qualifier("ackDispatchJobScript") RedisScript<Long> ackDispatchJobScript) {
+    this.redisTemplate = redisTemplate;
+    this.dispatchEngine = dispatchEngine;
+    this.dispatchMetrics = dispatchMetrics;
+    this.props = dispatchProperties.getJobs();
+    this.enqueueDispatchJobScript = enqueueDispatchJobScript;
+    this.ackDispatchJobScript = ackDispatchJobScript;
+    String name = props.getConsumerName();
+    this.consumerName =
+        name == null || name.isBlank() ? "order-" + UUID.randomUUID() : name.trim();
+  }
+
+  /**
+   * Ghi job dispatch cho order vào stream. Job {@link DispatchKind#REASSIGN} luôn được ghi: key
+   * dedup có thể còn của job trước chưa ack (ack lỗi, replica chết), bỏ job thì order không được
+   * dispatch lại.
+   *
+   * @return false nếu order đã có job đang sống (trùng)
+   */
+  public boolean enqueue(DispatchRequest request) {
+    UUID orderId = request.orderId();
+    boolean supersede = request.kind() == DispatchKind.REASSIGN;
+    String result =
+        redisTemplate.execute(
+            enqueueDispatchJobScript,
+            List.of(String.format(DISPATCH_JOB_DEDUP_KEY, orderId), DISPATCH_JOBS_STREAM),
+            String.valueOf(props.getDedupTtlSeconds()),
+            String.valueOf(props.getMaxLen()),
+            orderId.toString(),
+            String.valueOf(request.longitude()),
+            String.valueOf(request.latitude()),
+            String.valueOf(request.batchK()),
+            String.valueOf(request.requestedAtMs()),
+            request.kind().name(),
+            request.previousShipper() != null ? request.previousShipper().toString() : "",
+            supersede ? "1" : "0");
+    if (result == null) {
+      dispatchMetrics.jobEnqueued(request.kind(), "duplicate");
+      log.debug("Dispatch job for order {} already queued", orderId);
+      return false;
+    }
+    int comma = result.indexOf(',');
+    if (comma >= 0) {
+      dispatchMetrics.jobEnqueued(request.kind(), "superseded");
+      log.info(
+          "Queued {} dispatch job {} for order {}, superseding job {}",
+          request.kind(),
+          result.substring(0, comma),
+          orderId,
+          result.substring(comma + 1));
+      return true;
+    }
+    dispatchMetrics.jobEnqueued(request.kind(), "queued");
+    log.debug("Queued dispatch job {} for order {}", result, orderId);
+    return true;
+  }
+
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startConsumer() {
+    createGroup();
+    running = true;
+    poller = Thread.ofPlatform().name("dispatch-jobs-poller").daemon().start(this::pollLoop);
+    log.info("Dispatch job consumer {} started (group {})", consumerName, props.getGroup());
+  }
+
+  @PreDestroy
+  public void stopConsumer() {
+    running = false;
+    if (poller != null) poller.interrupt();
+    // job đang chạy không ack -> replica khác reclaim sau reclaim-idle-ms
+  }
+
+  private void createGroup() {
+    try {
+      streamOps().createGroup(DISPATCH_JOBS_STREAM, ReadOffset.from("0"), props.getGroup());
+    } catch (Exception ex) {
+      // BUSYGROUP: group đã tồn tại
+      log.debug("Dispatch consumer group not created: {}", ex.getMessage());
+    }
+  }
+
+  private void pollLoop() {
+    while (running) {
+      try {
+        int capacity = props.getMaxInFlight() - inFlight.size();
+        if (capacity <= 0) {
+          Thread.sleep(Math.max(100, props.getBlockMs() / 4));
+          continue;
+        }
+        List<MapRecord<String, Object, Object>> records =
+            streamOps()
+                .read(
+                    Consumer.from(props.getGroup(), consumerName),
+                    StreamReadOptions.empty()
+                        .count(Math.min(capacity, props.getReadCount()))
+                        .block(Duration.ofMillis(props.getBlockMs())),
+                    StreamOffset.create(DISPATCH_JOBS_STREAM, ReadOffset.lastConsumed()));
+        if (records != null) records.forEach(this::startJob);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception ex) {
+        if (!running) return;
+        log.warn("Dispatch job poll failed: {}", ex.getMessage());
+        if (ex.getMessage() != null && ex.getMessage().contains("NOGROUP")) createGroup();
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private void startJob(MapRecord<String, Object, Object> record) {
+    String recordId = record.getId().getValue();
+    Map<Object, Object> v = record.getValue();
+    DispatchRequest request;
+    try {
+      Object ts = v.get("ts");
+      Object kind = v.get("kind");
+      Object prev = v.get("prev");
+      request =
+          new DispatchRequest(
+              UUID.fromString(String.valueOf(v.get("orderId"))),
+              Double.parseDouble(String.valueOf(v.get("lon"))),
+              Double.parseDouble(String.valueOf(v.get("lat"))),
+              Integer.parseInt(String.valueOf(v.get("k"))),
+              ts != null ? Long.parseLong(String.valueOf(ts)) : System.currentTimeMillis(),
+              kind != null ? DispatchKind.valueOf(String.valueOf(kind)) : DispatchKind.FIRST,
+              prev != null && !String.valueOf(prev).isEmpty()
+                  ? UUID.fromString(String.valueOf(prev))
+                  : null);
+    } catch (RuntimeException ex) {
+      log.warn("Dropping malformed dispatch job {}: {}", recordId, v);
+      ack(recordId, v.get("orderId"));
+      return;
+    }
+
+    UUID orderId = request.orderId();
+    inFlight.put(recordId, orderId);
+    boolean started = dispatchEngine.start(request, () -> complete(recordId, orderId));
+    if (!started) {
+      // order đã đang dispatch trên replica này (job trùng) -> bỏ job này
+      complete(recordId, orderId);
+    }
+  }
+
+  private void complete(String recordId, UUID orderId) {
+    inFlight.remove(recordId);
+    ack(recordId, orderId);
+  }
+
+  private void ack(String recordId, Object orderId) {
+    try {
+      redisTemplate.execute(
+          ackDispatchJobScript,
+          List.of(DISPATCH_JOBS_STREAM, String.format(DISPATCH_JOB_DEDUP_KEY, orderId)),
+          props.getGroup(),
+          recordId);
+    } catch (Exception ex) {
+      // không ack được -> job sẽ được reclaim và engine tự dừng vì order đã có assignee
+      log.warn(
+          "Failed to ack dispatch job {} for order {}: {}", recordId, orderId, ex.getMessage());
+    }
+  }
+
+  /**
+   * XCLAIM JUSTID các job đang chạy cho chính mình để reset idle time, tránh bị replica khác lấy.
+   * XCLAIM thường tăng delivery count mỗi lần gọi, job chạy qua vài heartbeat sẽ bị {@link
+   * #reclaimStale()} coi là hết lượt và bỏ nếu replica chết.
+   */
+  @Scheduled(fixedDelayString = "${dispatch.jobs.heartbeat-ms:20000}")
+  public void heartbeat() {
+    if (!running || inFlight.isEmpty()) return;
+    RecordId[] ids = inFlight.keySet().stream().map(RecordId::of).toArray(RecordId[]::new);
+    byte[] stream = DISPATCH_JOBS_STREAM.getBytes(StandardCharsets.UTF_8);
+    try {
+      redisTemplate.execute(
+          (RedisConnection connection) ->
+              connection
+                  .streamCommands()
+                  .xClaimJustId(
+                      stream,
+                      props.getGroup(),
+                      consumerName,
+                      XClaimOptions.minIdle(Duration.ZERO).ids(ids)));
+    } catch (Exception ex) {
+      log.warn("Dispatch job heartbeat failed: {}", ex.getMessage());
+    }
+  }
+
+  /** Nhận lại các job pending đã idle quá lâu (consumer chết hoặc replica này vừa restart). */
+  @Scheduled(fixedDelayString = "${dispatch.jobs.reclaim-interval-ms:15000}")
+  public void reclaimStale() {
+    if (!running) return;
+    int capacity = props.getMaxInFlight() - inFlight.size();
+    if (capacity <= 0) return;
+    try {
+      PendingMessages pending =
+          streamOps()
+              .pending(
+                  DISPATCH_JOBS_STREAM,
+                  props.getGroup(),
+                  Range.unbounded(),
+                  Math.min(capacity, props.getReadCount()));
+      List<RecordId> stale = new ArrayList<>();
+      for (PendingMessage p : pending) {
+        if (p.getElapsedTimeSinceLastDelivery().toMillis() < props.getReclaimIdleMs()) continue;
+        if (inFlight.containsKey(p.getIdAsString())) continue;
+        if (p.getTotalDeliveryCount() >= props.getMaxDeliveries()) {
+          dropExhausted(p);
+          continue;
+        }
+        stale.add(p.getId());
+      }
+      if (stale.isEmpty()) return;
+
+      // minIdle = reclaim-idle-ms: replica khác vừa claim trước thì XCLAIM không trả về job đó
+      List<MapRecord<String, Object, Object>> claimed =
+          streamOps()
+              .claim(
+                  DISPATCH_JOBS_STREAM,
+                  props.getGroup(),
+                  consumerName,
+                  Duration.ofMillis(props.getReclaimIdleMs()),
+                  stale.toArray(RecordId[]::new));
+      log.info("Reclaimed {} stale dispatch jobs", claimed.size());
+      claimed.forEach(this::startJob);
+    } catch (Exception ex) {
+      log.warn("Dispatch job reclaim failed: {}", ex.getMessage());
+    }
+  }
+
+  /**
+   * Bỏ job đã hết lượt giao. Key dedup gắn theo orderId nên phải đọc lại orderId từ record, nếu
+   * không order bị chặn enqueue (kể cả REASSIGN) tới khi key hết TTL.
+   */
+  private void dropExhausted(PendingMessage p) {
+    String recordId = p.getIdAsString();
+    List<MapRecord<String, Object, Object>> records =
+        streamOps().range(DISPATCH_JOBS_STREAM, Range.closed(recordId, recordId));
+    Object orderId =
+        records == null || records.isEmpty() ? null : records.get(0).getValue().get("orderId");
+    log.warn(
+        "Dropping dispatch job {} for order {} after {} deliveries",
+        recordId,
+        orderId,
+        p.getTotalDeliveryCount());
+    // record đã bị trim (MAXLEN) thì không biết order: key dedup tự hết hạn theo dedup-ttl-seconds
+    ack(recordId, orderId);
+  }
+
+  private StreamOperations<String, Object, Object> streamOps() {
+    return redisTemplate.opsForStream();
+  }
+}
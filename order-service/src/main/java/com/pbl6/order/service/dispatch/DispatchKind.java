@@ -0,0 +1,7 @@
+package com.pbl6.order.service.dispatch;
+
+/** Lý do dispatch: order mới hoặc tìm lại shipper sau REASSIGNING_DRIVER. */
+public enum DispatchKind {
+  FIRST,
+  REASSIGN
+}
@@ -0,0 +1,145 @@
+package com.pbl6.order.service.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics của dispatch (Micrometer, xuất qua /actuator/prometheus).
+ *
+ * <ul>
+ *   <li>{@code dispatch.first.push}: từ lúc yêu cầu (OrderCreatedEvent / reassign) tới wave đầu
+ *       tiên được push, tag kind=first / reassign
+ *   <li>{@code dispatch.assignment}: từ lúc yêu cầu tới khi có shipper nhận, tag kind=first /
+ *       reassign
+ *   <li>{@code dispatch.waves}, {@code dispatch.redis.calls}: số wave / lệnh Redis mỗi order
+ *   <li>{@code dispatch.ring.candidates}: số candidate tìm được, tag theo vòng bán kính
+ *   <li>{@code dispatch.outcome}: số order kết thúc theo outcome (assigned / no_driver)
+ *   <li>{@code dispatch.offers.sent} / {@code dispatch.offers.accepted}: acceptance rate của offer
+ *   <li>{@code dispatch.batch.*}: kích thước / thời gian giải của batch mode
+ *   <li>{@code dispatch.jobs.enqueued}: job ghi vào stream, tag kind và result=queued / superseded
+ *       / duplicate
+ * </ul>
+ */
+@Component
+public class DispatchMetrics {
+
+  private final MeterRegistry registry;
+  private final Map<DispatchKind, Timer> firstPush = new ConcurrentHashMap<>();
+  private final Map<DispatchKind, Timer> assignment = new ConcurrentHashMap<>();
+  private final Counter offersSent;
+  private final Counter offersAccepted;
+  private final Map<String, DistributionSummary> ringCandidates = new ConcurrentHashMap<>();
+
+  public DispatchMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.offersSent =
+        Counter.builder("dispatch.offers.sent")
+            .description("Order offers pushed to drivers")
+            .register(registry);
+    this.offersAccepted =
+        Counter.builder("dispatch.offers.accepted")
+            .description("Offers that ended with the offered driver claiming the order")
+            .register(registry);
+  }
+
+  void firstPush(DispatchState state) {
+    firstPush
+        .computeIfAbsent(
+            state.getKind(),
+            k ->
+                Timer.builder("dispatch.first.push")
+                    .description("Time from dispatch request to first push sent")
+                    .tag("kind", k.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry))
+        .record(Duration.ofMillis(System.currentTimeMillis() - state.getRequestedAtMs()));
+  }
+
+  void finished(DispatchState state, DispatchPhase outcome) {
+    String tag = outcome.name().toLowerCase();
+    if (outcome == DispatchPhase.ASSIGNED) {
+      assignmentTimer(state.getKind())
+          .record(Duration.ofMillis(System.currentTimeMillis() - state.getRequestedAtMs()));
+    }
+    Counter.builder("dispatch.outcome").tag("outcome", tag).register(registry).increment();
+    DistributionSummary.builder("dispatch.waves")
+        .description("Waves pushed per dispatch")
+        .tag("outcome", tag)
+        .register(registry)
+        .record(state.getWaves());
+    DistributionSummary.builder("dispatch.redis.calls")
+        .description("Redis round trips per dispatch")
+        .tag("outcome", tag)
+        .register(registry)
+        .record(state.getRedisCalls());
+  }
+
+  private Timer assignmentTimer(DispatchKind kind) {
+    return assignment.computeIfAbsent(
+        kind,
+        k ->
+            Timer.builder("dispatch.assignment")
+                .description("Time from dispatch request to driver assignment")
+                .tag("kind", k.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(registry));
+  }
+
+  void jobEnqueued(DispatchKind kind, String result) {
+    Counter.builder("dispatch.jobs.enqueued")
+        .description("Dispatch jobs offered to the job stream, by kind and result")
+        .tag("kind", kind.name().toLowerCase())
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+
+  /** Số offer đã gửi; cùng với {@link #offerAccepted()} cho ra acceptance rate. */
+  public void offersSent(int count) {
+    offersSent.increment(count);
+  }
+
+  public void offerAccepted() {
+    offersAccepted.increment();
+  }
+
+  /** Một lần gán toàn cục của batch mode: kích thước bài toán, số cặp gán được, thời gian giải. */
+  void batchAssigned(int orders, int drivers, int matched, long solveNanos) {
+    DistributionSummary.builder("dispatch.batch.orders")
+        .description("Orders per batch assignment")
+        .register(registry)
+        .record(orders);
+    DistributionSummary.builder("dispatch.batch.drivers")
+        .description("Distinct candidate drivers per batch assignment")
+        .register(registry)
+        .record(drivers);
+    DistributionSummary.builder("dispatch.batch.matched")
+        .description("Orders given a dedicated driver per batch assignment")
+        .register(registry)
+        .record(matched);
+    Timer.builder("dispatch.batch.solve")
+        .description("Time to build and solve one batch assignment")
+        .register(registry)
+        .record(Duration.ofNanos(solveNanos));
+  }
+
+  /** Số candidate available tìm được cho một lần search, theo vòng bán kính đã dừng lại. */
+  public void ringCandidates(String ringKm, int found) {
+    ringCandidates
+        .computeIfAbsent(
+            ringKm,
+            r ->
+                DistributionSummary.builder("dispatch.ring.candidates")
+                    .description("Available candidates found per search")
+                    .tag("ring", r)
+                    .register(registry))
+        .record(found);
+  }
+}
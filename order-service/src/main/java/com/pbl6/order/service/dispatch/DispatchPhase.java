@@ -0,0 +1,11 @@
+package com.pbl6.order.service.dispatch;
+
+public enum DispatchPhase {
+  SEARCHING, // đang tìm candidate
+  BATCHING, // đã có candidate, chờ batch gán toàn cục (dispatch.mode = batch)
+  OFFERING, // đã push một wave, đang chờ shipper nhận
+  WAITING_RETRY, // hết candidate, chờ tìm lại
+  ASSIGNED, // đã có shipper nhận (kết thúc)
+  NO_DRIVER, // hết số lần thử mà không ai nhận (kết thúc)
+  CANCELLED // order bị huỷ / kết thúc trong lúc đang dispatch (kết thúc)
+}
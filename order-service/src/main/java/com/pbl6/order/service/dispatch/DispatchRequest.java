@@ -0,0 +1,27 @@
+package com.pbl6.order.service.dispatch;
+
+import java.util.UUID;
+
+/**
+ * Yêu cầu dispatch cho một order.
+ *
+ * @param longitude kinh độ điểm lấy hàng hiện tại
+ * @param latitude vĩ độ điểm lấy hàng hiện tại
+ * @param batchK số shipper mỗi wave
+ * @param requestedAtMs thời điểm phát sinh yêu cầu (order tạo / reassign), dùng cho metrics
+ * @param previousShipper shipper vừa trả order (REASSIGN), không được mời lại; null nếu không có
+ */
+public record DispatchRequest(
+    UUID orderId,
+    double longitude,
+    double latitude,
+    int batchK,
+    long requestedAtMs,
+    DispatchKind kind,
+    UUID previousShipper) {
+
+  public static DispatchRequest first(UUID orderId, double longitude, double latitude, int k) {
+    return new DispatchRequest(
+        orderId, longitude, latitude, k, System.currentTimeMillis(), DispatchKind.FIRST, null);
+  }
+}
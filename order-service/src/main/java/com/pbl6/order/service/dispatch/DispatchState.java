@@ -0,0 +1,131 @@
+package com.pbl6.order.service.dispatch;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trạng thái dispatch của một order. Chỉ được engine đọc/ghi trong tick của order đó (các tick của
+ * cùng một order không bao giờ chạy chồng nhau), nên không cần lock; các field được đọc từ thread
+ * khác (assignment signal) đều là volatile.
+ */
+@Getter
+public class DispatchState {
+  private final UUID orderId;
+  private final double longitude;
+  private final double latitude;
+  private final int batchK;
+  private final long startedAtMs = System.currentTimeMillis();
+
+  /** Thời điểm phát sinh yêu cầu (order tạo / reassign), dùng để đo latency end-to-end. */
+  private final long requestedAtMs;
+
+  private final DispatchKind kind;
+
+  @Setter private volatile DispatchPhase phase = DispatchPhase.SEARCHING;
+  private List<DispatchCandidate> candidates = List.of();
+  private int cursor;
+  private int attempt;
+  private int waves;
+  private int redisCalls;
+
+  /** Candidate chưa push của lần dispatch trước (reassign), chờ kiểm tra lại ở tick đầu. */
+  private List<DispatchCandidate> reusable = List.of();
+
+  @Setter private volatile ScheduledFuture<?> nextTick;
+
+  /** Callback khi dispatch kết thúc (vd. ack job trên stream), chạy đúng một lần. */
+  private final Runnable onFinish;
+
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  public DispatchState(DispatchRequest request, Runnable onFinish) {
+    this.orderId = request.orderId();
+    this.longitude = request.longitude();
+    this.latitude = request.latitude();
+    this.batchK = request.batchK();
+    this.requestedAtMs = request.requestedAtMs();
+    this.kind = request.kind();
+    this.onFinish = onFinish;
+  }
+
+  void countRedisCall() {
+    redisCalls++;
+  }
+
+  /** Tick lỗi: tính như một lần tìm để giới hạn {@code max-tries} vẫn áp dụng. */
+  void countFailedAttempt() {
+    attempt++;
+  }
+
+  /** Số candidate của lần tìm hiện tại / số đã được push. */
+  public int getCandidateCount() {
+    return candidates.size();
+  }
+
+  /** Bắt đầu một lần tìm mới với danh sách candidate (gần -> xa). */
+  void resetCandidates(List<DispatchCandidate> candidates) {
+    this.candidates = candidates;
+    this.cursor = 0;
+    this.attempt++;
+  }
+
+  void setReusable(List<DispatchCandidate> candidates) {
+    this.reusable = candidates;
+  }
+
+  /** Lấy (một lần) danh sách candidate giữ lại từ lần dispatch trước. */
+  List<DispatchCandidate> takeReusable() {
+    List<DispatchCandidate> r = reusable;
+    reusable = List.of();
+    return r;
+  }
+
+  /** Thay thứ tự candidate của lần tìm hiện tại (không tính là một lần tìm mới). */
+  void reorderCandidates(List<DispatchCandidate> candidates) {
+    this.candidates = candidates;
+    this.cursor = 0;
+  }
+
+  boolean hasMoreCandidates() {
+    return cursor < candidates.size();
+  }
+
+  /** Các candidate chưa được push của lần tìm hiện tại. */
+  List<DispatchCandidate> remainingCandidates() {
+    return candidates.subList(cursor, candidates.size());
+  }
+
+  /** Lấy wave tiếp theo (top-k kế tiếp) và dời cursor. */
+  List<DispatchCandidate> nextWave() {
+    int end = Math.min(cursor + batchK, candidates.size());
+    List<DispatchCandidate> wave = candidates.subList(cursor, end);
+    cursor = end;
+    waves++;
+    return wave;
+  }
+
+  boolean isFinished() {
+    return phase == DispatchPhase.ASSIGNED
+        || phase == DispatchPhase.NO_DRIVER
+        || phase == DispatchPhase.CANCELLED;
+  }
+
+  /**
+   * Chuyển sang trạng thái kết thúc, huỷ tick đang hẹn (nếu có) và gọi onFinish.
+   *
+   * @return false nếu state đã kết thúc trước đó (gọi trùng từ thread khác)
+   */
+  boolean finish(DispatchPhase terminal) {
+    if (!done.compareAndSet(false, true)) return false;
+    this.phase = terminal;
+    ScheduledFuture<?> f = nextTick;
+    if (f != null) f.cancel(false);
+    if (onFinish != null) onFinish.run();
+    return true;
+  }
+}
@@ -0,0 +1,92 @@
+package com.pbl6.order.service.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_AVAILABLE_BACKFILL_LOCK;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_AVAILABLE_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_GEO_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_DELIVERING_ORDER_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_FCM_TOKEN;
+
+/**
+ * Nạp {@code drivers:available} từ nguồn online hiện có lúc khởi động.
+ *
+ * <p>Tập này chỉ được cập nhật khi shipper đổi trạng thái, nên shipper đã online từ trước khi có
+ * tập sẽ bị filter server-side loại cho tới khi bật/tắt lại. Shipper được coi là rảnh nếu có vị
+ * trí trong {@code drivers:geo}, còn FCM token (online) và không có order đang giao; cùng điều
+ * kiện auth-service dùng khi shipper bật online. SADD là idempotent, khoá chỉ để các replica khởi
+ * động cùng lúc không quét trùng.
+ */
+@Slf4j
+@Component
+public class DriverAvailabilityBackfill {
+
+  private static final int CHUNK = 500;
+  private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+
+  private final RedisTemplate<String, String> redisTemplate;
+
+  public DriverAvailabilityBackfill(RedisTemplate<String, String> redisTemplate) {
+    this.redisTemplate = redisTemplate;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfill() {
+    try {
+      Boolean locked =
+          redisTemplate.opsForValue().setIfAbsent(DRIVERS_AVAILABLE_BACKFILL_LOCK, "1", LOCK_TTL);
+      if (!Boolean.TRUE.equals(locked)) return;
+      long started = System.currentTimeMillis();
+      int added = 0;
+      List<String> chunk = new ArrayList<>(CHUNK);
+      ScanOptions options = ScanOptions.scanOptions().count(1000).build();
+      try (Cursor<ZSetOperations.TypedTuple<String>> cursor =
+          redisTemplate.opsForZSet().scan(DRIVERS_GEO_KEY, options)) {
+        while (cursor.hasNext()) {
+          chunk.add(cursor.next().getValue());
+          if (chunk.size() == CHUNK) {
+            added += addAvailable(chunk);
+            chunk.clear();
+          }
+        }
+        added += addAvailable(chunk);
+      }
+      log.info(
+          "Backfilled {} available drivers in {} ms", added, System.currentTimeMillis() - started);
+    } catch (Exception ex) {
+      log.warn("Available drivers backfill failed: {}", ex.getMessage());
+    }
+  }
+
+  private int addAvailable(List<String> driverIds) {
+    if (driverIds.isEmpty()) return 0;
+    List<String> tokenKeys = new ArrayList<>(driverIds.size());
+    List<String> deliveringKeys = new ArrayList<>(driverIds.size());
+    for (String id : driverIds) {
+      tokenKeys.add(String.format(DRIVER_FCM_TOKEN, id));
+      deliveringKeys.add(String.format(DRIVER_DELIVERING_ORDER_KEY, id));
+    }
+    List<String> tokens = redisTemplate.opsForValue().multiGet(tokenKeys);
+    List<String> delivering = redisTemplate.opsForValue().multiGet(deliveringKeys);
+    if (tokens == null || delivering == null) return 0;
+    List<String> available = new ArrayList<>();
+    for (int i = 0; i < driverIds.size(); i++) {
+      if (tokens.get(i) != null && delivering.get(i) == null) available.add(driverIds.get(i));
+    }
+    if (available.isEmpty()) return 0;
+    Long added =
+        redisTemplate.opsForSet().add(DRIVERS_AVAILABLE_KEY, available.toArray(String[]::new));
+    return added != null ? added.intValue() : 0;
+  }
+}
@@ -0,0 +1,94 @@
+package com.pbl6.order.service.dispatch;
+
+import com.pbl6.order.repository.OrderReviewRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_OFFER_STATS_KEY;
+
+/**
+ * Ghi feature ranking của shipper vào driver:{id}:offer_stats. Cache được cập nhật tăng dần theo
+ * sự kiện (review, shipper rảnh lại; offered / accepted do các Lua script dispatch tự ghi), chỉ nạp
+ * lại rating toàn bộ từ DB một lần khi khởi động bằng một query GROUP BY.
+ */
+@Slf4j
+@Component
+public class DriverFeatureCache {
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final OrderReviewRepository reviewRepo;
+
+  public DriverFeatureCache(
+      RedisTemplate<String, String> redisTemplate, OrderReviewRepository reviewRepo) {
+    this.redisTemplate = redisTemplate;
+    this.reviewRepo = reviewRepo;
+  }
+
+  /** Order của shipper vừa được review. */
+  public void recordRating(UUID shipperId, int rating) {
+    if (shipperId == null) return;
+    String key = String.format(DRIVER_OFFER_STATS_KEY, shipperId);
+    try {
+      redisTemplate.opsForHash().increment(key, "rating_sum", rating);
+      redisTemplate.opsForHash().increment(key, "rated", 1);
+    } catch (Exception ex) {
+      log.warn("Failed to update rating features of driver {}: {}", shipperId, ex.getMessage());
+    }
+  }
+
+  /** Shipper xong đơn và rảnh lại: bắt đầu tính idle time. */
+  public void markFree(UUID driverId) {
+    if (driverId == null) return;
+    try {
+      redisTemplate
+          .opsForHash()
+          .put(
+              String.format(DRIVER_OFFER_STATS_KEY, driverId),
+              "free_since",
+              String.valueOf(System.currentTimeMillis()));
+    } catch (Exception ex) {
+      log.warn("Failed to mark driver {} free: {}", driverId, ex.getMessage());
+    }
+  }
+
+  /** Nạp rating_sum / rated của mọi shipper từ DB (ghi đè, nên chạy lại nhiều lần vẫn đúng). */
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadRatings() {
+    List<Object[]> rows;
+    try {
+      rows = reviewRepo.findRatingTotalsGroupByShipper();
+      if (rows.isEmpty()) return;
+      redisTemplate.executePipelined(
+          new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+              var ops = (RedisOperations<String, String>) operations;
+              for (Object[] row : rows) {
+                ops.opsForHash()
+                    .putAll(
+                        String.format(DRIVER_OFFER_STATS_KEY, row[0]),
+                        Map.of(
+                            "rating_sum", String.valueOf(row[1]),
+                            "rated", String.valueOf(row[2])));
+              }
+              return null;
+            }
+          });
+    } catch (Exception ex) {
+      // ranking vẫn chạy với rating prior, chỉ kém chính xác hơn
+      log.warn("Failed to load driver ratings for dispatch ranking: {}", ex.getMessage());
+      return;
+    }
+    log.info("Loaded rating features for {} drivers", rows.size());
+  }
+}
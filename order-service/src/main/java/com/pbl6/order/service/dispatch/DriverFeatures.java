@@ -0,0 +1,41 @@
+package com.pbl6.order.service.dispatch;
+
+import java.util.List;
+
+/**
+ * Feature ranking của một shipper, đọc từ driver:{id}:offer_stats cùng lúc với candidate (không
+ * query DB).
+ *
+ * @param offered số offer đã nhận
+ * @param accepted số offer đã nhận đơn
+ * @param ratingSum tổng điểm review
+ * @param rated số review
+ * @param freeSinceMs thời điểm rảnh gần nhất (epoch ms), 0 nếu chưa biết
+ */
+public record DriverFeatures(
+    long offered, long accepted, double ratingSum, long rated, long freeSinceMs) {
+
+  public static final DriverFeatures UNKNOWN = new DriverFeatures(0, 0, 0, 0, 0);
+
+  /** Số phần tử feature mỗi shipper trong kết quả Lua (xem FEATURE_FIELDS trong script). */
+  public static final int FIELD_COUNT = 5;
+
+  /** Parse {@link #FIELD_COUNT} phần tử liên tiếp bắt đầu từ {@code offset}. */
+  public static DriverFeatures parse(List<?> raw, int offset) {
+    return new DriverFeatures(
+        (long) number(raw.get(offset)),
+        (long) number(raw.get(offset + 1)),
+        number(raw.get(offset + 2)),
+        (long) number(raw.get(offset + 3)),
+        (long) number(raw.get(offset + 4)));
+  }
+
+  private static double number(Object v) {
+    if (v == null) return 0;
+    try {
+      return Double.parseDouble(String.valueOf(v));
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,462 @@
+package com.pbl6.order.service.geo;
+
+import com.pbl6.order.config.DistanceCacheProperties;
+import com.pbl6.order.dto.DistanceMatrixRequest;
+import com.pbl6.order.dto.DistanceMatrixResponse;
+import com.pbl6.order.service.GooongMapClientService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Distance Matrix có cache theo từng ô (điểm đi, điểm đến, phương tiện): LRU trong JVM rồi tới
+ * Redis, key là toạ độ đã lượng tử hoá về ô ~{@code quantize-meters}.
+ *
+ * <p>Chỉ gọi Goong cho các hàng / cột còn thiếu: tập hàng = các điểm đi có ô thiếu, tập cột = các
+ * điểm đến thiếu trong những hàng đó (một lần gọi, có thể lấy thừa vài ô đã có). Ô lỗi (status khác
+ * OK) không được cache.
+ */
+@Slf4j
+@Service
+public class DistanceMatrixCache {
+
+  private static final String KEY_PREFIX = "dm:";
+  private static final double METERS_PER_DEGREE = 111_320;
+  private static final String OK = "OK";
+
+  private final GooongMapClientService client;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final DistanceCacheProperties props;
+  private final double step;
+  private final Counter localHits;
+  private final Counter redisHits;
+  private final Counter misses;
+  private final Counter apiCalls;
+  private final Counter apiCells;
+  private final LinkedHashMap<String, Entry> local;
+
+  public DistanceMatrixCache(
+      GooongMapClientService client,
+      RedisTemplate<String, String> redisTemplate,
+      DistanceCacheProperties props,
+      MeterRegistry registry) {
+    this.client = client;
+    this.redisTemplate = redisTemplate;
+    this.props = props;
+    this.step = props.getQuantizeMeters() / METERS_PER_DEGREE;
+    int maxSize = Math.max(1, props.getLocalMaxSize());
+    this.local =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+          }
+        };
+    this.localHits = lookups(registry, "local");
+    this.redisHits = lookups(registry, "redis");
+    this.misses = lookups(registry, "miss");
+    this.apiCalls =
+        Counter.builder("distance.matrix.api.calls")
+            .description("Distance Matrix requests sent to Goong")
+            .register(registry);
+    this.apiCells =
+        Counter.builder("distance.matrix.api.cells")
+            .description("Matrix cells requested from Goong (including over-fetched ones)")
+            .register(registry);
+  }
+
+  public record Location(double lat, double lon) {}
+
+  /** Ma trận n x n (hàng = điểm đi, cột = điểm đến) cho {@code points}, cùng định dạng với API. */
+  public DistanceMatrixResponse matrix(List<Location> points, String vehicle) {
+    int n = points.size();
+    DistanceMatrixResponse.Element[][] cells = new DistanceMatrixResponse.Element[n][n];
+    String[] cellKeys = new String[n];
+    for (int i = 0; i < n; i++) cellKeys[i] = quantize(points.get(i));
+
+    // 1) LRU cục bộ
+    List<int[]> missing = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (cellKeys[i].equals(cellKeys[j])) {
+          cells[i][j] = element(0, 0); // cùng ô ~50m (kể cả đường chéo)
+          continue;
+        }
+        Long packed =
+            props.isEnabled() ? localGet(key(vehicle, cellKeys[i], cellKeys[j]), now) : null;
+        if (packed != null) {
+          localHits.increment();
+          cells[i][j] = unpack(packed);
+        } else {
+          missing.add(new int[] {i, j});
+        }
+      }
+    }
+
+    // 2) Redis cho các ô còn thiếu
+    if (props.isEnabled() && !missing.isEmpty()) {
+      missing = fromRedis(missing, cells, cellKeys, vehicle, now);
+    }
+
+    // 3) Goong cho phần còn lại
+    if (!missing.isEmpty()) {
+      misses.increment(missing.size());
+      fetch(missing, cells, points, cellKeys, vehicle, now);
+    }
+
+    List<DistanceMatrixResponse.Row> rows = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) rows.add(new DistanceMatrixResponse.Row(Arrays.asList(cells[i])));
+    return new DistanceMatrixResponse(rows);
+  }
+
+  /**
+   * Ma trận cho nhiều order một lượt (import hàng loạt). Mọi ô của mọi order được tra LRU rồi một
+   * lần MGET; ô còn thiếu được gom theo điểm đi có cùng tập điểm đến (vd. mọi điểm giao cùng thiếu
+   * ô về một điểm lấy hàng) để gọi Goong không lấy thừa ô, mỗi lần tối đa {@code batch-max-cells}
+   * ô.
+   *
+   * @return cùng thứ tự với {@code groups}; phần tử null nếu order đó còn ô không lấy được
+   */
+  public List<DistanceMatrixResponse> matrices(List<List<Location>> groups, String vehicle) {
+    long now = System.currentTimeMillis();
+    Map<String, Location> cellPoint = new HashMap<>();
+    List<String[]> groupCells = new ArrayList<>(groups.size());
+    Map<String, DistanceMatrixResponse.Element> known = new HashMap<>();
+    Map<String, String[]> missing = new LinkedHashMap<>(); // key -> {ô đi, ô đến}
+    for (List<Location> points : groups) {
+      String[] cellKeys = new String[points.size()];
+      for (int i = 0; i < cellKeys.length; i++) {
+        cellKeys[i] = quantize(points.get(i));
+        cellPoint.putIfAbsent(cellKeys[i], points.get(i));
+      }
+      groupCells.add(cellKeys);
+      for (String from : cellKeys) {
+        for (String to : cellKeys) {
+          if (from.equals(to)) continue;
+          String key = key(vehicle, from, to);
+          if (known.containsKey(key) || missing.containsKey(key)) continue;
+          Long packed = props.isEnabled() ? localGet(key, now) : null;
+          if (packed != null) {
+            localHits.increment();
+            known.put(key, unpack(packed));
+          } else {
+            missing.put(key, new String[] {from, to});
+          }
+        }
+      }
+    }
+
+    if (props.isEnabled() && !missing.isEmpty()) {
+      List<String> keys = new ArrayList<>(missing.keySet());
+      List<String> values = null;
+      try {
+        values = redisTemplate.opsForValue().multiGet(keys);
+      } catch (Exception ex) {
+        log.warn("Distance cache MGET of {} cells failed: {}", keys.size(), ex.getMessage());
+      }
+      for (int k = 0; values != null && k < keys.size(); k++) {
+        Long packed = parse(values.get(k));
+        if (packed == null) continue;
+        redisHits.increment();
+        known.put(keys.get(k), unpack(packed));
+        missing.remove(keys.get(k));
+        localPut(keys.get(k), packed, now);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      misses.increment(missing.size());
+      fetchGrouped(missing.values(), cellPoint, known, vehicle, now);
+    }
+
+    List<DistanceMatrixResponse> result = new ArrayList<>(groups.size());
+    for (String[] cellKeys : groupCells) result.add(assemble(cellKeys, known, vehicle));
+    return result;
+  }
+
+  private void fetchGrouped(
+      Iterable<String[]> missing,
+      Map<String, Location> cellPoint,
+      Map<String, DistanceMatrixResponse.Element> known,
+      String vehicle,
+      long now) {
+    // ô đi -> các ô đến còn thiếu, rồi gom các ô đi có cùng tập ô đến
+    Map<String, TreeSet<String>> byOrigin = new LinkedHashMap<>();
+    for (String[] c : missing) byOrigin.computeIfAbsent(c[0], k -> new TreeSet<>()).add(c[1]);
+    Map<TreeSet<String>, List<String>> byDestinations = new LinkedHashMap<>();
+    byOrigin.forEach(
+        (origin, dests) ->
+            byDestinations.computeIfAbsent(dests, k -> new ArrayList<>()).add(origin));
+
+    int maxCells = Math.max(1, props.getBatchMaxCells());
+    Map<String, String> toRedis = new LinkedHashMap<>();
+    for (Map.Entry<TreeSet<String>, List<String>> e : byDestinations.entrySet()) {
+      List<String> dests = new ArrayList<>(e.getKey());
+      List<String> origins = e.getValue();
+      int destStep = Math.min(dests.size(), maxCells);
+      int originStep = Math.max(1, maxCells / destStep);
+      for (int d = 0; d < dests.size(); d += destStep) {
+        List<String> cols = dests.subList(d, Math.min(dests.size(), d + destStep));
+        for (int o = 0; o < origins.size(); o += originStep) {
+          List<String> rows = origins.subList(o, Math.min(origins.size(), o + originStep));
+          fetchBlock(rows, cols, cellPoint, known, toRedis, vehicle, now);
+        }
+      }
+    }
+    if (!toRedis.isEmpty()) writeRedis(toRedis);
+  }
+
+  /** Một lần gọi Goong; lỗi chỉ làm các order cần những ô này thất bại. */
+  private void fetchBlock(
+      List<String> rows,
+      List<String> cols,
+      Map<String, Location> cellPoint,
+      Map<String, DistanceMatrixResponse.Element> known,
+      Map<String, String> toRedis,
+      String vehicle,
+      long now) {
+    DistanceMatrixResponse data;
+    try {
+      data =
+          client
+              .getDistanceMatrixWithQuery(
+                  new DistanceMatrixRequest(
+                      joinCells(rows, cellPoint), joinCells(cols, cellPoint), vehicle))
+              .block();
+    } catch (Exception ex) {
+      log.warn("Distance matrix call {}x{} failed: {}", rows.size(), cols.size(), ex.getMessage());
+      return;
+    } finally {
+      apiCalls.increment();
+      apiCells.increment((double) rows.size() * cols.size());
+    }
+    if (data == null || data.rows() == null || data.rows().size() != rows.size()) {
+      log.warn("Distance matrix call {}x{} returned incomplete rows", rows.size(), cols.size());
+      return;
+    }
+    for (int r = 0; r < rows.size(); r++) {
+      DistanceMatrixResponse.Row row = data.rows().get(r);
+      if (row == null || row.elements() == null || row.elements().size() != cols.size()) continue;
+      for (int c = 0; c < cols.size(); c++) {
+        DistanceMatrixResponse.Element el = row.elements().get(c);
+        if (el == null) continue;
+        String key = key(vehicle, rows.get(r), cols.get(c));
+        known.put(key, el);
+        if (props.isEnabled() && OK.equals(el.status())) {
+          localPut(key, pack(el.distance().value(), el.duration().value()), now);
+          toRedis.put(key, el.distance().value() + "," + el.duration().value());
+        }
+      }
+    }
+  }
+
+  private static DistanceMatrixResponse assemble(
+      String[] cellKeys, Map<String, DistanceMatrixResponse.Element> known, String vehicle) {
+    int n = cellKeys.length;
+    List<DistanceMatrixResponse.Row> rows = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      DistanceMatrixResponse.Element[] row = new DistanceMatrixResponse.Element[n];
+      for (int j = 0; j < n; j++) {
+        if (cellKeys[i].equals(cellKeys[j])) {
+          row[j] = element(0, 0);
+          continue;
+        }
+        row[j] = known.get(key(vehicle, cellKeys[i], cellKeys[j]));
+        if (row[j] == null) return null;
+      }
+      rows.add(new DistanceMatrixResponse.Row(Arrays.asList(row)));
+    }
+    return new DistanceMatrixResponse(rows);
+  }
+
+  private List<int[]> fromRedis(
+      List<int[]> missing,
+      DistanceMatrixResponse.Element[][] cells,
+      String[] cellKeys,
+      String vehicle,
+      long now) {
+    List<String> keys = new ArrayList<>(missing.size());
+    for (int[] c : missing) keys.add(key(vehicle, cellKeys[c[0]], cellKeys[c[1]]));
+    List<String> values;
+    try {
+      values = redisTemplate.opsForValue().multiGet(keys);
+    } catch (Exception ex) {
+      log.warn("Distance cache MGET failed: {}", ex.getMessage());
+      return missing;
+    }
+    if (values == null) return missing;
+    List<int[]> still = new ArrayList<>();
+    for (int k = 0; k < missing.size(); k++) {
+      Long packed = parse(values.get(k));
+      int[] c = missing.get(k);
+      if (packed == null) {
+        still.add(c);
+        continue;
+      }
+      redisHits.increment();
+      cells[c[0]][c[1]] = unpack(packed);
+      localPut(keys.get(k), packed, now);
+    }
+    return still;
+  }
+
+  private void fetch(
+      List<int[]> missing,
+      DistanceMatrixResponse.Element[][] cells,
+      List<Location> points,
+      String[] cellKeys,
+      String vehicle,
+      long now) {
+    TreeSet<Integer> rowSet = new TreeSet<>();
+    TreeSet<Integer> colSet = new TreeSet<>();
+    for (int[] c : missing) {
+      rowSet.add(c[0]);
+      colSet.add(c[1]);
+    }
+    List<Integer> rowIdx = new ArrayList<>(rowSet);
+    List<Integer> colIdx = new ArrayList<>(colSet);
+    DistanceMatrixResponse data =
+        client
+            .getDistanceMatrixWithQuery(
+                new DistanceMatrixRequest(join(points, rowIdx), join(points, colIdx), vehicle))
+            .block();
+    apiCalls.increment();
+    apiCells.increment((double) rowIdx.size() * colIdx.size());
+    if (data == null || data.rows() == null || data.rows().size() != rowIdx.size()) {
+      throw new IllegalArgumentException("Gooong Map API returned incomplete distance matrix");
+    }
+
+    Map<String, String> toRedis = new LinkedHashMap<>();
+    for (int r = 0; r < rowIdx.size(); r++) {
+      DistanceMatrixResponse.Row row = data.rows().get(r);
+      if (row == null || row.elements() == null || row.elements().size() != colIdx.size()) {
+        throw new IllegalArgumentException("Inconsistent number of elements in row " + r);
+      }
+      for (int c = 0; c < colIdx.size(); c++) {
+        int i = rowIdx.get(r);
+        int j = colIdx.get(c);
+        if (cells[i][j] != null) continue; // đã có từ cache hoặc cùng ô
+        DistanceMatrixResponse.Element el = row.elements().get(c);
+        cells[i][j] = el;
+        if (props.isEnabled() && el != null && OK.equals(el.status())) {
+          long packed = pack(el.distance().value(), el.duration().value());
+          String key = key(vehicle, cellKeys[i], cellKeys[j]);
+          localPut(key, packed, now);
+          toRedis.put(key, el.distance().value() + "," + el.duration().value());
+        }
+      }
+    }
+    if (!toRedis.isEmpty()) writeRedis(toRedis);
+  }
+
+  private void writeRedis(Map<String, String> entries) {
+    Duration ttl = Duration.ofSeconds(props.getRedisTtlSeconds());
+    try {
+      redisTemplate.executePipelined(
+          new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+              var ops = (RedisOperations<String, String>) operations;
+              entries.forEach((k, v) -> ops.opsForValue().set(k, v, ttl));
+              return null;
+            }
+          });
+    } catch (Exception ex) {
+      log.warn("Distance cache write of {} cells failed: {}", entries.size(), ex.getMessage());
+    }
+  }
+
+  private Long localGet(String key, long now) {
+    synchronized (local) {
+      Entry e = local.get(key);
+      return e != null && e.expiresAtMs > now ? e.packed : null;
+    }
+  }
+
+  private void localPut(String key, long packed, long now) {
+    synchronized (local) {
+      local.put(key, new Entry(packed, now + props.getLocalTtlSeconds() * 1000));
+    }
+  }
+
+  /** Toạ độ lượng tử hoá: chỉ số ô theo lat / lon, dạng {@code latIdx:lonIdx}. */
+  private String quantize(Location p) {
+    return Math.round(p.lat() / step) + ":" + Math.round(p.lon() / step);
+  }
+
+  private static String key(String vehicle, String from, String to) {
+    return KEY_PREFIX + vehicle + ":" + from + ":" + to;
+  }
+
+  private static String join(List<Location> points, List<Integer> idx) {
+    StringBuilder sb = new StringBuilder();
+    for (int i : idx) {
+      if (!sb.isEmpty()) sb.append('|');
+      Location p = points.get(i);
+      sb.append(p.lat()).append(',').append(p.lon());
+    }
+    return sb.toString();
+  }
+
+  private static String joinCells(List<String> cells, Map<String, Location> cellPoint) {
+    StringBuilder sb = new StringBuilder();
+    for (String cell : cells) {
+      if (!sb.isEmpty()) sb.append('|');
+      Location p = cellPoint.get(cell);
+      sb.append(p.lat()).append(',').append(p.lon());
+    }
+    return sb.toString();
+  }
+
+  private static Long parse(String value) {
+    if (value == null) return null;
+    int comma = value.indexOf(',');
+    if (comma < 0) return null;
+    try {
+      int distance = Integer.parseInt(value.substring(0, comma));
+      return pack(distance, Integer.parseInt(value.substring(comma + 1)));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private static long pack(int distance, int duration) {
+    return ((long) distance << 32) | (duration & 0xffffffffL);
+  }
+
+  private static DistanceMatrixResponse.Element unpack(long packed) {
+    return element((int) (packed >> 32), (int) packed);
+  }
+
+  /** Ô dựng từ cache chỉ có value (text = null); phía gọi chỉ dùng value. */
+  private static DistanceMatrixResponse.Element element(int distance, int duration) {
+    return new DistanceMatrixResponse.Element(
+        new DistanceMatrixResponse.ValueText(null, distance),
+        new DistanceMatrixResponse.ValueText(null, duration),
+        OK);
+  }
+
+  private static Counter lookups(MeterRegistry registry, String result) {
+    return Counter.builder("distance.matrix.cache.lookups")
+        .description("Distance matrix cells by source; hit ratio = (local + redis) / total")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private record Entry(long packed, long expiresAtMs) {}
+}
@@ -0,0 +1,159 @@
+package com.pbl6.order.service.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_GEO_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_LOCATION_CHANNEL;
+
+/**
+ * Giữ {@link DriverSpatialIndex} đồng bộ với vị trí shipper.
+ *
+ * <p>Nguồn chính là channel {@code drivers:location:changes} do auth-service publish mỗi lần
+ * shipper cập nhật vị trí / offline. {@code drivers:geo} chỉ dùng để nạp lúc khởi động và resync
+ * định kỳ (bù cho message pub/sub bị mất): resync cập nhật vị trí và gỡ khỏi index các shipper
+ * không còn trong {@code drivers:geo}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "dispatch.candidate-source", havingValue = "local-index")
+public class DriverLocationSync implements MessageListener {
+
+  private static final int GEOPOS_CHUNK = 500;
+
+  private final DriverSpatialIndex index;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisMessageListenerContainer container;
+  private volatile boolean ready;
+
+  /** Shipper cập nhật vị trí qua pub/sub trong lúc resync đang quét; không bị gỡ ở lần đó. */
+  private volatile Set<UUID> updatedDuringResync;
+
+  public DriverLocationSync(
+      DriverSpatialIndex index,
+      RedisTemplate<String, String> redisTemplate,
+      RedisMessageListenerContainer container) {
+    this.index = index;
+    this.redisTemplate = redisTemplate;
+    this.container = container;
+  }
+
+  /** Index đã nạp xong từ drivers:geo ít nhất một lần. */
+  public boolean isReady() {
+    return ready;
+  }
+
+  public DriverSpatialIndex index() {
+    return index;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    // subscribe trước khi nạp để không lỡ cập nhật xảy ra trong lúc nạp
+    container.addMessageListener(this, new ChannelTopic(DRIVER_LOCATION_CHANNEL));
+    resync();
+  }
+
+  @Scheduled(
+      initialDelayString = "${dispatch.index.resync-ms:300000}",
+      fixedDelayString = "${dispatch.index.resync-ms:300000}")
+  public synchronized void resync() {
+    long started = System.currentTimeMillis();
+    int loaded = 0;
+    Set<UUID> seen = new HashSet<>();
+    updatedDuringResync = ConcurrentHashMap.newKeySet();
+    ScanOptions options = ScanOptions.scanOptions().count(1000).build();
+    List<String> chunk = new ArrayList<>(GEOPOS_CHUNK);
+    try (Cursor<ZSetOperations.TypedTuple<String>> cursor =
+        redisTemplate.opsForZSet().scan(DRIVERS_GEO_KEY, options)) {
+      while (cursor.hasNext()) {
+        chunk.add(cursor.next().getValue());
+        if (chunk.size() == GEOPOS_CHUNK) {
+          loaded += loadPositions(chunk, seen);
+          chunk.clear();
+        }
+      }
+      loaded += loadPositions(chunk, seen);
+      // chỉ gỡ khi đã quét hết: shipper có message offline bị mất không còn trong drivers:geo
+      seen.addAll(updatedDuringResync);
+      int evicted = index.retainAll(seen);
+      ready = true;
+      log.info(
+          "Driver spatial index synced: {} drivers, {} evicted in {} ms",
+          loaded,
+          evicted,
+          System.currentTimeMillis() - started);
+    } catch (Exception ex) {
+      log.warn("Driver spatial index resync failed: {}", ex.getMessage());
+    } finally {
+      updatedDuringResync = null;
+    }
+  }
+
+  private int loadPositions(List<String> members, Set<UUID> seen) {
+    if (members.isEmpty()) return 0;
+    List<Point> points =
+        redisTemplate.opsForGeo().position(DRIVERS_GEO_KEY, members.toArray(String[]::new));
+    if (points == null) return 0;
+    int loaded = 0;
+    for (int i = 0; i < members.size() && i < points.size(); i++) {
+      Point p = points.get(i);
+      UUID driverId = parseId(members.get(i));
+      if (p == null || driverId == null) continue;
+      seen.add(driverId);
+      index.upsert(driverId, p.getX(), p.getY());
+      loaded++;
+    }
+    return loaded;
+  }
+
+  /** Message: {@code U,<driverId>,<lon>,<lat>} (cập nhật) hoặc {@code R,<driverId>} (offline). */
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    String[] parts = body.split(",");
+    try {
+      UUID driverId = parseId(parts.length > 1 ? parts[1] : null);
+      if (driverId == null) return;
+      if ("U".equals(parts[0]) && parts.length >= 4) {
+        index.upsert(driverId, Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+        Set<UUID> updated = updatedDuringResync;
+        if (updated != null) updated.add(driverId);
+      } else if ("R".equals(parts[0])) {
+        index.remove(driverId);
+      }
+    } catch (NumberFormatException ex) {
+      log.debug("Ignoring malformed driver location message: {}", body);
+    }
+  }
+
+  private static UUID parseId(String raw) {
+    if (raw == null) return null;
+    try {
+      return UUID.fromString(raw);
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,352 @@
+package com.pbl6.order.service.geo;
+
+import com.pbl6.order.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spatial index trong bộ nhớ cho vị trí shipper: lưới ô vuông {@code cellDeg} độ, mỗi ô là một
+ * danh sách liên kết đôi trên mảng primitive, ô được băm vào một bảng bucket cố định (spatial hash)
+ * nên không phụ thuộc vùng địa lý.
+ *
+ * <p>Mọi dữ liệu nằm trong mảng song song (slot = một shipper): id (2 long), lon/lat, ô, con trỏ
+ * next/prev, cộng một bảng băm open-addressing id -> slot. Khoảng 60 byte / shipper, 100k shipper ~
+ * 6 MB, không có object nào trên mỗi shipper.
+ *
+ * <p>Một writer (listener vị trí / resync) và nhiều reader (dispatch) dùng chung qua read-write
+ * lock; truy vấn nearest-k chỉ duyệt các ô theo vòng tăng dần nên tốn vài micro giây.
+ */
+public class DriverSpatialIndex {
+
+  private static final double KM_PER_DEG = 111.32;
+  private static final int NONE = -1;
+
+  /** Một kết quả của truy vấn nearest-k. */
+  public record Neighbor(UUID driverId, double distanceKm) {}
+
+  private final double cellDeg;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // ----- slot storage -----
+  private long[] idHi;
+  private long[] idLo;
+  private double[] lon;
+  private double[] lat;
+  private int[] cellX;
+  private int[] cellY;
+  private int[] next; // trong bucket; với slot rỗng là con trỏ free list
+  private int[] prev;
+  private int highWater;
+  private int freeHead = NONE;
+  private int size;
+
+  // ----- bucket (ô đã băm) -> slot đầu tiên -----
+  private final int[] bucketHead;
+  private final int bucketMask;
+
+  // ----- id -> slot + 1 (0 = trống), linear probing -----
+  private int[] idTable;
+  private int idMask;
+
+  /**
+   * @param cellDeg kích thước ô lưới (độ), ví dụ 0.01 ~ 1.1 km
+   * @param bucketBits log2 số bucket của lưới
+   * @param initialCapacity số slot ban đầu (tự mở rộng)
+   */
+  public DriverSpatialIndex(double cellDeg, int bucketBits, int initialCapacity) {
+    this.cellDeg = cellDeg;
+    this.bucketHead = new int[1 << bucketBits];
+    this.bucketMask = bucketHead.length - 1;
+    Arrays.fill(bucketHead, NONE);
+    allocateSlots(Math.max(16, initialCapacity));
+    this.idTable = new int[tableSizeFor(idHi.length)];
+    this.idMask = idTable.length - 1;
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Thêm mới hoặc cập nhật vị trí của shipper. */
+  public void upsert(UUID driverId, double longitude, double latitude) {
+    long hi = driverId.getMostSignificantBits();
+    long lo = driverId.getLeastSignificantBits();
+    lock.writeLock().lock();
+    try {
+      int slot = findSlot(hi, lo);
+      if (slot == NONE) {
+        slot = allocSlot();
+        idHi[slot] = hi;
+        idLo[slot] = lo;
+        insertId(slot);
+        size++;
+      } else {
+        unlink(slot);
+      }
+      lon[slot] = longitude;
+      lat[slot] = latitude;
+      cellX[slot] = cellOf(longitude);
+      cellY[slot] = cellOf(latitude);
+      link(slot);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Gỡ shipper khỏi index (offline). */
+  public void remove(UUID driverId) {
+    lock.writeLock().lock();
+    try {
+      int slot = findSlot(driverId.getMostSignificantBits(), driverId.getLeastSignificantBits());
+      if (slot == NONE) return;
+      freeSlot(slot);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gỡ mọi shipper không có trong {@code keep} (resync: bù cho message offline bị mất).
+   *
+   * @return số shipper đã gỡ
+   */
+  public int retainAll(Set<UUID> keep) {
+    lock.writeLock().lock();
+    try {
+      List<Integer> stale = new ArrayList<>();
+      for (int v : idTable) {
+        if (v == 0) continue;
+        int s = v - 1;
+        if (!keep.contains(new UUID(idHi[s], idLo[s]))) stale.add(s);
+      }
+      // gỡ sau khi duyệt xong: removeId dời các entry trong idTable
+      for (int s : stale) freeSlot(s);
+      return stale.size();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void freeSlot(int slot) {
+    unlink(slot);
+    removeId(slot);
+    next[slot] = freeHead;
+    freeHead = slot;
+    size--;
+  }
+
+  /**
+   * Tối đa {@code k} shipper gần (lon, lat) nhất trong bán kính {@code maxKm}, sắp xếp gần -> xa.
+   */
+  public List<Neighbor> nearest(double longitude, double latitude, int k, double maxKm) {
+    if (k <= 0) return List.of();
+    double cellKm = cellDeg * KM_PER_DEG * Math.max(0.1, Math.cos(Math.toRadians(latitude)));
+    int maxRing = (int) Math.ceil(maxKm / cellKm) + 1;
+    int cx = cellOf(longitude);
+    int cy = cellOf(latitude);
+
+    // max-heap theo khoảng cách, giữ k phần tử gần nhất
+    double[] heapDist = new double[k];
+    int[] heapSlot = new int[k];
+    int n = 0;
+
+    lock.readLock().lock();
+    try {
+      for (int r = 0; r <= maxRing; r++) {
+        for (int dx = -r; dx <= r; dx++) {
+          int step = (dx == -r || dx == r || r == 0) ? 1 : 2 * r;
+          for (int dy = -r; dy <= r; dy += step) {
+            int x = cx + dx;
+            int y = cy + dy;
+            for (int s = bucketHead[bucket(x, y)]; s != NONE; s = next[s]) {
+              if (cellX[s] != x || cellY[s] != y) continue; // ô khác băm trùng bucket
+              double d = GeoUtils.haversineDistanceMeters(latitude, longitude, lat[s], lon[s]);
+              d /= 1000.0;
+              if (d > maxKm) continue;
+              if (n < k) {
+                heapDist[n] = d;
+                heapSlot[n] = s;
+                siftUp(heapDist, heapSlot, n++);
+              } else if (d < heapDist[0]) {
+                heapDist[0] = d;
+                heapSlot[0] = s;
+                siftDown(heapDist, heapSlot, n);
+              }
+            }
+          }
+        }
+        // mọi ô chưa duyệt cách điểm truy vấn ít nhất r ô
+        if (n == k && heapDist[0] <= r * cellKm) break;
+      }
+
+      List<Neighbor> out = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        int s = heapSlot[i];
+        out.add(new Neighbor(new UUID(idHi[s], idLo[s]), heapDist[i]));
+      }
+      out.sort((a, b) -> Double.compare(a.distanceKm(), b.distanceKm()));
+      return out;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // ---------------- grid ----------------
+
+  private int cellOf(double deg) {
+    return (int) Math.floor(deg / cellDeg);
+  }
+
+  private int bucket(int x, int y) {
+    int h = x * 0x9E3779B1 ^ y * 0x85EBCA6B;
+    h ^= h >>> 16;
+    return h & bucketMask;
+  }
+
+  private void link(int slot) {
+    int b = bucket(cellX[slot], cellY[slot]);
+    int head = bucketHead[b];
+    next[slot] = head;
+    prev[slot] = NONE;
+    if (head != NONE) prev[head] = slot;
+    bucketHead[b] = slot;
+  }
+
+  private void unlink(int slot) {
+    int p = prev[slot];
+    int nx = next[slot];
+    if (p != NONE) next[p] = nx;
+    else bucketHead[bucket(cellX[slot], cellY[slot])] = nx;
+    if (nx != NONE) prev[nx] = p;
+  }
+
+  private static void siftUp(double[] d, int[] s, int i) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (d[parent] >= d[i]) return;
+      swap(d, s, parent, i);
+      i = parent;
+    }
+  }
+
+  private static void siftDown(double[] d, int[] s, int n) {
+    int i = 0;
+    while (true) {
+      int l = 2 * i + 1;
+      if (l >= n) return;
+      int c = (l + 1 < n && d[l + 1] > d[l]) ? l + 1 : l;
+      if (d[i] >= d[c]) return;
+      swap(d, s, i, c);
+      i = c;
+    }
+  }
+
+  private static void swap(double[] d, int[] s, int a, int b) {
+    double td = d[a];
+    d[a] = d[b];
+    d[b] = td;
+    int ts = s[a];
+    s[a] = s[b];
+    s[b] = ts;
+  }
+
+  // ---------------- slots ----------------
+
+  private int allocSlot() {
+    if (freeHead != NONE) {
+      int slot = freeHead;
+      freeHead = next[slot];
+      return slot;
+    }
+    if (highWater == idHi.length) grow();
+    return highWater++;
+  }
+
+  private void allocateSlots(int capacity) {
+    idHi = new long[capacity];
+    idLo = new long[capacity];
+    lon = new double[capacity];
+    lat = new double[capacity];
+    cellX = new int[capacity];
+    cellY = new int[capacity];
+    next = new int[capacity];
+    prev = new int[capacity];
+  }
+
+  private void grow() {
+    int capacity = idHi.length * 2;
+    idHi = Arrays.copyOf(idHi, capacity);
+    idLo = Arrays.copyOf(idLo, capacity);
+    lon = Arrays.copyOf(lon, capacity);
+    lat = Arrays.copyOf(lat, capacity);
+    cellX = Arrays.copyOf(cellX, capacity);
+    cellY = Arrays.copyOf(cellY, capacity);
+    next = Arrays.copyOf(next, capacity);
+    prev = Arrays.copyOf(prev, capacity);
+
+    // load factor <= 0.5: rehash bảng id
+    int[] old = idTable;
+    idTable = new int[tableSizeFor(capacity)];
+    idMask = idTable.length - 1;
+    for (int v : old) {
+      if (v != 0) insertId(v - 1);
+    }
+  }
+
+  // ---------------- id table ----------------
+
+  private static int tableSizeFor(int capacity) {
+    return Integer.highestOneBit(Math.max(16, capacity) * 4 - 1);
+  }
+
+  private int idHash(long hi, long lo) {
+    long h = hi ^ (lo * 0x9E3779B97F4A7C15L);
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h & idMask;
+  }
+
+  private int findSlot(long hi, long lo) {
+    for (int i = idHash(hi, lo); ; i = (i + 1) & idMask) {
+      int v = idTable[i];
+      if (v == 0) return NONE;
+      int s = v - 1;
+      if (idHi[s] == hi && idLo[s] == lo) return s;
+    }
+  }
+
+  private void insertId(int slot) {
+    int i = idHash(idHi[slot], idLo[slot]);
+    while (idTable[i] != 0) i = (i + 1) & idMask;
+    idTable[i] = slot + 1;
+  }
+
+  /** Xoá khỏi bảng id bằng backward-shift (không dùng tombstone). */
+  private void removeId(int slot) {
+    int i = idHash(idHi[slot], idLo[slot]);
+    while (idTable[i] != slot + 1) i = (i + 1) & idMask;
+    idTable[i] = 0;
+    for (int j = (i + 1) & idMask; idTable[j] != 0; j = (j + 1) & idMask) {
+      int s = idTable[j] - 1;
+      int home = idHash(idHi[s], idLo[s]);
+      // giữ nguyên nếu home nằm (vòng tròn) trong (i, j]
+      boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+      if (!stays) {
+        idTable[i] = idTable[j];
+        idTable[j] = 0;
+        i = j;
+      }
+    }
+  }
+}
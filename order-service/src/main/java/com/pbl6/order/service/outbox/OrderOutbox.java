@@ -0,0 +1,102 @@
+package com.pbl6.order.service.outbox;
+
+import com.pbl6.order.entity.OrderOutboxEntity;
+import com.pbl6.order.event.OrderAssignedEvent;
+import com.pbl6.order.event.OrderCreatedEvent;
+import com.pbl6.order.event.OrderReassignRequestedEvent;
+import com.pbl6.order.event.OrderStatusChangedEvent;
+import com.pbl6.order.repository.OrderOutboxRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ghi event domain của order vào bảng {@code order_outbox} trong transaction hiện tại, thay cho
+ * publish event trong bộ nhớ: event chỉ tồn tại nếu thay đổi order được commit, và không mất khi
+ * replica chết ngay sau commit. {@link OrderOutboxRelay} đọc và fan-out sau đó.
+ */
+@Component
+public class OrderOutbox {
+
+  private final OrderOutboxRepository outboxRepo;
+  private final OrderOutboxCodec codec;
+  private final OrderOutboxRelay relay;
+  private final JdbcTemplate jdbcTemplate;
+
+  public OrderOutbox(
+      OrderOutboxRepository outboxRepo,
+      OrderOutboxCodec codec,
+      OrderOutboxRelay relay,
+      JdbcTemplate jdbcTemplate) {
+    this.outboxRepo = outboxRepo;
+    this.codec = codec;
+    this.relay = relay;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public void append(OrderCreatedEvent event) {
+    append(event.getOrderId(), event);
+  }
+
+  public void append(OrderStatusChangedEvent event) {
+    append(event.getOrderId(), event);
+  }
+
+  public void append(OrderAssignedEvent event) {
+    append(event.getOrderId(), event);
+  }
+
+  public void append(OrderReassignRequestedEvent event) {
+    append(event.getOrderId(), event);
+  }
+
+  /** Nhiều order tạo cùng lúc (import hàng loạt): một batch insert, đánh thức relay một lần. */
+  public void appendAll(List<OrderCreatedEvent> events) {
+    if (events.isEmpty()) return;
+    requireTransaction();
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    List<Object[]> rows = new ArrayList<>(events.size());
+    for (OrderCreatedEvent event : events) {
+      rows.add(
+          new Object[] {codec.type(event), event.getOrderId(), codec.encode(event), now, now});
+    }
+    jdbcTemplate.batchUpdate(
+        "insert into order_outbox (event_type, aggregate_id, payload, attempts, created_at,"
+            + " available_at) values (?, ?, ?, 0, ?, ?)",
+        rows);
+    wakeRelayAfterCommit();
+  }
+
+  private void append(UUID orderId, Object event) {
+    requireTransaction();
+    OrderOutboxEntity row = new OrderOutboxEntity();
+    row.setEventType(codec.type(event));
+    row.setAggregateId(orderId);
+    row.setPayload(codec.encode(event));
+    outboxRepo.save(row);
+    wakeRelayAfterCommit();
+  }
+
+  private static void requireTransaction() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Outbox events must be written inside a transaction");
+    }
+  }
+
+  private void wakeRelayAfterCommit() {
+    // đánh thức relay ngay sau commit thay vì chờ chu kỳ poll
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            relay.wakeUp();
+          }
+        });
+  }
+}
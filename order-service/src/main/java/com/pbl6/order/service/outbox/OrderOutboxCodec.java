@@ -0,0 +1,125 @@
+package com.pbl6.order.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pbl6.order.entity.OrderStatus;
+import com.pbl6.order.event.OrderAssignedEvent;
+import com.pbl6.order.event.OrderCreatedEvent;
+import com.pbl6.order.event.OrderReassignRequestedEvent;
+import com.pbl6.order.event.OrderStatusChangedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Chuyển event domain của order <-> (event_type, payload JSON) trong bảng outbox. Map tay từng
+ * field vì các event là class bất biến không có constructor mặc định.
+ */
+@Component
+class OrderOutboxCodec {
+
+  static final String ORDER_CREATED = "ORDER_CREATED";
+  static final String ORDER_STATUS_CHANGED = "ORDER_STATUS_CHANGED";
+  static final String ORDER_ASSIGNED = "ORDER_ASSIGNED";
+  static final String ORDER_REASSIGN_REQUESTED = "ORDER_REASSIGN_REQUESTED";
+
+  private final ObjectMapper objectMapper;
+
+  OrderOutboxCodec(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  String type(Object event) {
+    if (event instanceof OrderCreatedEvent) return ORDER_CREATED;
+    if (event instanceof OrderStatusChangedEvent) return ORDER_STATUS_CHANGED;
+    if (event instanceof OrderAssignedEvent) return ORDER_ASSIGNED;
+    if (event instanceof OrderReassignRequestedEvent) return ORDER_REASSIGN_REQUESTED;
+    throw new IllegalArgumentException("Unsupported outbox event " + event.getClass().getName());
+  }
+
+  String encode(Object event) {
+    ObjectNode node = objectMapper.createObjectNode();
+    switch (event) {
+      case OrderCreatedEvent e -> {
+        node.put("orderId", e.getOrderId().toString());
+        node.put("pickupLon", e.getPickupLon());
+        node.put("pickupLat", e.getPickupLat());
+        node.put("createdAtMs", e.getCreatedAtMs());
+      }
+      case OrderStatusChangedEvent e -> {
+        node.put("orderId", e.getOrderId().toString());
+        putUuid(node, "creatorId", e.getCreatorId());
+        putUuid(node, "oldShipper", e.getOldShipper());
+        putUuid(node, "newShipper", e.getNewShipper());
+        node.put("from", e.getFrom() != null ? e.getFrom().name() : null);
+        node.put("to", e.getTo() != null ? e.getTo().name() : null);
+      }
+      case OrderAssignedEvent e -> {
+        node.put("orderId", e.getOrderId().toString());
+        putUuid(node, "creatorId", e.getCreatorId());
+        putUuid(node, "shipperId", e.getShipperId());
+      }
+      case OrderReassignRequestedEvent e -> {
+        node.put("orderId", e.getOrderId().toString());
+        putUuid(node, "previousShipper", e.getPreviousShipper());
+        node.put("pickupLon", e.getPickupLon());
+        node.put("pickupLat", e.getPickupLat());
+        node.put("createdAtMs", e.getCreatedAtMs());
+      }
+      default -> throw new IllegalArgumentException(
+          "Unsupported outbox event " + event.getClass().getName());
+    }
+    try {
+      return objectMapper.writeValueAsString(node);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("Cannot serialize outbox event", ex);
+    }
+  }
+
+  Object decode(String type, String payload) throws JsonProcessingException {
+    JsonNode n = objectMapper.readTree(payload);
+    UUID orderId = UUID.fromString(n.get("orderId").asText());
+    return switch (type) {
+      case ORDER_CREATED ->
+          new OrderCreatedEvent(
+              orderId,
+              n.get("pickupLon").asDouble(),
+              n.get("pickupLat").asDouble(),
+              n.get("createdAtMs").asLong());
+      case ORDER_STATUS_CHANGED ->
+          new OrderStatusChangedEvent(
+              orderId,
+              uuid(n, "creatorId"),
+              uuid(n, "oldShipper"),
+              uuid(n, "newShipper"),
+              status(n, "from"),
+              status(n, "to"));
+      case ORDER_ASSIGNED ->
+          new OrderAssignedEvent(orderId, uuid(n, "creatorId"), uuid(n, "shipperId"));
+      case ORDER_REASSIGN_REQUESTED ->
+          new OrderReassignRequestedEvent(
+              orderId,
+              uuid(n, "previousShipper"),
+              n.get("pickupLon").asDouble(),
+              n.get("pickupLat").asDouble(),
+              n.get("createdAtMs").asLong());
+      default -> throw new IllegalArgumentException("Unknown outbox event type " + type);
+    };
+  }
+
+  private static void putUuid(ObjectNode node, String field, UUID value) {
+    node.put(field, value != null ? value.toString() : null);
+  }
+
+  private static UUID uuid(JsonNode n, String field) {
+    JsonNode v = n.get(field);
+    return v == null || v.isNull() ? null : UUID.fromString(v.asText());
+  }
+
+  private static OrderStatus status(JsonNode n, String field) {
+    JsonNode v = n.get(field);
+    return v == null || v.isNull() ? null : OrderStatus.valueOf(v.asText());
+  }
+}
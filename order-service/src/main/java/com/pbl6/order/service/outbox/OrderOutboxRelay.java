@@ -0,0 +1,192 @@
+package com.pbl6.order.service.outbox;
+
+import com.pbl6.order.config.OutboxProperties;
+import com.pbl6.order.entity.OrderOutboxEntity;
+import com.pbl6.order.repository.OrderOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đọc {@code order_outbox} theo batch và fan-out event tới các listener (dispatch, notification)
+ * qua {@link ApplicationEventPublisher}.
+ *
+ * <ul>
+ *   <li>Mỗi batch chạy trong một transaction: khoá dòng bằng {@code FOR UPDATE SKIP LOCKED}, phát
+ *       event, đánh dấu {@code processed_at}. Nhiều replica chia nhau các dòng, không lấy trùng.
+ *   <li>Listener lỗi -> dòng được thử lại sau backoff; quá {@code max-attempts} thì bỏ (giữ
+ *       last_error). Giao ít nhất một lần: replica chết giữa batch thì batch được phát lại.
+ *   <li>Thứ tự chỉ đảm bảo trong một replica; event của cùng order có thể được hai replica phát
+ *       gần như đồng thời.
+ * </ul>
+ */
+@Slf4j
+@Service
+public class OrderOutboxRelay {
+
+  private static final int MAX_ERROR_LENGTH = 1000;
+
+  private final OrderOutboxRepository outboxRepo;
+  private final OrderOutboxCodec codec;
+  private final ApplicationEventPublisher publisher;
+  private final TransactionTemplate tx;
+  private final OutboxProperties props;
+  private final MeterRegistry registry;
+  private final Timer lag;
+
+  private final Semaphore wake = new Semaphore(0);
+  private volatile boolean running;
+  private Thread poller;
+
+  public OrderOutboxRelay(
+      OrderOutboxRepository outboxRepo,
+      OrderOutboxCodec codec,
+      ApplicationEventPublisher publisher,
+      PlatformTransactionManager transactionManager,
+      OutboxProperties props,
+      MeterRegistry registry) {
+    this.outboxRepo = outboxRepo;
+    this.codec = codec;
+    this.publisher = publisher;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.props = props;
+    this.registry = registry;
+    this.lag =
+        Timer.builder("outbox.relay.lag")
+            .description("Time from outbox write to successful fan-out")
+            .publishPercentileHistogram()
+            .register(registry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    running = true;
+    poller = Thread.ofPlatform().name("order-outbox-relay").daemon().start(this::pollLoop);
+    log.info("Order outbox relay started (batch {})", props.getBatchSize());
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (poller != null) poller.interrupt();
+  }
+
+  /** Gọi sau commit của transaction vừa ghi outbox. */
+  void wakeUp() {
+    wake.release();
+  }
+
+  private void pollLoop() {
+    while (running) {
+      try {
+        if (relayBatch() < props.getBatchSize()) {
+          wake.tryAcquire(props.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+          wake.drainPermits();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception ex) {
+        if (!running) return;
+        log.warn("Order outbox relay failed: {}", ex.getMessage());
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /** @return số dòng đã khoá (kể cả dòng lỗi) */
+  int relayBatch() {
+    Integer n =
+        tx.execute(
+            status -> {
+              LocalDateTime now = LocalDateTime.now();
+              List<OrderOutboxEntity> rows = outboxRepo.lockPending(now, props.getBatchSize());
+              for (OrderOutboxEntity row : rows) deliver(row, now);
+              return rows.size();
+            });
+    return n != null ? n : 0;
+  }
+
+  private void deliver(OrderOutboxEntity row, LocalDateTime now) {
+    try {
+      publisher.publishEvent(codec.decode(row.getEventType(), row.getPayload()));
+      row.setProcessedAt(now);
+      lag.record(Duration.between(row.getCreatedAt(), LocalDateTime.now()));
+      relayed(row.getEventType(), "success");
+    } catch (Exception ex) {
+      int attempts = row.getAttempts() + 1;
+      row.setAttempts(attempts);
+      String error = String.valueOf(ex.getMessage());
+      row.setLastError(error.substring(0, Math.min(error.length(), MAX_ERROR_LENGTH)));
+      if (attempts >= props.getMaxAttempts()) {
+        row.setProcessedAt(now);
+        relayed(row.getEventType(), "dropped");
+        log.error(
+            "Dropping outbox event {} ({}) for order {} after {} attempts",
+            row.getId(),
+            row.getEventType(),
+            row.getAggregateId(),
+            attempts,
+            ex);
+      } else {
+        row.setAvailableAt(now.plus(Duration.ofMillis(backoffMs(attempts))));
+        relayed(row.getEventType(), "retry");
+        log.warn(
+            "Outbox event {} ({}) for order {} failed, attempt {}: {}",
+            row.getId(),
+            row.getEventType(),
+            row.getAggregateId(),
+            attempts,
+            ex.getMessage());
+      }
+    }
+  }
+
+  private long backoffMs(int attempts) {
+    long base = props.getRetryBaseMs() << Math.min(attempts - 1, 16);
+    double jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+    return Math.min(props.getRetryMaxMs(), (long) (base * jitter));
+  }
+
+  private void relayed(String type, String result) {
+    Counter.builder("outbox.relay.events")
+        .tag("type", type)
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+
+  /** Xoá dòng đã xử lý quá retention. */
+  @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:600000}")
+  public void purgeProcessed() {
+    if (!running) return;
+    try {
+      LocalDateTime before = LocalDateTime.now().minusHours(props.getRetentionHours());
+      Integer deleted = tx.execute(status -> outboxRepo.deleteProcessedBefore(before));
+      if (deleted != null && deleted > 0) log.info("Purged {} processed outbox events", deleted);
+    } catch (Exception ex) {
+      log.warn("Outbox purge failed: {}", ex.getMessage());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.pbl6.order.service.payment;
+
+import com.pbl6.order.config.PaymentLinkProperties;
+import com.pbl6.order.dto.payment.PaymentResponse;
+import com.pbl6.order.entity.OrderEntity;
+import com.pbl6.order.entity.PaymentLinkStatus;
+import com.pbl6.order.repository.OrderRepository;
+import com.pbl6.order.service.OrderService;
+import com.pbl6.order.service.PaymentClientService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Xử lý order ONLINE kẹt ở PENDING_PAYMENT với link PENDING (payment-service timeout / lỗi 5xx
+ * lúc tạo order, hoặc replica chết giữa chừng).
+ *
+ * <p>Mỗi lần quét gọi lại payment-service cho từng order (idempotent theo orderCode: link đã có
+ * thì trả lại link đó): có link thì ghi CREATED; bị từ chối, hoặc vẫn lỗi khi order đã quá {@code
+ * payment.link-sweep.max-age-seconds}, thì huỷ order. Cập nhật đều có điều kiện trên trạng thái
+ * nên nhiều replica cùng quét không ghi đè nhau.
+ */
+@Slf4j
+@Component
+public class PaymentLinkSweeper {
+
+  private final OrderRepository orderRepo;
+  private final PaymentClientService paymentClient;
+  private final OrderService orderService;
+  private final TransactionTemplate transactionTemplate;
+  private final PaymentLinkProperties props;
+  private final MeterRegistry registry;
+
+  public PaymentLinkSweeper(
+      OrderRepository orderRepo,
+      PaymentClientService paymentClient,
+      OrderService orderService,
+      TransactionTemplate transactionTemplate,
+      PaymentLinkProperties props,
+      MeterRegistry registry) {
+    this.orderRepo = orderRepo;
+    this.paymentClient = paymentClient;
+    this.orderService = orderService;
+    this.transactionTemplate = transactionTemplate;
+    this.props = props;
+    this.registry = registry;
+  }
+
+  @Scheduled(fixedDelayString = "${payment.link-sweep.interval-ms:30000}")
+  public void sweep() {
+    if (!props.isEnabled()) return;
+    LocalDateTime now = LocalDateTime.now();
+    List<OrderEntity> orders;
+    try {
+      orders =
+          orderRepo.findPendingPaymentLinks(
+              now.minusSeconds(props.getMinAgeSeconds()), PageRequest.of(0, props.getBatchSize()));
+    } catch (Exception ex) {
+      log.warn("Payment link sweep failed: {}", ex.getMessage());
+      return;
+    }
+    for (OrderEntity order : orders) {
+      try {
+        retry(order, now);
+      } catch (Exception ex) {
+        log.warn("Payment link sweep of order {} failed: {}", order.getId(), ex.getMessage());
+      }
+    }
+  }
+
+  private void retry(OrderEntity order, LocalDateTime now) {
+    PaymentResponse payment = null;
+    Exception error = null;
+    try {
+      payment =
+          paymentClient
+              .createPaymentLink(order.getOrderCode(), order.getTotalAmount().longValue())
+              .block();
+    } catch (Exception ex) {
+      error = ex;
+    }
+    if (payment != null) {
+      transactionTemplate.executeWithoutResult(
+          tx -> orderRepo.updatePaymentLinkStatus(order.getId(), PaymentLinkStatus.CREATED));
+      swept("created");
+      log.info("Payment link of order {} created by sweeper", order.getId());
+      return;
+    }
+    boolean expired = order.getCreatedAt().isBefore(now.minusSeconds(props.getMaxAgeSeconds()));
+    if (!PaymentClientService.isRejected(error) && !expired) {
+      swept("retry_later");
+      return;
+    }
+    String cause = error != null ? error.getMessage() : "empty response";
+    long ageSeconds = Duration.between(order.getCreatedAt(), now).toSeconds();
+    // false: order đã rời PENDING_PAYMENT (vd. vừa thanh toán) trong lúc quét
+    if (!orderService.cancelUnpaidOrder(
+        order.getId(),
+        order.getCreatorId(),
+        "No payment link after " + ageSeconds + " s: " + cause)) {
+      return;
+    }
+    swept("cancelled");
+    log.warn(
+        "Order {} cancelled: no payment link after {} s ({})", order.getId(), ageSeconds, cause);
+  }
+
+  private void swept(String result) {
+    Counter.builder("order.payment_link.sweep")
+        .description("Pending payment links handled by the sweeper, by result")
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+}
@@ -0,0 +1,105 @@
+package com.pbl6.order.service.pricing;
+
+import com.pbl6.order.entity.PackageSize;
+import com.pbl6.order.entity.ShippingConfig;
+import com.pbl6.order.entity.SizeConfig;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Bản chụp bất biến của {@code shipping_config} + {@code size_config}; tính phí không chạm DB.
+ *
+ * <p>Phụ phí theo size được giữ trong mảng theo {@link PackageSize#ordinal()} (tương đương {@link
+ * EnumMap} nhưng không unbox), nên {@link #shippingCost} là hàm thuần, không cấp phát. {@link
+ * #fingerprint()} được tính từ nội dung nên mọi replica nạp cùng config có cùng giá trị.
+ */
+public final class PricingSnapshot {
+
+  private static final long NO_SIZE = Long.MIN_VALUE;
+
+  private final double baseKm;
+  private final long baseKmFee;
+  private final long ratePerKm;
+  private final long ratePerKg;
+  private final long minFee;
+  private final double fuelSurchargePercent;
+  private final double shipperCommissionRate;
+  private final long[] sizeSurcharge;
+  private final long fingerprint;
+  private final long loadedAtMs;
+
+  private PricingSnapshot(ShippingConfig cfg, long[] sizeSurcharge, long loadedAtMs) {
+    this.baseKm = cfg.getBaseKm();
+    this.baseKmFee = cfg.getBaseKmFee();
+    this.ratePerKm = cfg.getRatePerKm();
+    this.ratePerKg = cfg.getRatePerKg();
+    this.minFee = cfg.getMinFee();
+    this.fuelSurchargePercent =
+        cfg.getFuelSurchargePercent() != null ? cfg.getFuelSurchargePercent() : 0;
+    this.shipperCommissionRate = cfg.getShipperCommissionRate();
+    this.sizeSurcharge = sizeSurcharge;
+    this.loadedAtMs = loadedAtMs;
+    long h = Double.hashCode(baseKm);
+    h = 31 * h + baseKmFee;
+    h = 31 * h + ratePerKm;
+    h = 31 * h + ratePerKg;
+    h = 31 * h + minFee;
+    h = 31 * h + Double.hashCode(fuelSurchargePercent);
+    h = 31 * h + Double.hashCode(shipperCommissionRate);
+    this.fingerprint = 31 * h + Arrays.hashCode(sizeSurcharge);
+  }
+
+  public static PricingSnapshot of(ShippingConfig cfg, Collection<SizeConfig> sizes) {
+    Map<PackageSize, Long> bySize = new EnumMap<>(PackageSize.class);
+    for (SizeConfig s : sizes) bySize.put(s.getSizeCode(), s.getSurcharge());
+    long[] surcharge = new long[PackageSize.values().length];
+    Arrays.fill(surcharge, NO_SIZE);
+    bySize.forEach((size, fee) -> surcharge[size.ordinal()] = fee);
+    return new PricingSnapshot(cfg, surcharge, System.currentTimeMillis());
+  }
+
+  /**
+   * Phí giao một gói (chưa làm tròn / áp phí tối thiểu): phí quãng đường + phụ phí size + phí cân
+   * nặng, nhân phụ phí nhiên liệu nếu có.
+   */
+  public double shippingCost(double distanceKm, double actualWeightKg, PackageSize size) {
+    long sizeFee = sizeSurcharge[size.ordinal()];
+    if (sizeFee == NO_SIZE) {
+      throw new IllegalStateException("Size config not found for size: " + size);
+    }
+    // 1) distance fee
+    double extraKm = Math.max(0, distanceKm - baseKm);
+    long distanceFee = Math.round(baseKmFee + extraKm * ratePerKm);
+
+    // 2) weight fee
+    long weightFee = Math.round(actualWeightKg * ratePerKg);
+
+    // 3) subtotal
+    double subtotal = distanceFee + sizeFee + weightFee;
+
+    // 4) fuel surcharge
+    if (fuelSurchargePercent > 0) {
+      subtotal = subtotal * (1 + fuelSurchargePercent / 100.0);
+    }
+    return subtotal;
+  }
+
+  public long minFee() {
+    return minFee;
+  }
+
+  public double shipperCommissionRate() {
+    return shipperCommissionRate;
+  }
+
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  public long loadedAtMs() {
+    return loadedAtMs;
+  }
+}
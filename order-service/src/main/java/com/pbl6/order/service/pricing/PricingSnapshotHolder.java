@@ -0,0 +1,152 @@
+package com.pbl6.order.service.pricing;
+
+import com.pbl6.order.entity.ShippingConfig;
+import com.pbl6.order.repository.ShippingConfigRepository;
+import com.pbl6.order.repository.SizeConfigRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.pbl6.order.constant.RedisKeyConstants.PRICING_CONFIG_CHANNEL;
+
+/**
+ * Giữ {@link PricingSnapshot} hiện hành; đọc lock-free qua field volatile, nạp lại thì tạo bản
+ * chụp mới rồi thay nguyên khối.
+ *
+ * <p>Admin đổi config xong gọi {@link #reloadAndBroadcast()}: instance nhận request nạp lại và
+ * publish lên {@code pricing:config:changed} để các replica khác nạp theo. Nạp lại định kỳ chỉ là
+ * lưới an toàn khi mất message pub/sub hoặc config bị sửa thẳng trong DB.
+ */
+@Slf4j
+@Component
+public class PricingSnapshotHolder implements MessageListener {
+
+  private static final long SHIPPING_CONFIG_ID = 1L;
+
+  private final ShippingConfigRepository shippingConfigRepo;
+  private final SizeConfigRepository sizeConfigRepo;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisMessageListenerContainer container;
+  private final MeterRegistry registry;
+  private volatile PricingSnapshot current;
+
+  public PricingSnapshotHolder(
+      ShippingConfigRepository shippingConfigRepo,
+      SizeConfigRepository sizeConfigRepo,
+      RedisTemplate<String, String> redisTemplate,
+      RedisMessageListenerContainer container,
+      MeterRegistry registry) {
+    this.shippingConfigRepo = shippingConfigRepo;
+    this.sizeConfigRepo = sizeConfigRepo;
+    this.redisTemplate = redisTemplate;
+    this.container = container;
+    this.registry = registry;
+    Gauge.builder(
+            "pricing.snapshot.age", this, h -> h.current != null ? h.ageSeconds() : Double.NaN)
+        .description("Seconds since the pricing snapshot was loaded")
+        .baseUnit("seconds")
+        .register(registry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    // subscribe trước khi nạp để không lỡ thay đổi xảy ra trong lúc nạp
+    container.addMessageListener(this, new ChannelTopic(PRICING_CONFIG_CHANNEL));
+    try {
+      reload();
+    } catch (Exception ex) {
+      // current() sẽ thử nạp lại ở request đầu tiên
+      log.warn("Initial pricing snapshot load failed: {}", ex.getMessage());
+    }
+  }
+
+  /** Bản chụp hiện hành; nạp đồng bộ nếu chưa từng nạp được. */
+  public PricingSnapshot current() {
+    PricingSnapshot s = current;
+    return s != null ? s : reload();
+  }
+
+  /** Đọc lại config từ DB và thay bản chụp. */
+  public synchronized PricingSnapshot reload() {
+    try {
+      ShippingConfig cfg =
+          shippingConfigRepo
+              .findById(SHIPPING_CONFIG_ID)
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          "Shipping config (id=" + SHIPPING_CONFIG_ID + ") not found"));
+      PricingSnapshot next = PricingSnapshot.of(cfg, sizeConfigRepo.findAll());
+      PricingSnapshot prev = current;
+      current = next;
+      reloaded("success");
+      if (prev == null || prev.fingerprint() != next.fingerprint()) {
+        log.info("Pricing snapshot loaded, fingerprint {}", Long.toHexString(next.fingerprint()));
+      }
+      return next;
+    } catch (RuntimeException ex) {
+      reloaded("failure");
+      throw ex;
+    }
+  }
+
+  /** Nạp lại trên instance này rồi báo các replica khác. */
+  public PricingSnapshot reloadAndBroadcast() {
+    PricingSnapshot s = reload();
+    try {
+      redisTemplate.convertAndSend(PRICING_CONFIG_CHANNEL, Long.toHexString(s.fingerprint()));
+    } catch (Exception ex) {
+      // replica khác vẫn nhận được ở lần nạp định kỳ
+      log.warn("Failed to broadcast pricing config change: {}", ex.getMessage());
+    }
+    return s;
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    PricingSnapshot s = current;
+    String fingerprint = new String(message.getBody(), StandardCharsets.UTF_8);
+    // message do chính instance này gửi (hoặc đã nạp rồi) thì bỏ qua
+    if (s != null && Long.toHexString(s.fingerprint()).equals(fingerprint)) return;
+    try {
+      reload();
+    } catch (Exception ex) {
+      log.warn("Pricing snapshot reload failed: {}", ex.getMessage());
+    }
+  }
+
+  @Scheduled(
+      initialDelayString = "${pricing.refresh-interval-ms:300000}",
+      fixedDelayString = "${pricing.refresh-interval-ms:300000}")
+  public void refresh() {
+    try {
+      reload();
+    } catch (Exception ex) {
+      log.warn("Periodic pricing snapshot reload failed: {}", ex.getMessage());
+    }
+  }
+
+  private double ageSeconds() {
+    return (System.currentTimeMillis() - current.loadedAtMs()) / 1000.0;
+  }
+
+  private void reloaded(String result) {
+    Counter.builder("pricing.snapshot.reloads")
+        .description("Pricing snapshot reloads by result")
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+}
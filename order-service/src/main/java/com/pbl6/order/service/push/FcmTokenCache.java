@@ -0,0 +1,131 @@
+package com.pbl6.order.service.push;
+
+import com.pbl6.order.config.PushProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.pbl6.order.constant.RedisKeyConstants.FCM_TOKEN_INVALIDATION_CHANNEL;
+
+/**
+ * Near-cache cho FCM token (user:{id}:fcm_token / driver:{id}:fcm_token): LRU có giới hạn + TTL.
+ *
+ * <p>auth-service publish key lên {@code fcm:token:invalidate} mỗi khi token đổi / bị xoá, nên
+ * entry bị bỏ ngay; TTL chỉ là lưới an toàn khi mất message pub/sub. Cache cả kết quả "không có
+ * token" để user chưa đăng ký FCM không tốn GET mỗi lần.
+ */
+@Slf4j
+@Component
+public class FcmTokenCache implements MessageListener {
+
+  private static final String NO_TOKEN = "";
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisMessageListenerContainer container;
+  private final PushProperties.TokenCache props;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter invalidations;
+
+  /** Tăng mỗi lần invalidate; GET bắt đầu trước một lần invalidate thì không được ghi vào cache. */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final LinkedHashMap<String, Entry> entries;
+
+  public FcmTokenCache(
+      RedisTemplate<String, String> redisTemplate,
+      RedisMessageListenerContainer container,
+      PushProperties pushProperties,
+      MeterRegistry registry) {
+    this.redisTemplate = redisTemplate;
+    this.container = container;
+    this.props = pushProperties.getTokenCache();
+    int maxSize = Math.max(1, props.getMaxSize());
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+          }
+        };
+    this.hits = lookups(registry, "hit");
+    this.misses = lookups(registry, "miss");
+    this.invalidations =
+        Counter.builder("fcm.token.cache.invalidations")
+            .description("FCM token cache entries dropped by pub/sub invalidation")
+            .register(registry);
+    Gauge.builder("fcm.token.cache.size", this, FcmTokenCache::size)
+        .description("Entries in the local FCM token cache")
+        .register(registry);
+  }
+
+  @PostConstruct
+  public void subscribe() {
+    container.addMessageListener(this, new ChannelTopic(FCM_TOKEN_INVALIDATION_CHANNEL));
+  }
+
+  /** Token tại key, hoặc null nếu chưa đăng ký. */
+  public String get(String tokenKey) {
+    if (!props.isEnabled()) return redisTemplate.opsForValue().get(tokenKey);
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      Entry e = entries.get(tokenKey);
+      if (e != null && e.expiresAtMs > now) {
+        hits.increment();
+        return e.token.isEmpty() ? null : e.token;
+      }
+    }
+    misses.increment();
+    long gen = generation.get();
+    String token = redisTemplate.opsForValue().get(tokenKey);
+    synchronized (entries) {
+      if (generation.get() == gen) {
+        entries.put(
+            tokenKey,
+            new Entry(token != null ? token : NO_TOKEN, now + props.getTtlSeconds() * 1000));
+      }
+    }
+    return token;
+  }
+
+  public void invalidate(String tokenKey) {
+    synchronized (entries) {
+      generation.incrementAndGet();
+      entries.remove(tokenKey);
+    }
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    invalidations.increment();
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static Counter lookups(MeterRegistry registry, String result) {
+    return Counter.builder("fcm.token.cache.lookups")
+        .description("FCM token lookups by cache result; hit ratio = hit / (hit + miss)")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private record Entry(String token, long expiresAtMs) {}
+}
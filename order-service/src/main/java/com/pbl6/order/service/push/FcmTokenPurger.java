@@ -0,0 +1,46 @@
+package com.pbl6.order.service.push;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_AVAILABLE_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.FCM_TOKEN_INVALIDATION_CHANNEL;
+
+/** Xoá FCM token mà FCM báo không còn hợp lệ (UNREGISTERED / SENDER_ID_MISMATCH) khỏi Redis. */
+@Slf4j
+@Component
+public class FcmTokenPurger {
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisScript<Long> purgeFcmTokenScript;
+
+  public FcmTokenPurger(
+      RedisTemplate<String, String> redisTemplate,
+      @Qualifier("purgeFcmTokenScript") RedisScript<Long> purgeFcmTokenScript) {
+    this.redisTemplate = redisTemplate;
+    this.purgeFcmTokenScript = purgeFcmTokenScript;
+  }
+
+  public void purge(PushRequest req) {
+    if (req.tokenKey() == null) return;
+    try {
+      Long purged =
+          redisTemplate.execute(
+              purgeFcmTokenScript,
+              List.of(req.tokenKey(), DRIVERS_AVAILABLE_KEY),
+              req.token(),
+              req.availableMember() != null ? req.availableMember() : "");
+      if (purged != null && purged > 0) {
+        log.info("Purged unregistered FCM token at {}", req.tokenKey());
+        redisTemplate.convertAndSend(FCM_TOKEN_INVALIDATION_CHANNEL, req.tokenKey());
+      }
+    } catch (Exception ex) {
+      log.warn("Failed to purge FCM token at {}: {}", req.tokenKey(), ex.getMessage());
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.pbl6.order.service.push;
+
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Gửi batch qua FCM {@code sendEachAsync}: một lời gọi cho cả batch thay vì một HTTPS / token. */
+@Component
+@ConditionalOnProperty(name = "push.transport", havingValue = "firebase", matchIfMissing = true)
+public class FirebasePushTransport implements PushTransport {
+
+  @Override
+  public CompletableFuture<List<PushOutcome>> sendBatch(List<PushRequest> batch) {
+    List<Message> messages = new ArrayList<>(batch.size());
+    for (PushRequest req : batch) {
+      Message.Builder builder =
+          Message.builder()
+              .setToken(req.token())
+              .setNotification(
+                  Notification.builder().setTitle(req.title()).setBody(req.body()).build());
+      if (req.data() != null) builder.putAllData(req.data());
+      messages.add(builder.build());
+    }
+
+    CompletableFuture<List<PushOutcome>> result = new CompletableFuture<>();
+    ApiFutures.addCallback(
+        FirebaseMessaging.getInstance().sendEachAsync(messages),
+        new ApiFutureCallback<BatchResponse>() {
+          @Override
+          public void onSuccess(BatchResponse response) {
+            result.complete(toOutcomes(response));
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            result.completeExceptionally(t);
+          }
+        },
+        Runnable::run);
+    return result;
+  }
+
+  private static List<PushOutcome> toOutcomes(BatchResponse response) {
+    List<PushOutcome> outcomes = new ArrayList<>(response.getResponses().size());
+    for (SendResponse r : response.getResponses()) {
+      if (r.isSuccessful()) {
+        outcomes.add(PushOutcome.ok());
+        continue;
+      }
+      FirebaseMessagingException ex = r.getException();
+      MessagingErrorCode code = ex != null ? ex.getMessagingErrorCode() : null;
+      boolean invalid =
+          code == MessagingErrorCode.UNREGISTERED || code == MessagingErrorCode.SENDER_ID_MISMATCH;
+      outcomes.add(
+          PushOutcome.failed(code != null ? code.name() : String.valueOf(ex), invalid));
+    }
+    return outcomes;
+  }
+}
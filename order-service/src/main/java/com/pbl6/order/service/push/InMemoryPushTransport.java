@@ -0,0 +1,58 @@
+package com.pbl6.order.service.push;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport giả lập cho test / benchmark (push.transport=in-memory): không gọi Firebase, chỉ ghi
+ * lại các batch đã gửi. Token đánh dấu qua {@link #markUnregistered} trả về lỗi token không hợp lệ.
+ */
+@Component
+@ConditionalOnProperty(name = "push.transport", havingValue = "in-memory")
+public class InMemoryPushTransport implements PushTransport {
+
+  private final Queue<List<PushRequest>> batches = new ConcurrentLinkedQueue<>();
+  private final Set<String> unregistered = ConcurrentHashMap.newKeySet();
+  private final AtomicLong sentCount = new AtomicLong();
+
+  @Override
+  public CompletableFuture<List<PushOutcome>> sendBatch(List<PushRequest> batch) {
+    batches.add(List.copyOf(batch));
+    List<PushOutcome> outcomes = new ArrayList<>(batch.size());
+    for (PushRequest req : batch) {
+      outcomes.add(
+          unregistered.contains(req.token())
+              ? PushOutcome.failed("UNREGISTERED", true)
+              : PushOutcome.ok());
+    }
+    sentCount.addAndGet(batch.size());
+    return CompletableFuture.completedFuture(outcomes);
+  }
+
+  public void markUnregistered(String token) {
+    unregistered.add(token);
+  }
+
+  public List<List<PushRequest>> batches() {
+    return List.copyOf(batches);
+  }
+
+  public long sentCount() {
+    return sentCount.get();
+  }
+
+  public void reset() {
+    batches.clear();
+    unregistered.clear();
+    sentCount.set(0);
+  }
+}
@@ -0,0 +1,149 @@
+package com.pbl6.order.service.push;
+
+import com.pbl6.order.config.PushProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gộp các thông báo trạng thái liên tiếp gửi cho cùng một người nhận về cùng một order.
+ *
+ * <p>Thông báo trung gian được giữ trong cửa sổ {@code push.coalesce.window-ms}; thông báo mới hơn
+ * trong cửa sổ thay thế nó nên người nhận chỉ thấy trạng thái cuối. Thông báo kết thúc gửi ngay và
+ * bỏ luôn thông báo trung gian đang chờ; thông báo trung gian đã giao cho notificationExecutor mà
+ * chưa chạy cũng bị bỏ, đang chạy thì thông báo kết thúc chờ nó xong để không tới sau. Chỉ gộp
+ * trong một replica.
+ */
+@Slf4j
+@Component
+public class NotificationCoalescer {
+
+  private final PushProperties.Coalesce props;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService notificationExecutor;
+  private final MeterRegistry registry;
+
+  /** key người nhận + order -> lần gửi mới nhất đang chờ. */
+  private final Map<String, Runnable> pending = new ConcurrentHashMap<>();
+
+  /** key -> lần gửi đã rời cửa sổ, đang chờ / đang chạy trên notificationExecutor. */
+  private final Map<String, Flushed> inFlight = new ConcurrentHashMap<>();
+
+  public NotificationCoalescer(
+      PushProperties pushProperties,
+      @Qualifier("dispatchScheduler") ScheduledExecutorService scheduler,
+      @Qualifier("notificationExecutor") ExecutorService notificationExecutor,
+      MeterRegistry registry) {
+    this.props = pushProperties.getCoalesce();
+    this.scheduler = scheduler;
+    this.notificationExecutor = notificationExecutor;
+    this.registry = registry;
+    Gauge.builder("push.coalesce.pending", pending, Map::size)
+        .description("Status notifications waiting in the coalescing window")
+        .register(registry);
+  }
+
+  /**
+   * @param key người nhận + order, vd. {@code user:{id}:fcm_token|{orderId}}
+   * @param recipient tag metric ({@code user} / {@code driver})
+   * @param terminal true -> gửi ngay trên thread gọi, huỷ thông báo đang chờ của key
+   * @param send đọc token và gửi push; chạy trên notificationExecutor khi hết cửa sổ
+   */
+  public void submit(String key, String recipient, boolean terminal, Runnable send) {
+    if (!props.isEnabled() || props.getWindowMs() <= 0) {
+      send.run();
+      return;
+    }
+    if (terminal) {
+      if (pending.remove(key) != null) suppressed(recipient);
+      // flush chuyển pending -> inFlight trong compute của key nên tới đây đã thấy lần gửi đó
+      Flushed flushed = inFlight.remove(key);
+      if (flushed != null && flushed.cancel()) suppressed(recipient);
+      send.run();
+      return;
+    }
+    boolean[] first = {false};
+    pending.compute(
+        key,
+        (k, prev) -> {
+          if (prev != null) suppressed(recipient);
+          else first[0] = true;
+          return send;
+        });
+    if (first[0]) {
+      scheduler.schedule(() -> flush(key), props.getWindowMs(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flush(String key) {
+    Flushed[] flushed = {null};
+    pending.computeIfPresent(
+        key,
+        (k, send) -> {
+          flushed[0] = new Flushed(k, send);
+          inFlight.put(k, flushed[0]);
+          return null;
+        });
+    if (flushed[0] == null) return;
+    try {
+      notificationExecutor.execute(flushed[0]);
+    } catch (RejectedExecutionException ex) {
+      inFlight.remove(key, flushed[0]);
+      log.warn("Notification executor rejected coalesced push {}: {}", key, ex.getMessage());
+    }
+  }
+
+  /** Lần gửi trung gian đã rời cửa sổ; chạy và huỷ loại trừ nhau. */
+  private final class Flushed implements Runnable {
+    private final String key;
+    private final Runnable send;
+    private boolean done;
+
+    Flushed(String key, Runnable send) {
+      this.key = key;
+      this.send = send;
+    }
+
+    @Override
+    public void run() {
+      try {
+        synchronized (this) {
+          if (done) return;
+          done = true;
+          send.run();
+        }
+      } finally {
+        inFlight.remove(key, this);
+      }
+    }
+
+    /**
+     * Huỷ nếu chưa chạy; đang chạy thì chờ xong (push đã vào hàng đợi trước thông báo kết thúc).
+     *
+     * @return true nếu đã huỷ được
+     */
+    synchronized boolean cancel() {
+      if (done) return false;
+      done = true;
+      return true;
+    }
+  }
+
+  private void suppressed(String recipient) {
+    Counter.builder("push.coalesce.suppressed")
+        .description("Status notifications replaced by a newer one before being sent")
+        .tag("recipient", recipient)
+        .register(registry)
+        .increment();
+  }
+}
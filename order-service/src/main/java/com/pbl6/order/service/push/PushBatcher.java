@@ -0,0 +1,177 @@
+package com.pbl6.order.service.push;
+
+import com.pbl6.order.config.PushProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gom push vào batch rồi gửi qua {@link PushTransport}.
+ *
+ * <p>Push đầu tiên vào hàng đợi hẹn một lần flush sau {@code push.batch-window-ms}; mọi push tới
+ * trong cửa sổ đó (cả wave dispatch lẫn push khác) đi chung một lời gọi sendEach. Khi hàng đợi đủ
+ * {@code push.max-batch-size} thì flush ngay. Token bị FCM báo không hợp lệ được xoá khỏi Redis.
+ */
+@Slf4j
+@Service
+public class PushBatcher {
+
+  private static final String SUCCESS = "success";
+  private static final String FAILURE = "failure";
+  private static final String INVALID_TOKEN = "invalid_token";
+
+  private final PushTransport transport;
+  private final PushProperties props;
+  private final FcmTokenPurger tokenPurger;
+  private final ExecutorService notificationExecutor;
+  private final ScheduledExecutorService dispatchScheduler;
+
+  private final MeterRegistry registry;
+  private final Timer batchLatency;
+
+  private final Queue<PushRequest> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingSize = new AtomicInteger();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  public PushBatcher(
+      PushTransport transport,
+      PushProperties props,
+      FcmTokenPurger tokenPurger,
+      @Qualifier("notificationExecutor") ExecutorService notificationExecutor,
+      @Qualifier("dispatchScheduler") ScheduledExecutorService dispatchScheduler,
+      MeterRegistry registry) {
+    this.transport = transport;
+    this.props = props;
+    this.tokenPurger = tokenPurger;
+    this.notificationExecutor = notificationExecutor;
+    this.dispatchScheduler = dispatchScheduler;
+    this.registry = registry;
+    this.batchLatency =
+        Timer.builder("push.batch.latency")
+            .description("Latency of one push batch send (FCM sendEach)")
+            .tag("transport", transport.getClass().getSimpleName())
+            .publishPercentileHistogram()
+            .register(registry);
+    Gauge.builder("push.pending", pendingSize, AtomicInteger::get)
+        .description("Pushes waiting for the next batch")
+        .register(registry);
+  }
+
+  public void enqueue(PushRequest request) {
+    enqueueAll(List.of(request));
+  }
+
+  /** Đưa các push vào hàng đợi; không block, việc gửi diễn ra ở lần flush kế tiếp. */
+  public void enqueueAll(Collection<PushRequest> requests) {
+    if (requests.isEmpty()) return;
+    pending.addAll(requests);
+    if (pendingSize.addAndGet(requests.size()) >= batchLimit()) {
+      flush();
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      dispatchScheduler.schedule(
+          this::flushOnTimer, props.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flushOnTimer() {
+    // reset trước khi drain: push tới sau thời điểm này sẽ tự hẹn lần flush mới
+    flushScheduled.set(false);
+    flush();
+  }
+
+  /** Gửi toàn bộ push đang chờ, chia thành các batch tối đa max-batch-size. */
+  @PreDestroy
+  public void flush() {
+    int limit = batchLimit();
+    while (true) {
+      List<PushRequest> batch = drain(limit);
+      if (batch.isEmpty()) return;
+      send(batch);
+      if (batch.size() < limit) return;
+    }
+  }
+
+  private List<PushRequest> drain(int limit) {
+    List<PushRequest> batch = new ArrayList<>(Math.min(limit, Math.max(pendingSize.get(), 1)));
+    PushRequest req;
+    while (batch.size() < limit && (req = pending.poll()) != null) {
+      batch.add(req);
+    }
+    pendingSize.addAndGet(-batch.size());
+    return batch;
+  }
+
+  private void send(List<PushRequest> batch) {
+    Timer.Sample sample = Timer.start(registry);
+    try {
+      transport
+          .sendBatch(batch)
+          .whenComplete(
+              (outcomes, ex) -> {
+                sample.stop(batchLatency);
+                if (ex != null) {
+                  sent(FAILURE, batch.size());
+                  log.warn("Push batch of {} failed: {}", batch.size(), ex.getMessage());
+                  return;
+                }
+                // purge token gọi Redis: chạy trên notificationExecutor, executor đầy thì chạy luôn
+                // tại đây thay vì bỏ kết quả
+                try {
+                  notificationExecutor.execute(() -> handleOutcomes(batch, outcomes));
+                } catch (RejectedExecutionException rejected) {
+                  handleOutcomes(batch, outcomes);
+                }
+              });
+    } catch (Exception ex) {
+      sent(FAILURE, batch.size());
+      log.warn("Push batch of {} could not be sent: {}", batch.size(), ex.getMessage());
+    }
+  }
+
+  private void handleOutcomes(List<PushRequest> batch, List<PushOutcome> outcomes) {
+    int failed = 0;
+    int invalid = 0;
+    for (int i = 0; i < outcomes.size() && i < batch.size(); i++) {
+      PushOutcome outcome = outcomes.get(i);
+      if (outcome.success()) continue;
+      failed++;
+      if (outcome.tokenInvalid()) {
+        invalid++;
+        tokenPurger.purge(batch.get(i));
+      }
+    }
+    sent(SUCCESS, batch.size() - failed);
+    sent(FAILURE, failed - invalid);
+    sent(INVALID_TOKEN, invalid);
+    if (failed > 0) {
+      log.debug("Push batch sent: {} ok, {} failed", batch.size() - failed, failed);
+    }
+  }
+
+  private void sent(String result, int count) {
+    if (count > 0) {
+      Counter.builder("push.sent").tag("result", result).register(registry).increment(count);
+    }
+  }
+
+  private int batchLimit() {
+    return Math.max(1, Math.min(props.getMaxBatchSize(), 500));
+  }
+}
@@ -0,0 +1,17 @@
+package com.pbl6.order.service.push;
+
+/**
+ * Kết quả gửi cho một {@link PushRequest}, cùng thứ tự với batch đầu vào.
+ *
+ * @param tokenInvalid true nếu FCM báo token không còn hợp lệ (cần xoá khỏi Redis)
+ */
+public record PushOutcome(boolean success, boolean tokenInvalid, String error) {
+
+  public static PushOutcome ok() {
+    return new PushOutcome(true, false, null);
+  }
+
+  public static PushOutcome failed(String error, boolean tokenInvalid) {
+    return new PushOutcome(false, tokenInvalid, error);
+  }
+}
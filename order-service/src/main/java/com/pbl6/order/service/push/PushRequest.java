@@ -0,0 +1,18 @@
+package com.pbl6.order.service.push;
+
+import java.util.Map;
+
+/**
+ * Một push cần gửi tới một FCM token.
+ *
+ * @param token FCM token đích
+ * @param tokenKey key Redis đang lưu token (để xoá khi token chết), có thể null
+ * @param availableMember member trong drivers:available cần gỡ khi token chết (driver), có thể null
+ */
+public record PushRequest(
+    String token,
+    String tokenKey,
+    String availableMember,
+    String title,
+    String body,
+    Map<String, String> data) {}
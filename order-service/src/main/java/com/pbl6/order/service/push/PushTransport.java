@@ -0,0 +1,15 @@
+package com.pbl6.order.service.push;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Transport gửi một batch push. Implementation phải non-blocking. */
+public interface PushTransport {
+
+  /**
+   * Gửi batch (tối đa {@code push.max-batch-size} phần tử).
+   *
+   * @return kết quả từng request, cùng thứ tự với {@code batch}
+   */
+  CompletableFuture<List<PushOutcome>> sendBatch(List<PushRequest> batch);
+}
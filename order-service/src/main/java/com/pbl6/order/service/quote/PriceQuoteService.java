@@ -0,0 +1,246 @@
+package com.pbl6.order.service.quote;
+
+import com.pbl6.order.config.QuoteProperties;
+import com.pbl6.order.dto.AddressDto;
+import com.pbl6.order.dto.CreateOrderRequest;
+import com.pbl6.order.dto.PackageDto;
+import com.pbl6.order.dto.PriceAndRouteDto;
+import com.pbl6.order.service.pricing.PricingSnapshot;
+import com.pbl6.order.service.pricing.PricingSnapshotHolder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static com.pbl6.order.constant.RedisKeyConstants.PRICE_QUOTE_KEY;
+
+/**
+ * Báo giá ngắn hạn cho /price-route: kết quả (thứ tự giao, giá từng gói) được cache trong Redis,
+ * client nhận lại quote id và gửi kèm khi tạo order để không phải gọi Distance Matrix + giải lộ
+ * trình + tính giá lần thứ hai.
+ *
+ * <p>Quote id = {@code nonce.signature}, signature là HMAC-SHA256 của nonce và hash đầu vào (toạ độ
+ * lấy hàng, toạ độ / cân nặng / kích thước từng gói). Id giả hoặc request đã bị sửa bị loại ngay
+ * mà không cần đọc Redis; hash được lưu cùng báo giá và so lại khi dùng. Báo giá cũng ghi
+ * fingerprint của {@link PricingSnapshot} đã dùng để tính giá, đổi config là báo giá cũ hết hiệu
+ * lực.
+ */
+@Slf4j
+@Service
+public class PriceQuoteService {
+
+  /** Header trả quote id trong response của /price-route. */
+  public static final String QUOTE_HEADER = "X-Quote-Id";
+
+  private static final int NONCE_BYTES = 16;
+  private static final int SIGNATURE_BYTES = 16;
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final QuoteProperties props;
+  private final PricingSnapshotHolder pricingSnapshots;
+  private final SecureRandom random = new SecureRandom();
+  private final ThreadLocal<Mac> mac;
+  private final MeterRegistry registry;
+  private final Counter issued;
+
+  public PriceQuoteService(
+      RedisTemplate<String, String> redisTemplate,
+      QuoteProperties props,
+      PricingSnapshotHolder pricingSnapshots,
+      MeterRegistry registry) {
+    this.redisTemplate = redisTemplate;
+    this.props = props;
+    this.pricingSnapshots = pricingSnapshots;
+    this.registry = registry;
+    if (props.isEnabled() && (props.getSecret() == null || props.getSecret().isBlank())) {
+      throw new IllegalStateException("quote.secret must be set when quotes are enabled");
+    }
+    byte[] key =
+        props.getSecret() != null ? props.getSecret().getBytes(StandardCharsets.UTF_8) : null;
+    this.mac =
+        ThreadLocal.withInitial(
+            () -> {
+              try {
+                Mac m = Mac.getInstance("HmacSHA256");
+                m.init(new SecretKeySpec(key, "HmacSHA256"));
+                return m;
+              } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 unavailable", e);
+              }
+            });
+    this.issued =
+        Counter.builder("price.quote.issued")
+            .description("Quotes issued by /price-route")
+            .register(registry);
+  }
+
+  /**
+   * Lưu báo giá cho {@code req} và trả về quote id, hoặc null nếu tắt / Redis lỗi (client vẫn dùng
+   * được kết quả, chỉ là createOrder sẽ tính lại).
+   *
+   * @param pricing snapshot đã dùng để tính {@code routes}; config đổi giữa lúc tính và lúc lưu thì
+   *     báo giá mang fingerprint cũ và bị loại khi dùng
+   */
+  public String issue(
+      CreateOrderRequest req, List<PriceAndRouteDto> routes, PricingSnapshot pricing) {
+    if (!props.isEnabled() || routes.isEmpty()) return null;
+    byte[] nonce = new byte[NONCE_BYTES];
+    random.nextBytes(nonce);
+    String nonceStr = Base64.getUrlEncoder().withoutPadding().encodeToString(nonce);
+    String hash = inputHash(req);
+    try {
+      redisTemplate
+          .opsForValue()
+          .set(
+              PRICE_QUOTE_KEY.formatted(nonceStr),
+              hash + "\n" + version(pricing) + "\n" + encode(routes),
+              Duration.ofSeconds(props.getTtlSeconds()));
+    } catch (Exception ex) {
+      log.warn("Failed to store price quote: {}", ex.getMessage());
+      return null;
+    }
+    issued.increment();
+    return nonceStr + "." + sign(nonceStr, hash);
+  }
+
+  /**
+   * Báo giá đã lưu cho {@code quoteId} nếu còn hạn và đầu vào của {@code req} trùng với lúc báo
+   * giá; ngược lại null và caller tự tính lại.
+   */
+  public List<PriceAndRouteDto> redeem(String quoteId, CreateOrderRequest req) {
+    if (!props.isEnabled() || quoteId == null || quoteId.isBlank()) return null;
+    int dot = quoteId.indexOf('.');
+    if (dot <= 0) return miss("invalid");
+    String nonceStr = quoteId.substring(0, dot);
+    String hash = inputHash(req);
+    byte[] expected = sign(nonceStr, hash).getBytes(StandardCharsets.US_ASCII);
+    byte[] actual = quoteId.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+    if (!MessageDigest.isEqual(expected, actual)) {
+      // id giả hoặc request khác lúc báo giá (đổi địa chỉ, cân nặng...)
+      return miss("mismatch");
+    }
+
+    String value;
+    try {
+      value = redisTemplate.opsForValue().get(PRICE_QUOTE_KEY.formatted(nonceStr));
+    } catch (Exception ex) {
+      log.warn("Failed to load price quote: {}", ex.getMessage());
+      return miss("error");
+    }
+    if (value == null) return miss("expired");
+    String[] parts = value.split("\n", 3);
+    if (parts.length != 3 || !parts[0].equals(hash)) return miss("mismatch");
+    // shipping config đã đổi sau khi báo giá
+    if (!parts[1].equals(version(pricingSnapshots.current()))) return miss("stale");
+    try {
+      List<PriceAndRouteDto> routes = decode(parts[2], req);
+      redeemed("hit");
+      return routes;
+    } catch (RuntimeException ex) {
+      log.warn("Corrupt price quote {}: {}", nonceStr, ex.getMessage());
+      return miss("invalid");
+    }
+  }
+
+  private static String version(PricingSnapshot pricing) {
+    return Long.toHexString(pricing.fingerprint());
+  }
+
+  private List<PriceAndRouteDto> miss(String result) {
+    redeemed(result);
+    return null;
+  }
+
+  private void redeemed(String result) {
+    Counter.builder("price.quote.redeem")
+        .description("Quote lookups from createOrder by result")
+        .tag("result", result)
+        .register(registry)
+        .increment();
+  }
+
+  /** SHA-256 của các trường ảnh hưởng tới lộ trình và giá, theo thứ tự gói trong request. */
+  static String inputHash(CreateOrderRequest req) {
+    StringBuilder sb = new StringBuilder(64 + req.packages().size() * 64);
+    appendPoint(sb, req.pickupAddress());
+    for (PackageDto pkg : req.packages()) {
+      sb.append('|');
+      appendPoint(sb, pkg.receiverAddress());
+      sb.append(',').append(pkg.weightKg()).append(',').append(pkg.size());
+    }
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("SHA-256 unavailable", e);
+    }
+  }
+
+  private static void appendPoint(StringBuilder sb, AddressDto addr) {
+    sb.append(addr.latitude()).append(',').append(addr.longitude());
+  }
+
+  private String sign(String nonce, String hash) {
+    Mac m = mac.get();
+    byte[] sig = m.doFinal((nonce + "." + hash).getBytes(StandardCharsets.UTF_8));
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(Arrays.copyOf(sig, SIGNATURE_BYTES));
+  }
+
+  /**
+   * Mỗi điểm giao một dòng {@code routeIndex,packageIndex,price,distance,duration}; toạ độ không
+   * lưu vì lấy lại được từ request (hash đã bảo đảm trùng).
+   */
+  private static String encode(List<PriceAndRouteDto> routes) {
+    StringBuilder sb = new StringBuilder(routes.size() * 32);
+    for (PriceAndRouteDto r : routes) {
+      if (!sb.isEmpty()) sb.append(';');
+      sb.append(r.routeIndex())
+          .append(',')
+          .append(r.packageIndex())
+          .append(',')
+          .append(r.price())
+          .append(',')
+          .append(r.distance())
+          .append(',')
+          .append(r.estimatedDuration());
+    }
+    return sb.toString();
+  }
+
+  private static List<PriceAndRouteDto> decode(String value, CreateOrderRequest req) {
+    String[] rows = value.split(";");
+    List<PriceAndRouteDto> routes = new ArrayList<>(rows.length);
+    for (String row : rows) {
+      String[] f = row.split(",");
+      int packageIndex = Integer.parseInt(f[1]);
+      AddressDto drop = req.packages().get(packageIndex - 1).receiverAddress();
+      routes.add(
+          new PriceAndRouteDto(
+              Double.parseDouble(f[2]),
+              drop.latitude(),
+              drop.longitude(),
+              Integer.parseInt(f[0]),
+              packageIndex,
+              Integer.parseInt(f[3]),
+              Integer.parseInt(f[4])));
+    }
+    return routes;
+  }
+}
@@ -0,0 +1,28 @@
+package com.pbl6.order.service.route;
+
+import java.util.List;
+
+/**
+ * Kết quả giải thứ tự giao hàng kèm báo cáo chất lượng.
+ *
+ * @param path chỉ số điểm theo thứ tự đi, bắt đầu bằng 0 (điểm lấy hàng)
+ * @param cost tổng chi phí (mét / giây tuỳ ma trận) của path, không quay về điểm 0
+ * @param method {@code exact} (DP) hoặc {@code heuristic}
+ * @param initialCost chi phí của lời giải nearest-neighbour ban đầu (bằng {@code cost} nếu exact)
+ * @param lowerBound cận dưới: tổng cạnh vào rẻ nhất của mỗi điểm giao; {@code cost} với exact
+ * @param timedOut bước cải thiện bị dừng vì hết time budget
+ */
+public record RouteSolution(
+    List<Integer> path,
+    long cost,
+    String method,
+    long initialCost,
+    long lowerBound,
+    boolean timedOut,
+    long elapsedNanos) {
+
+  /** Khoảng cách tương đối tối đa tới lời giải tối ưu: (cost - lowerBound) / lowerBound. */
+  public double gap() {
+    return lowerBound > 0 ? (double) (cost - lowerBound) / lowerBound : 0.0;
+  }
+}
@@ -0,0 +1,335 @@
+package com.pbl6.order.service.route;
+
+import com.pbl6.order.config.RouteProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thứ tự giao hàng cho order nhiều điểm: đường đi mở từ điểm 0 (lấy hàng) qua mọi điểm giao, tổng
+ * chi phí nhỏ nhất, ma trận có thể bất đối xứng.
+ *
+ * <ul>
+ *   <li>N &lt;= {@code route.exact-max-drops}: Held-Karp chính xác trên buffer phẳng lấy từ pool
+ *       (không cấp phát {@code int[1<<N][n]} mỗi request).
+ *   <li>N lớn hơn: nearest-neighbour rồi cải thiện bằng 2-opt (O(1) mỗi nước nhờ prefix sum hai
+ *       chiều) và Or-opt (dời đoạn 1..3 điểm) tới khi hết cải thiện hoặc hết time budget.
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RouteSolver {
+
+  /** Giới hạn cứng cho DP: 2^16 * 16 ô. */
+  static final int MAX_EXACT_DROPS = 16;
+
+  private static final int OR_OPT_MAX_SEGMENT = 3;
+  private static final long INF = Long.MAX_VALUE / 4;
+
+  private final int exactMaxDrops;
+  private final long timeBudgetNanos;
+  private final int bufferPoolSize;
+  private final ConcurrentLinkedQueue<DpBuffers> pool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final MeterRegistry registry;
+  private final DistributionSummary gapSummary;
+
+  public RouteSolver(RouteProperties props, MeterRegistry registry) {
+    this.exactMaxDrops = Math.min(MAX_EXACT_DROPS, Math.max(0, props.getExactMaxDrops()));
+    this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(props.getTimeBudgetMs());
+    this.bufferPoolSize = props.getBufferPoolSize();
+    this.registry = registry;
+    this.gapSummary =
+        DistributionSummary.builder("route.solve.gap")
+            .description("Heuristic route cost over its lower bound, minus one")
+            .register(registry);
+  }
+
+  public RouteSolution solve(int[][] w) {
+    long start = System.nanoTime();
+    int drops = w.length - 1;
+    RouteSolution solution;
+    if (drops <= 0) {
+      solution = new RouteSolution(List.of(0), 0, "exact", 0, 0, false, 0);
+    } else if (drops <= exactMaxDrops) {
+      solution = exact(w, start);
+    } else {
+      solution = heuristic(w, start);
+      gapSummary.record(solution.gap());
+    }
+    Timer.builder("route.solve")
+        .description("Route ordering time by solver tier")
+        .tag("method", solution.method())
+        .register(registry)
+        .record(solution.elapsedNanos(), TimeUnit.NANOSECONDS);
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Route {} drops: {} cost={} initial={} lowerBound={} gap={} timedOut={} in {} us",
+          drops,
+          solution.method(),
+          solution.cost(),
+          solution.initialCost(),
+          solution.lowerBound(),
+          String.format("%.3f", solution.gap()),
+          solution.timedOut(),
+          solution.elapsedNanos() / 1000);
+    }
+    return solution;
+  }
+
+  // ---------------------------------------------------------------- exact
+
+  private RouteSolution exact(int[][] w, long start) {
+    int n = w.length;
+    int drops = n - 1;
+    int masks = 1 << drops;
+    DpBuffers buf = borrow(masks * drops);
+    try {
+      long[] dp = buf.dp;
+      byte[] parent = buf.parent;
+      // dp[mask * drops + u]: đi từ 0 qua đúng tập mask, kết thúc tại điểm u+1
+      Arrays.fill(dp, 0, masks * drops, INF);
+      for (int u = 0; u < drops; u++) {
+        dp[(1 << u) * drops + u] = w[0][u + 1];
+        parent[(1 << u) * drops + u] = -1;
+      }
+      for (int mask = 1; mask < masks; mask++) {
+        int base = mask * drops;
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+          int v = Integer.numberOfTrailingZeros(rest);
+          long cur = dp[base + v];
+          if (cur >= INF) continue;
+          // mở rộng sang các điểm chưa đi
+          for (int free = ~mask & (masks - 1); free != 0; free &= free - 1) {
+            int u = Integer.numberOfTrailingZeros(free);
+            int next = (mask | (1 << u)) * drops + u;
+            long cost = cur + w[v + 1][u + 1];
+            if (cost < dp[next]) {
+              dp[next] = cost;
+              parent[next] = (byte) v;
+            }
+          }
+        }
+      }
+      int full = masks - 1;
+      int end = 0;
+      for (int u = 1; u < drops; u++) {
+        if (dp[full * drops + u] < dp[full * drops + end]) end = u;
+      }
+      long cost = dp[full * drops + end];
+
+      int[] order = new int[n];
+      int mask = full;
+      for (int pos = n - 1; pos >= 1; pos--) {
+        order[pos] = end + 1;
+        int prev = parent[mask * drops + end];
+        mask ^= 1 << end;
+        end = prev;
+      }
+      return new RouteSolution(
+          toList(order), cost, "exact", cost, cost, false, System.nanoTime() - start);
+    } finally {
+      release(buf);
+    }
+  }
+
+  private DpBuffers borrow(int cells) {
+    DpBuffers buf = pool.poll();
+    if (buf != null) pooled.decrementAndGet();
+    // buffer nhỏ hơn cần thiết bị bỏ; buffer lớn dùng được cho order ít điểm hơn
+    if (buf == null || buf.dp.length < cells) buf = new DpBuffers(cells);
+    return buf;
+  }
+
+  private void release(DpBuffers buf) {
+    if (pooled.incrementAndGet() <= bufferPoolSize) {
+      pool.offer(buf);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+  // ---------------------------------------------------------------- heuristic
+
+  private RouteSolution heuristic(int[][] w, long start) {
+    long deadline = start + timeBudgetNanos;
+    int[] p = nearestNeighbour(w);
+    long initial = pathCost(w, p);
+    boolean timedOut = false;
+    long[] fwd = new long[p.length];
+    long[] rev = new long[p.length];
+    boolean improved = true;
+    while (improved) {
+      if (System.nanoTime() > deadline) {
+        timedOut = true;
+        break;
+      }
+      improved = twoOpt(w, p, fwd, rev, deadline);
+      improved |= orOpt(w, p, deadline);
+    }
+    long cost = pathCost(w, p);
+    return new RouteSolution(
+        toList(p), cost, "heuristic", initial, lowerBound(w), timedOut, System.nanoTime() - start);
+  }
+
+  private static int[] nearestNeighbour(int[][] w) {
+    int n = w.length;
+    int[] p = new int[n];
+    boolean[] visited = new boolean[n];
+    visited[0] = true;
+    for (int pos = 1; pos < n; pos++) {
+      int from = p[pos - 1];
+      int best = -1;
+      for (int v = 1; v < n; v++) {
+        if (!visited[v] && (best < 0 || w[from][v] < w[from][best])) best = v;
+      }
+      p[pos] = best;
+      visited[best] = true;
+    }
+    return p;
+  }
+
+  /**
+   * Đảo đoạn p[i..j] (i &gt;= 1). Ma trận bất đối xứng nên chi phí trong đoạn đổi chiều: dùng
+   * fwd[k] = chi phí p[0..k] theo chiều đi, rev[k] = chi phí p[0..k] theo chiều ngược.
+   */
+  private static boolean twoOpt(int[][] w, int[] p, long[] fwd, long[] rev, long deadline) {
+    int n = p.length;
+    boolean any = false;
+    prefix(w, p, fwd, rev);
+    for (int i = 1; i < n - 1; i++) {
+      if (System.nanoTime() > deadline) return any;
+      for (int j = i + 1; j < n; j++) {
+        long before = w[p[i - 1]][p[i]] + (fwd[j] - fwd[i]);
+        long after = w[p[i - 1]][p[j]] + (rev[j] - rev[i]);
+        if (j + 1 < n) {
+          before += w[p[j]][p[j + 1]];
+          after += w[p[i]][p[j + 1]];
+        }
+        if (after < before) {
+          reverse(p, i, j);
+          prefix(w, p, fwd, rev);
+          any = true;
+        }
+      }
+    }
+    return any;
+  }
+
+  private static void prefix(int[][] w, int[] p, long[] fwd, long[] rev) {
+    fwd[0] = 0;
+    rev[0] = 0;
+    for (int k = 1; k < p.length; k++) {
+      fwd[k] = fwd[k - 1] + w[p[k - 1]][p[k]];
+      rev[k] = rev[k - 1] + w[p[k]][p[k - 1]];
+    }
+  }
+
+  /** Dời đoạn p[i..i+len-1] (giữ chiều) sang sau vị trí k. */
+  private static boolean orOpt(int[][] w, int[] p, long deadline) {
+    int n = p.length;
+    boolean any = false;
+    for (int len = 1; len <= OR_OPT_MAX_SEGMENT; len++) {
+      for (int i = 1; i + len <= n; i++) {
+        if (System.nanoTime() > deadline) return any;
+        int first = p[i];
+        int last = p[i + len - 1];
+        int prev = p[i - 1];
+        boolean hasNext = i + len < n;
+        int next = hasNext ? p[i + len] : -1;
+        // bỏ đoạn ra: prev -> next
+        long removeGain =
+            w[prev][first] + (hasNext ? w[last][next] - w[prev][next] : 0);
+        for (int k = 0; k < n; k++) {
+          if (k >= i - 1 && k < i + len) continue; // chèn vào chỗ cũ / bên trong đoạn
+          boolean kHasNext = k + 1 < n;
+          int a = p[k];
+          int b = kHasNext ? p[k + 1] : -1;
+          long insertCost = w[a][first] + (kHasNext ? w[last][b] - w[a][b] : 0);
+          if (insertCost < removeGain) {
+            move(p, i, len, k);
+            any = true;
+            break;
+          }
+        }
+      }
+    }
+    return any;
+  }
+
+  /** Dời đoạn p[i..i+len-1] ra sau p[k] (k nằm ngoài đoạn). */
+  private static void move(int[] p, int i, int len, int k) {
+    int[] seg = Arrays.copyOfRange(p, i, i + len);
+    if (k < i) {
+      System.arraycopy(p, k + 1, p, k + 1 + len, i - k - 1);
+      System.arraycopy(seg, 0, p, k + 1, len);
+    } else {
+      System.arraycopy(p, i + len, p, i, k - i - len + 1);
+      System.arraycopy(seg, 0, p, k - len + 1, len);
+    }
+  }
+
+  private static void reverse(int[] p, int i, int j) {
+    while (i < j) {
+      int t = p[i];
+      p[i++] = p[j];
+      p[j--] = t;
+    }
+  }
+
+  private static long pathCost(int[][] w, int[] p) {
+    long cost = 0;
+    for (int k = 1; k < p.length; k++) cost += w[p[k - 1]][p[k]];
+    return cost;
+  }
+
+  /**
+   * Cận dưới của mọi path: mỗi điểm giao có đúng một cạnh đi vào (tổng cạnh vào rẻ nhất), và mọi
+   * điểm trừ điểm cuối có đúng một cạnh đi ra (tổng cạnh ra rẻ nhất trừ cạnh ra lớn nhất). Lấy
+   * giá trị lớn hơn.
+   */
+  private static long lowerBound(int[][] w) {
+    int n = w.length;
+    long in = 0;
+    long out = 0;
+    long maxOut = 0;
+    for (int v = 0; v < n; v++) {
+      long bestIn = INF;
+      long bestOut = INF;
+      for (int u = 0; u < n; u++) {
+        if (u == v) continue;
+        if (u != 0 && w[v][u] < bestOut) bestOut = w[v][u];
+        if (v != 0 && w[u][v] < bestIn) bestIn = w[u][v];
+      }
+      if (v != 0) in += bestIn;
+      out += bestOut;
+      maxOut = Math.max(maxOut, bestOut);
+    }
+    return Math.max(in, out - maxOut);
+  }
+
+  private static List<Integer> toList(int[] order) {
+    List<Integer> path = new ArrayList<>(order.length);
+    for (int v : order) path.add(v);
+    return path;
+  }
+
+  private static final class DpBuffers {
+    final long[] dp;
+    final byte[] parent;
+
+    DpBuffers(int cells) {
+      this.dp = new long[cells];
+      this.parent = new byte[cells];
+    }
+  }
+}
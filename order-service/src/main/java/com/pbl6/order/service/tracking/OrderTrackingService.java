@@ -0,0 +1,343 @@
+package com.pbl6.order.service.tracking;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pbl6.order.config.TrackingProperties;
+import com.pbl6.order.entity.OrderStatus;
+import com.pbl6.order.exception.AppException;
+import com.pbl6.order.repository.OrderRepository;
+import com.pbl6.order.repository.projection.OrderTrackingProjection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVERS_GEO_KEY;
+import static com.pbl6.order.constant.RedisKeyConstants.DRIVER_LOCATION_CHANNEL;
+import static com.pbl6.order.constant.RedisKeyConstants.ORDER_CHANNEL_PATTERN;
+
+/**
+ * Stream theo dõi một order qua SSE, thay cho việc client poll {@code GET /{id}} và vị trí shipper.
+ *
+ * <ul>
+ *   <li>Trạng thái: outbox relay publish lên {@code order:channel:{orderId}}; replica nào đang giữ
+ *       stream của order đó thì subscribe channel (chỉ khi có người xem) và đẩy event {@code
+ *       status}.
+ *   <li>Vị trí: mọi replica nghe {@code drivers:location:changes} từ auth-service, chỉ đẩy event
+ *       {@code location} cho order có shipper đang được xem, tối đa một lần mỗi {@code
+ *       location-interval-ms}.
+ *   <li>Mở stream chỉ đọc creator / shipper / status (không load packages); order kết thúc thì
+ *       stream được đóng.
+ *   <li>Snapshot đọc sau khi subscribe channel; subscribe của container là bất đồng bộ nên
+ *       heartbeat đầu tiên đọc lại trạng thái một lần, bù event publish trước khi subscription
+ *       kịp chạy.
+ * </ul>
+ */
+@Slf4j
+@Service
+public class OrderTrackingService {
+
+  private final OrderRepository orderRepo;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final RedisMessageListenerContainer container;
+  private final ObjectMapper objectMapper;
+  private final TrackingProperties props;
+  private final MeterRegistry registry;
+
+  private final ConcurrentMap<UUID, Watch> watches = new ConcurrentHashMap<>();
+
+  /** shipper -> các order của shipper đó đang được xem trên replica này. */
+  private final ConcurrentMap<UUID, Set<Watch>> byShipper = new ConcurrentHashMap<>();
+
+  private final AtomicInteger subscribers = new AtomicInteger();
+
+  public OrderTrackingService(
+      OrderRepository orderRepo,
+      RedisTemplate<String, String> redisTemplate,
+      RedisMessageListenerContainer container,
+      ObjectMapper objectMapper,
+      TrackingProperties props,
+      MeterRegistry registry) {
+    this.orderRepo = orderRepo;
+    this.redisTemplate = redisTemplate;
+    this.container = container;
+    this.objectMapper = objectMapper;
+    this.props = props;
+    this.registry = registry;
+    Gauge.builder("tracking.subscribers", subscribers, AtomicInteger::get)
+        .description("Open order tracking streams on this replica")
+        .register(registry);
+    Gauge.builder("tracking.orders", watches, Map::size)
+        .description("Orders with at least one open tracking stream on this replica")
+        .register(registry);
+  }
+
+  @PostConstruct
+  public void subscribeLocations() {
+    container.addMessageListener(
+        (message, pattern) -> onLocation(message), new ChannelTopic(DRIVER_LOCATION_CHANNEL));
+  }
+
+  /** Publish trạng thái mới cho mọi replica đang giữ stream của order. */
+  public void publishStatus(UUID orderId, OrderStatus status, UUID shipperId) {
+    redisTemplate.convertAndSend(
+        String.format(ORDER_CHANNEL_PATTERN, orderId), statusJson(orderId, status, shipperId));
+  }
+
+  public SseEmitter subscribe(UUID orderId, UUID currentUserId, Set<String> roleNames) {
+    OrderTrackingProjection order =
+        orderRepo
+            .findTrackingById(orderId)
+            .orElseThrow(() -> AppException.notFound("Order not found"));
+    // stream lộ vị trí shipper theo thời gian thực: chỉ người tạo order, shipper đang nhận order và
+    // admin; shipper khác không được theo dõi
+    boolean allowed =
+        roleNames.contains("ADMIN")
+            || currentUserId.equals(order.getCreatorId())
+            || (roleNames.contains("DRIVER") && currentUserId.equals(order.getShipperId()));
+    if (!allowed) throw AppException.forbidden("Access denied");
+
+    if (subscribers.incrementAndGet() > props.getMaxSubscribers()) {
+      subscribers.decrementAndGet();
+      throw AppException.serviceUnavailable("Too many tracking streams, retry later");
+    }
+    SseEmitter emitter = new SseEmitter(props.getTimeoutMs());
+    Watch watch = attach(orderId, order.getShipperId(), emitter);
+    emitter.onCompletion(() -> detach(watch, emitter));
+    emitter.onError(ex -> detach(watch, emitter));
+    emitter.onTimeout(emitter::complete);
+
+    // snapshot ban đầu (đọc lại sau khi đã subscribe) để client không cần gọi GET /{id} trước
+    try {
+      order = orderRepo.findTrackingById(orderId).orElse(order);
+    } catch (Exception ex) {
+      log.debug("Tracking snapshot re-read for order {} failed: {}", orderId, ex.getMessage());
+    }
+    watch.lastStatus = order.getStatus();
+    send(
+        watch,
+        emitter,
+        event("status", statusJson(orderId, order.getStatus(), order.getShipperId())));
+    if (order.getShipperId() != null) {
+      try {
+        List<Point> pos =
+            redisTemplate.opsForGeo().position(DRIVERS_GEO_KEY, order.getShipperId().toString());
+        if (pos != null && !pos.isEmpty() && pos.get(0) != null) {
+          Point p = pos.get(0);
+          send(watch, emitter, locationEvent(orderId, order.getShipperId(), p.getX(), p.getY()));
+        }
+      } catch (Exception ex) {
+        log.debug("No initial position for shipper {}: {}", order.getShipperId(), ex.getMessage());
+      }
+    }
+    if (order.getStatus() != null && order.getStatus().isTerminal()) emitter.complete();
+    return emitter;
+  }
+
+  private Watch attach(UUID orderId, UUID shipperId, SseEmitter emitter) {
+    while (true) {
+      Watch w = watches.computeIfAbsent(orderId, id -> new Watch(id, shipperId));
+      synchronized (w) {
+        if (w.closed) continue; // vừa bị đóng bởi người xem cuối cùng -> tạo mới
+        w.emitters.add(emitter);
+        if (!w.listening) {
+          w.listening = true;
+          container.addMessageListener(w, w.topic);
+          index(w, w.shipperId);
+        }
+        return w;
+      }
+    }
+  }
+
+  private void detach(Watch w, SseEmitter emitter) {
+    if (!w.emitters.remove(emitter)) return;
+    subscribers.decrementAndGet();
+    synchronized (w) {
+      if (!w.emitters.isEmpty() || w.closed) return;
+      w.closed = true;
+      watches.remove(w.orderId, w);
+      container.removeMessageListener(w, w.topic);
+      unindex(w, w.shipperId);
+    }
+  }
+
+  private void onStatus(Watch w, String body) {
+    OrderStatus status = null;
+    try {
+      JsonNode n = objectMapper.readTree(body);
+      JsonNode s = n.get("status");
+      status = s == null || s.isNull() ? null : OrderStatus.valueOf(s.asText());
+      JsonNode sh = n.get("shipperId");
+      UUID shipperId = sh == null || sh.isNull() ? null : UUID.fromString(sh.asText());
+      synchronized (w) {
+        if (!w.closed && !Objects.equals(shipperId, w.shipperId)) {
+          unindex(w, w.shipperId);
+          index(w, shipperId);
+        }
+        w.shipperId = shipperId;
+      }
+    } catch (Exception ex) {
+      log.debug("Ignoring malformed order status message: {}", body);
+      return;
+    }
+    w.lastStatus = status;
+    published("status");
+    broadcast(w, event("status", body));
+    if (status != null && status.isTerminal()) {
+      for (SseEmitter emitter : w.emitters) emitter.complete();
+    }
+  }
+
+  /** Message: {@code U,<driverId>,<lon>,<lat>}; {@code R,...} (offline) bỏ qua. */
+  private void onLocation(Message message) {
+    if (byShipper.isEmpty()) return;
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    if (!body.startsWith("U,")) return;
+    String[] parts = body.split(",");
+    if (parts.length < 4) return;
+    try {
+      UUID driverId = UUID.fromString(parts[1]);
+      Set<Watch> ws = byShipper.get(driverId);
+      if (ws == null) return;
+      double lon = Double.parseDouble(parts[2]);
+      double lat = Double.parseDouble(parts[3]);
+      long now = System.currentTimeMillis();
+      for (Watch w : ws) {
+        if (now - w.lastLocationMs < props.getLocationIntervalMs()) continue;
+        w.lastLocationMs = now;
+        published("location");
+        broadcast(w, locationEvent(w.orderId, driverId, lon, lat));
+      }
+    } catch (IllegalArgumentException ex) {
+      log.debug("Ignoring malformed driver location message: {}", body);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${tracking.heartbeat-ms:15000}")
+  public void heartbeat() {
+    for (Watch w : watches.values()) {
+      if (!w.reconciled) reconcile(w);
+      broadcast(w, SseEmitter.event().comment("ping"));
+    }
+  }
+
+  /** Đọc lại trạng thái một lần sau khi subscribe: gửi trạng thái đã lỡ (kể cả trạng thái cuối). */
+  private void reconcile(Watch w) {
+    OrderTrackingProjection order;
+    try {
+      order = orderRepo.findTrackingById(w.orderId).orElse(null);
+    } catch (Exception ex) {
+      log.debug("Tracking reconcile for order {} failed: {}", w.orderId, ex.getMessage());
+      return;
+    }
+    w.reconciled = true;
+    if (order == null || order.getStatus() == null || order.getStatus() == w.lastStatus) return;
+    onStatus(w, statusJson(w.orderId, order.getStatus(), order.getShipperId()));
+  }
+
+  private void index(Watch w, UUID shipperId) {
+    if (shipperId == null) return;
+    byShipper.computeIfAbsent(shipperId, id -> ConcurrentHashMap.newKeySet()).add(w);
+  }
+
+  private void unindex(Watch w, UUID shipperId) {
+    if (shipperId == null) return;
+    byShipper.computeIfPresent(
+        shipperId,
+        (id, set) -> {
+          set.remove(w);
+          return set.isEmpty() ? null : set;
+        });
+  }
+
+  private void broadcast(Watch w, SseEmitter.SseEventBuilder event) {
+    for (SseEmitter emitter : w.emitters) send(w, emitter, event);
+  }
+
+  private void send(Watch w, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+    try {
+      emitter.send(event);
+    } catch (Exception ex) {
+      // client đã ngắt kết nối
+      detach(w, emitter);
+    }
+  }
+
+  private String statusJson(UUID orderId, OrderStatus status, UUID shipperId) {
+    ObjectNode node = objectMapper.createObjectNode();
+    node.put("orderId", orderId.toString());
+    node.put("status", status != null ? status.name() : null);
+    node.put("shipperId", shipperId != null ? shipperId.toString() : null);
+    node.put("at", System.currentTimeMillis());
+    return node.toString();
+  }
+
+  private SseEmitter.SseEventBuilder locationEvent(
+      UUID orderId, UUID shipperId, double lon, double lat) {
+    ObjectNode node = objectMapper.createObjectNode();
+    node.put("orderId", orderId.toString());
+    node.put("shipperId", shipperId.toString());
+    node.put("lon", lon);
+    node.put("lat", lat);
+    node.put("at", System.currentTimeMillis());
+    return event("location", node.toString());
+  }
+
+  private static SseEmitter.SseEventBuilder event(String name, String data) {
+    return SseEmitter.event().name(name).data(data);
+  }
+
+  private void published(String type) {
+    Counter.builder("tracking.events")
+        .description("Tracking events pushed to open streams")
+        .tag("type", type)
+        .register(registry)
+        .increment();
+  }
+
+  /** Các stream đang xem một order trên replica này. */
+  private final class Watch implements MessageListener {
+    final UUID orderId;
+    final ChannelTopic topic;
+    final Set<SseEmitter> emitters = ConcurrentHashMap.newKeySet();
+    volatile UUID shipperId;
+    volatile long lastLocationMs;
+    volatile OrderStatus lastStatus;
+    volatile boolean reconciled;
+    boolean listening;
+    boolean closed;
+
+    Watch(UUID orderId, UUID shipperId) {
+      this.orderId = orderId;
+      this.topic = new ChannelTopic(String.format(ORDER_CHANNEL_PATTERN, orderId));
+      this.shipperId = shipperId;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+      onStatus(this, new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.pbl6.order.util;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor chạy mỗi task trên một thread của {@code delegate} (thường là virtual thread per task),
+ * nhưng chỉ cho tối đa {@code maxConcurrency} task chạy cùng lúc; task còn lại park chờ permit (rẻ
+ * với virtual thread). Khi số task đang chờ vượt {@code maxPending} thì reject thay vì tích lũy vô
+ * hạn.
+ */
+public class ConcurrencyLimitedExecutor extends AbstractExecutorService {
+
+  private final ExecutorService delegate;
+  private final Semaphore permits;
+  private final int maxPending;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+
+  public ConcurrencyLimitedExecutor(ExecutorService delegate, int maxConcurrency, int maxPending) {
+    this.delegate = delegate;
+    this.permits = new Semaphore(Math.max(1, maxConcurrency));
+    this.maxPending = Math.max(0, maxPending);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (pending.incrementAndGet() > maxPending + permits.availablePermits()) {
+      pending.decrementAndGet();
+      throw new RejectedExecutionException("Concurrency limit reached, " + maxPending + " pending");
+    }
+    try {
+      delegate.execute(() -> run(command));
+    } catch (RejectedExecutionException ex) {
+      pending.decrementAndGet();
+      throw ex;
+    }
+  }
+
+  private void run(Runnable command) {
+    try {
+      permits.acquire();
+    } catch (InterruptedException ex) {
+      pending.decrementAndGet();
+      Thread.currentThread().interrupt();
+      return;
+    }
+    pending.decrementAndGet();
+    active.incrementAndGet();
+    try {
+      command.run();
+    } finally {
+      active.decrementAndGet();
+      permits.release();
+    }
+  }
+
+  /** Số task đang chờ permit. */
+  public int pendingCount() {
+    return pending.get();
+  }
+
+  /** Số task đang chạy. */
+  public int activeCount() {
+    return active.get();
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return delegate.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return delegate.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return delegate.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return delegate.awaitTermination(timeout, unit);
+  }
+}
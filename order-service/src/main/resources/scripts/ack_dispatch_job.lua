@@ -0,0 +1,9 @@
+-- Kết thúc job dispatch: XACK + XDEL, và gỡ key dedup nếu nó vẫn trỏ tới job này.
+-- KEYS[1] = dispatch:jobs (stream), KEYS[2] = dispatch:job:{orderId} (dedup)
+-- ARGV[1] = consumer group, ARGV[2] = stream id
+redis.call('XACK', KEYS[1], ARGV[1], ARGV[2])
+redis.call('XDEL', KEYS[1], ARGV[2])
+if redis.call('GET', KEYS[2]) == ARGV[2] then
+  redis.call('DEL', KEYS[2])
+end
+return 1
@@ -0,0 +1,27 @@
+-- Claim order cho driver một cách atomic (thay cho read-check-write trên Postgres).
+-- KEYS[1] = order:{orderId}:assignee
+-- KEYS[2] = driver:{driverId}:delivering_order_id
+-- KEYS[3] = drivers:available
+-- KEYS[4] = order:{orderId}:offers
+-- KEYS[5] = driver:{driverId}:offer_stats
+-- ARGV[1] = driverId, ARGV[2] = orderId, ARGV[3] = now (epoch ms)
+-- Trả về: 1 = claim thành công, 2 = claim thành công từ một offer (đã tính accepted),
+--         0 = order đã có người nhận, -1 = driver đang giao đơn khác
+if redis.call('EXISTS', KEYS[1]) == 1 then
+  return 0
+end
+if redis.call('EXISTS', KEYS[2]) == 1 then
+  return -1
+end
+redis.call('SET', KEYS[1], ARGV[1])
+redis.call('SET', KEYS[2], ARGV[2])
+redis.call('SREM', KEYS[3], ARGV[1])
+-- hết rảnh: idle time tính lại từ lần free_since tiếp theo
+redis.call('HDEL', KEYS[5], 'free_since')
+-- chỉ offer thật (score = lúc push <= now); shipper bị loại (excludeDriver) có score ở tương lai
+local offeredAt = redis.call('ZSCORE', KEYS[4], ARGV[1])
+if offeredAt and tonumber(offeredAt) <= tonumber(ARGV[3]) then
+  redis.call('HINCRBY', KEYS[5], 'accepted', 1)
+  return 2
+end
+return 1
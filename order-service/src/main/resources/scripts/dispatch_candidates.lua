@@ -0,0 +1,60 @@
+-- Tìm N shipper available gần nhất kèm FCM token trong 1 round trip, mở rộng bán kính theo vòng.
+-- KEYS[1] = drivers:geo, KEYS[2] = drivers:available, KEYS[3] = order:{id}:offers
+-- ARGV[1] = lon, ARGV[2] = lat
+-- ARGV[3] = các vòng bán kính (km) tăng dần, phân cách bởi dấu phẩy, ví dụ "1,3,10,50"
+-- ARGV[4] = limit (số candidate tối đa trả về)
+-- ARGV[5] = minFound (đủ số này thì dừng, không mở rộng vòng tiếp theo)
+-- ARGV[6] = scanCount (COUNT cho mỗi GEOSEARCH)
+-- ARGV[7] = cooldown cutoff (epoch ms): bỏ qua shipper đã được offer order này sau mốc này
+-- Trả về mảng phẳng: ringKm, rồi mỗi candidate 8 phần tử:
+--   id, token, distKm, offered, accepted, rating_sum, rated, free_since
+local limit = tonumber(ARGV[4])
+local minFound = tonumber(ARGV[5])
+local scanCount = tonumber(ARGV[6])
+local cutoff = tonumber(ARGV[7])
+
+local function offeredRecently(id)
+  local ts = redis.call('ZSCORE', KEYS[3], id)
+  return ts and tonumber(ts) >= cutoff
+end
+
+-- Feature ranking từ driver:{id}:offer_stats (xem RedisKeyConstants.DRIVER_OFFER_STATS_KEY)
+local FEATURE_FIELDS = {'offered', 'accepted', 'rating_sum', 'rated', 'free_since'}
+
+local function appendFeatures(out, id)
+  local f = redis.call('HMGET', 'driver:' .. id .. ':offer_stats', unpack(FEATURE_FIELDS))
+  for i = 1, #FEATURE_FIELDS do
+    out[#out + 1] = f[i] or '0'
+  end
+end
+
+local out = {}
+local reached = '0'
+for radius in string.gmatch(ARGV[3], '[^,]+') do
+  reached = radius
+  out = {}
+  local found = 0
+  -- mỗi vòng là superset của vòng trước nên chỉ cần giữ kết quả của vòng cuối cùng
+  local hits = redis.call('GEOSEARCH', KEYS[1], 'FROMLONLAT', ARGV[1], ARGV[2],
+    'BYRADIUS', radius, 'km', 'ASC', 'COUNT', scanCount, 'WITHDIST')
+  for _, hit in ipairs(hits) do
+    local id = hit[1]
+    -- key pattern giống RedisKeyConstants.DRIVER_DELIVERING_ORDER_KEY / DRIVER_FCM_TOKEN
+    if redis.call('SISMEMBER', KEYS[2], id) == 1
+        and redis.call('EXISTS', 'driver:' .. id .. ':delivering_order_id') == 0
+        and not offeredRecently(id) then
+      local token = redis.call('GET', 'driver:' .. id .. ':fcm_token')
+      if token and token ~= '' then
+        out[#out + 1] = id
+        out[#out + 1] = token
+        out[#out + 1] = hit[2]
+        appendFeatures(out, id)
+        found = found + 1
+        if found >= limit then break end
+      end
+    end
+  end
+  if found >= minFound then break end
+end
+table.insert(out, 1, reached)
+return out
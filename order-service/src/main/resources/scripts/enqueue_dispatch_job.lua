@@ -0,0 +1,20 @@
+-- Ghi job dispatch vào stream, tối đa một job đang sống cho mỗi order.
+-- KEYS[1] = dispatch:job:{orderId} (dedup), KEYS[2] = dispatch:jobs (stream)
+-- ARGV[1] = dedup TTL (s), ARGV[2] = MAXLEN ~, ARGV[3] = orderId, ARGV[4] = lon, ARGV[5] = lat,
+-- ARGV[6] = k, ARGV[7] = thời điểm yêu cầu (epoch ms), ARGV[8] = kind (FIRST / REASSIGN),
+-- ARGV[9] = shipper vừa trả order ('' nếu không có),
+-- ARGV[10] = '1' để thay job đang sống (REASSIGN): key dedup trỏ sang job mới, job cũ khi ack
+--            không gỡ key của job mới (ack_dispatch_job.lua so stream id)
+-- Trả về stream id của job mới ('<id>,<id cũ>' nếu đã thay job cũ), hoặc nil nếu order đã có job.
+local old = redis.call('GET', KEYS[1])
+if old and ARGV[10] ~= '1' then
+  return false
+end
+local id = redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[2], '*',
+  'orderId', ARGV[3], 'lon', ARGV[4], 'lat', ARGV[5], 'k', ARGV[6], 'ts', ARGV[7], 'kind', ARGV[8],
+  'prev', ARGV[9])
+redis.call('SET', KEYS[1], id, 'EX', ARGV[1])
+if old then
+  return id .. ',' .. old
+end
+return id
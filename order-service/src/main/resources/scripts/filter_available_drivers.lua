@@ -0,0 +1,44 @@
+-- Lọc danh sách shipper (đã sắp xếp gần -> xa từ spatial index local) trong 1 round trip.
+-- KEYS[1] = drivers:available, KEYS[2] = order:{id}:offers
+-- ARGV[1] = limit (số shipper tối đa trả về)
+-- ARGV[2] = cooldown cutoff (epoch ms): bỏ qua shipper đã được offer order này sau mốc này
+-- ARGV[3..] = driverId
+-- Trả về mảng phẳng, mỗi shipper 7 phần tử (pos = vị trí 0-based trong danh sách vào):
+--   pos, token, offered, accepted, rating_sum, rated, free_since
+local limit = tonumber(ARGV[1])
+local cutoff = tonumber(ARGV[2])
+
+local function offeredRecently(id)
+  local ts = redis.call('ZSCORE', KEYS[2], id)
+  return ts and tonumber(ts) >= cutoff
+end
+
+-- Feature ranking từ driver:{id}:offer_stats (xem RedisKeyConstants.DRIVER_OFFER_STATS_KEY)
+local FEATURE_FIELDS = {'offered', 'accepted', 'rating_sum', 'rated', 'free_since'}
+
+local function appendFeatures(out, id)
+  local f = redis.call('HMGET', 'driver:' .. id .. ':offer_stats', unpack(FEATURE_FIELDS))
+  for i = 1, #FEATURE_FIELDS do
+    out[#out + 1] = f[i] or '0'
+  end
+end
+
+local out = {}
+local found = 0
+for i = 3, #ARGV do
+  local id = ARGV[i]
+  -- key pattern giống RedisKeyConstants.DRIVER_DELIVERING_ORDER_KEY / DRIVER_FCM_TOKEN
+  if redis.call('SISMEMBER', KEYS[1], id) == 1
+      and redis.call('EXISTS', 'driver:' .. id .. ':delivering_order_id') == 0
+      and not offeredRecently(id) then
+    local token = redis.call('GET', 'driver:' .. id .. ':fcm_token')
+    if token and token ~= '' then
+      out[#out + 1] = tostring(i - 3)
+      out[#out + 1] = token
+      appendFeatures(out, id)
+      found = found + 1
+      if found >= limit then break end
+    end
+  end
+end
+return out
@@ -0,0 +1,13 @@
+-- Xoá FCM token đã chết (FCM báo UNREGISTERED). Chỉ xoá nếu key vẫn giữ đúng token đó,
+-- tránh xoá mất token mới mà client vừa đăng ký lại.
+-- KEYS[1] = key lưu token (driver:{id}:fcm_token / user:{id}:fcm_token)
+-- KEYS[2] = drivers:available
+-- ARGV[1] = token đã chết, ARGV[2] = member cần gỡ khỏi drivers:available ('' nếu không có)
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+  return 0
+end
+redis.call('DEL', KEYS[1])
+if ARGV[2] ~= '' then
+  redis.call('SREM', KEYS[2], ARGV[2])
+end
+return 1
@@ -0,0 +1,20 @@
+-- Ghi nhận một wave offer: ZADD order:{id}:offers (driver -> ts) và tăng thống kê offered.
+-- KEYS[1] = order:{orderId}:offers
+-- ARGV[1] = now (epoch ms), ARGV[2] = TTL của offers (s),
+-- ARGV[3] = acceptance window (offered chạm ngưỡng thì offered / accepted cùng chia đôi),
+-- ARGV[4..] = driverId
+local window = tonumber(ARGV[3])
+for i = 4, #ARGV do
+  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[i])
+  -- key pattern giống RedisKeyConstants.DRIVER_OFFER_STATS_KEY
+  local stats = 'driver:' .. ARGV[i] .. ':offer_stats'
+  local offered = redis.call('HINCRBY', stats, 'offered', 1)
+  if window > 0 and offered >= window then
+    -- suy giảm: acceptance chỉ phản ánh các offer gần đây
+    local accepted = tonumber(redis.call('HGET', stats, 'accepted') or '0')
+    redis.call('HSET', stats, 'offered', math.floor(offered / 2),
+      'accepted', math.floor(accepted / 2))
+  end
+end
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+return #ARGV - 3
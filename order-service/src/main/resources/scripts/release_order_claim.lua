@@ -0,0 +1,16 @@
+-- Hoàn tác claim_order.lua khi bước cập nhật DB thất bại. Chỉ xoá key nếu vẫn thuộc claim này.
+-- KEYS[1] = order:{orderId}:assignee
+-- KEYS[2] = driver:{driverId}:delivering_order_id
+-- KEYS[3] = drivers:available
+-- KEYS[4] = driver:{driverId}:fcm_token
+-- ARGV[1] = driverId, ARGV[2] = orderId
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  redis.call('DEL', KEYS[1])
+end
+if redis.call('GET', KEYS[2]) == ARGV[2] then
+  redis.call('DEL', KEYS[2])
+  if redis.call('EXISTS', KEYS[4]) == 1 then
+    redis.call('SADD', KEYS[3], ARGV[1])
+  end
+end
+return 1
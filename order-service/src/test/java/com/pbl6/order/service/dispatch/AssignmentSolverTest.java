@@ -0,0 +1,100 @@
+package com.pbl6.order.service.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AssignmentSolverTest {
+
+  private static final double EPS = 1e-6;
+
+  @Test
+  void emptyMatrixAssignsNothing() {
+    assertThat(new AssignmentSolver().solve(new double[0], 3, 0)).containsExactly(-1, -1, -1);
+  }
+
+  @Test
+  void matchesBruteForceOnRandomMatrices() {
+    Random random = new Random(42);
+    // một instance dùng lại cho mọi lần giải: buffer tái sử dụng không được làm sai kết quả
+    AssignmentSolver solver = new AssignmentSolver();
+    for (int iter = 0; iter < 500; iter++) {
+      int rows = 1 + random.nextInt(6);
+      int cols = 1 + random.nextInt(6);
+      double[] cost = new double[rows * cols];
+      for (int i = 0; i < cost.length; i++) {
+        // ~30% cạnh không tồn tại (shipper không phải candidate của order)
+        cost[i] = random.nextDouble() < 0.3 ? AssignmentSolver.NO_EDGE : random.nextDouble() * 100;
+      }
+
+      int[] rowToCol = solver.solve(cost, rows, cols);
+
+      assertThat(rowToCol).hasSize(rows);
+      boolean[] usedCol = new boolean[cols];
+      int matched = 0;
+      double total = 0;
+      for (int r = 0; r < rows; r++) {
+        int c = rowToCol[r];
+        if (c < 0) continue;
+        assertThat(usedCol[c]).as("column %d assigned twice", c).isFalse();
+        usedCol[c] = true;
+        assertThat(cost[r * cols + c]).isLessThan(AssignmentSolver.NO_EDGE);
+        matched++;
+        total += cost[r * cols + c];
+      }
+      Best best = bruteForce(cost, rows, cols);
+      assertThat(matched).as("matched pairs, iteration %d", iter).isEqualTo(best.matched);
+      assertThat(total).as("total cost, iteration %d", iter).isCloseTo(best.cost, within(EPS));
+    }
+  }
+
+  @Test
+  void prefersRealEdgesOverCheaperPartialAssignment() {
+    // order 0 chỉ đến được shipper 0; order 1 rẻ hơn ở shipper 0 nhưng vẫn phải nhường
+    double n = AssignmentSolver.NO_EDGE;
+    double[] cost = {5, n, 1, 50};
+
+    assertThat(new AssignmentSolver().solve(cost, 2, 2)).containsExactly(0, 1);
+  }
+
+  /** Số cặp gán tối đa, rồi tổng chi phí nhỏ nhất, bằng cách thử mọi cách gán. */
+  private static Best bruteForce(double[] cost, int rows, int cols) {
+    Best best = new Best();
+    search(cost, rows, cols, 0, new boolean[cols], 0, 0, best);
+    return best;
+  }
+
+  private static void search(
+      double[] cost,
+      int rows,
+      int cols,
+      int r,
+      boolean[] usedCol,
+      int matched,
+      double total,
+      Best best) {
+    if (r == rows) {
+      if (matched > best.matched || (matched == best.matched && total < best.cost)) {
+        best.matched = matched;
+        best.cost = total;
+      }
+      return;
+    }
+    // hàng r không được gán
+    search(cost, rows, cols, r + 1, usedCol, matched, total, best);
+    for (int c = 0; c < cols; c++) {
+      double w = cost[r * cols + c];
+      if (usedCol[c] || w >= AssignmentSolver.NO_EDGE) continue;
+      usedCol[c] = true;
+      search(cost, rows, cols, r + 1, usedCol, matched + 1, total + w, best);
+      usedCol[c] = false;
+    }
+  }
+
+  private static final class Best {
+    int matched = -1;
+    double cost = Double.POSITIVE_INFINITY;
+  }
+}
@@ -0,0 +1,124 @@
+package com.pbl6.order.service.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.pbl6.order.util.GeoUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class DriverSpatialIndexTest {
+
+  private static final double EPS = 1e-9;
+
+  @Test
+  void emptyIndexFindsNothing() {
+    DriverSpatialIndex index = new DriverSpatialIndex(0.01, 4, 16);
+
+    assertThat(index.nearest(108.2, 16.05, 5, 10)).isEmpty();
+    assertThat(index.size()).isZero();
+  }
+
+  @Test
+  void matchesLinearScanUnderRandomUpdates() {
+    Random random = new Random(3);
+    // ít bucket + bảng id nhỏ: ô băm trùng bucket, probing dài, grow và backward-shift đều xảy ra
+    DriverSpatialIndex index = new DriverSpatialIndex(0.01, 4, 16);
+    Map<UUID, double[]> expected = new HashMap<>();
+    List<UUID> ids = new ArrayList<>();
+    for (int i = 0; i < 400; i++) ids.add(UUID.randomUUID());
+
+    for (int iter = 0; iter < 3000; iter++) {
+      UUID id = ids.get(random.nextInt(ids.size()));
+      int op = random.nextInt(10);
+      if (op < 6) {
+        double[] p = randomPoint(random);
+        index.upsert(id, p[0], p[1]);
+        expected.put(id, p);
+      } else if (op < 9) {
+        index.remove(id);
+        expected.remove(id);
+      } else if (iter % 100 == 9) {
+        Set<UUID> keep = new HashSet<>();
+        for (UUID k : expected.keySet()) if (random.nextDouble() < 0.7) keep.add(k);
+
+        int removed = index.retainAll(keep);
+
+        assertThat(removed).isEqualTo(expected.size() - keep.size());
+        expected.keySet().retainAll(keep);
+      }
+
+      assertThat(index.size()).as("size, iteration %d", iter).isEqualTo(expected.size());
+      if (iter % 10 == 0) {
+        double[] q = randomPoint(random);
+        int k = 1 + random.nextInt(12);
+        double maxKm = 0.5 + random.nextDouble() * 20;
+        assertNearest(index, expected, q, k, maxKm, iter);
+      }
+    }
+  }
+
+  @Test
+  void upsertMovesDriverBetweenCells() {
+    DriverSpatialIndex index = new DriverSpatialIndex(0.01, 4, 16);
+    UUID a = UUID.randomUUID();
+    UUID b = UUID.randomUUID();
+    index.upsert(a, 108.20, 16.05);
+    index.upsert(b, 108.25, 16.05);
+
+    index.upsert(a, 108.30, 16.05);
+
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.nearest(108.20, 16.05, 2, 50))
+        .extracting(DriverSpatialIndex.Neighbor::driverId)
+        .containsExactly(b, a);
+  }
+
+  /** Điểm ngẫu nhiên trong khoảng 30 x 30 km. */
+  private static double[] randomPoint(Random random) {
+    return new double[] {108.1 + random.nextDouble() * 0.3, 15.9 + random.nextDouble() * 0.3};
+  }
+
+  private static void assertNearest(
+      DriverSpatialIndex index,
+      Map<UUID, double[]> expected,
+      double[] q,
+      int k,
+      double maxKm,
+      int iter) {
+    List<DriverSpatialIndex.Neighbor> got = index.nearest(q[0], q[1], k, maxKm);
+
+    List<Double> all = new ArrayList<>();
+    for (double[] p : expected.values()) {
+      double d = distanceKm(q, p);
+      if (d <= maxKm) all.add(d);
+    }
+    all.sort(Comparator.naturalOrder());
+    List<Double> best = all.subList(0, Math.min(k, all.size()));
+
+    assertThat(got).as("result size, iteration %d", iter).hasSize(best.size());
+    Set<UUID> seen = new HashSet<>();
+    for (int i = 0; i < got.size(); i++) {
+      DriverSpatialIndex.Neighbor n = got.get(i);
+      assertThat(seen.add(n.driverId())).as("duplicate %s", n.driverId()).isTrue();
+      assertThat(expected).as("stale driver, iteration %d", iter).containsKey(n.driverId());
+      assertThat(n.distanceKm()).isCloseTo(distanceKm(q, expected.get(n.driverId())), within(EPS));
+      // so khoảng cách thay vì id: hai shipper cách đều thì thứ tự nào cũng đúng
+      assertThat(n.distanceKm())
+          .as("rank %d, iteration %d", i, iter)
+          .isCloseTo(best.get(i), within(EPS));
+    }
+  }
+
+  private static double distanceKm(double[] q, double[] p) {
+    return GeoUtils.haversineDistanceMeters(q[1], q[0], p[1], p[0]) / 1000.0;
+  }
+}
@@ -0,0 +1,120 @@
+package com.pbl6.order.service.route;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.pbl6.order.config.RouteProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RouteSolverTest {
+
+  @Test
+  void singlePointRouteIsEmpty() {
+    RouteSolution s = solver(12).solve(new int[][] {{0}});
+
+    assertThat(s.path()).containsExactly(0);
+    assertThat(s.cost()).isZero();
+  }
+
+  @Test
+  void exactMatchesBruteForceOnAsymmetricMatrices() {
+    Random random = new Random(7);
+    RouteSolver solver = solver(12);
+    for (int iter = 0; iter < 200; iter++) {
+      int[][] w = randomMatrix(random, 2 + random.nextInt(7));
+
+      RouteSolution s = solver.solve(w);
+
+      assertThat(s.method()).isEqualTo("exact");
+      assertValidPath(s.path(), w.length);
+      assertThat(s.cost()).as("reported cost").isEqualTo(pathCost(w, s.path()));
+      assertThat(s.cost()).as("optimum, iteration %d", iter).isEqualTo(bruteForce(w));
+    }
+  }
+
+  @Test
+  void heuristicIsValidAndBoundedByOptimum() {
+    Random random = new Random(11);
+    // exact-max-drops = 0: mọi order đi qua nearest-neighbour + 2-opt / Or-opt
+    RouteSolver solver = solver(0);
+    for (int iter = 0; iter < 200; iter++) {
+      int[][] w = randomMatrix(random, 2 + random.nextInt(7));
+
+      RouteSolution s = solver.solve(w);
+      long optimum = bruteForce(w);
+
+      assertThat(s.method()).isEqualTo("heuristic");
+      assertValidPath(s.path(), w.length);
+      assertThat(s.cost()).as("reported cost").isEqualTo(pathCost(w, s.path()));
+      assertThat(s.cost()).as("iteration %d", iter).isGreaterThanOrEqualTo(optimum);
+      assertThat(s.cost()).isLessThanOrEqualTo(s.initialCost());
+      assertThat(s.lowerBound()).isLessThanOrEqualTo(optimum);
+    }
+  }
+
+  @Test
+  void heuristicFindsOptimumOnPointsAlongALine() {
+    // điểm giao trên một đường thẳng, xáo thứ tự: tối ưu là đi lần lượt theo toạ độ
+    int[] x = {0, 7, 2, 9, 4, 1, 8, 3, 6, 5};
+    int n = x.length;
+    int[][] w = new int[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) w[i][j] = Math.abs(x[i] - x[j]) * 100;
+    }
+
+    RouteSolution s = solver(0).solve(w);
+
+    assertThat(s.cost()).isEqualTo(900);
+  }
+
+  private static RouteSolver solver(int exactMaxDrops) {
+    RouteProperties props = new RouteProperties();
+    props.setExactMaxDrops(exactMaxDrops);
+    // đủ rộng để test không phụ thuộc tốc độ máy
+    props.setTimeBudgetMs(10_000);
+    return new RouteSolver(props, new SimpleMeterRegistry());
+  }
+
+  /** Ma trận bất đối xứng (đường một chiều), đường chéo 0. */
+  private static int[][] randomMatrix(Random random, int n) {
+    int[][] w = new int[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) w[i][j] = i == j ? 0 : 100 + random.nextInt(5000);
+    }
+    return w;
+  }
+
+  private static void assertValidPath(List<Integer> path, int n) {
+    assertThat(path).hasSize(n);
+    assertThat(path.get(0)).isZero();
+    List<Integer> all = new ArrayList<>();
+    for (int i = 0; i < n; i++) all.add(i);
+    assertThat(path).containsExactlyInAnyOrderElementsOf(all);
+  }
+
+  private static long pathCost(int[][] w, List<Integer> path) {
+    long cost = 0;
+    for (int k = 1; k < path.size(); k++) cost += w[path.get(k - 1)][path.get(k)];
+    return cost;
+  }
+
+  /** Thử mọi hoán vị điểm giao, bắt đầu từ điểm 0, không quay về. */
+  private static long bruteForce(int[][] w) {
+    return permute(w, 0, new boolean[w.length], 1, 0);
+  }
+
+  private static long permute(int[][] w, int at, boolean[] visited, int count, long cost) {
+    if (count == w.length) return cost;
+    long best = Long.MAX_VALUE;
+    for (int v = 1; v < w.length; v++) {
+      if (visited[v]) continue;
+      visited[v] = true;
+      best = Math.min(best, permute(w, v, visited, count + 1, cost + w[at][v]));
+      visited[v] = false;
+    }
+    return best;
+  }
+}